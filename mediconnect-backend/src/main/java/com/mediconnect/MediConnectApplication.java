@@ -2,10 +2,12 @@ package com.mediconnect;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.time.Duration;
 
 @SpringBootApplication
+@EnableScheduling
 public class MediConnectApplication {
     public static void main(String[] args) {
         SpringApplication.run(MediConnectApplication.class, args);
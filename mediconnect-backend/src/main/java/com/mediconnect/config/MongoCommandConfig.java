@@ -2,11 +2,18 @@ package com.mediconnect.config;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.model.OutboxEvent;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,15 +33,7 @@ public class MongoCommandConfig {
             // Clean up invalid location data first
             cleanupInvalidLocationData(mongoTemplate);
 
-            // Drop existing geospatial index if it exists
-            try {
-                mongoTemplate.indexOps("doctor_profiles").dropIndex("location_2dsphere");
-                System.out.println("✅ Dropped existing geospatial index");
-            } catch (Exception e) {
-                System.out.println("ℹ️ No existing geospatial index to drop");
-            }
-
-            // Create new geospatial index for Address.location
+            // Kept across restarts: location searches fall back to it while the in-memory DoctorGeoIndex loads
             mongoTemplate.indexOps("doctor_profiles").ensureIndex(
                     new GeospatialIndex("location")
                             .typed(GeoSpatialIndexType.GEO_2DSPHERE)
@@ -45,6 +44,76 @@ public class MongoCommandConfig {
             System.err.println("This might be due to existing data with incorrect location format");
             System.err.println("Consider cleaning up location data in the database");
         }
+
+        createCalendarIndexes();
+        createOutboxIndexes();
+        createChatMessageIndexes();
+        createChatRoomIndexes();
+    }
+
+    private void createCalendarIndexes() {
+        try {
+            // Backs the per-doctor date range reads and the (doctorId, date) upserts of recurring slots
+            mongoTemplate.indexOps(Calendar.class).ensureIndex(
+                    new Index().on("doctorId", Sort.Direction.ASC).on("date", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Calendar doctorId/date index created successfully");
+        } catch (Exception e) {
+            System.err.println("⚠️ Warning: Could not create calendar index: " + e.getMessage());
+        }
+    }
+
+    private void createOutboxIndexes() {
+        try {
+            // Backs the relay's due-event scan; also creates the collection, which transactions cannot do on older servers
+            mongoTemplate.indexOps(OutboxEvent.class).ensureIndex(
+                    new Index().on("state", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Outbox state/nextAttemptAt index created successfully");
+
+            // Backs the sweep of events left inside their appointment when writing without transactions
+            mongoTemplate.indexOps(Appointment.class).ensureIndex(
+                    new Index().on("pendingEvents.createdAt", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Appointment pendingEvents.createdAt index created successfully");
+        } catch (Exception e) {
+            System.err.println("⚠️ Warning: Could not create outbox index: " + e.getMessage());
+        }
+    }
+
+    private void createChatMessageIndexes() {
+        try {
+            // Keyset pagination of a room's history walks this index in either direction
+            mongoTemplate.indexOps(ChatMessage.class).ensureIndex(
+                    new Index().on("appointmentId", Sort.Direction.ASC)
+                            .on("timestamp", Sort.Direction.ASC)
+                            .on("_id", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Chat message appointmentId/timestamp/_id index created successfully");
+
+            // Read receipts select a room's messages by sequence range
+            mongoTemplate.indexOps(ChatMessage.class).ensureIndex(
+                    new Index().on("appointmentId", Sort.Direction.ASC).on("seq", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Chat message appointmentId/seq index created successfully");
+        } catch (Exception e) {
+            System.err.println("⚠️ Warning: Could not create chat message index: " + e.getMessage());
+        }
+    }
+
+    private void createChatRoomIndexes() {
+        try {
+            // A participant's active rooms, read in one query for the dashboard unread counts
+            mongoTemplate.indexOps(ChatRoom.class).ensureIndex(
+                    new Index().on("patientId", Sort.Direction.ASC).on("isActive", Sort.Direction.ASC)
+            );
+            mongoTemplate.indexOps(ChatRoom.class).ensureIndex(
+                    new Index().on("doctorId", Sort.Direction.ASC).on("isActive", Sort.Direction.ASC)
+            );
+            System.out.println("✅ Chat room participant indexes created successfully");
+        } catch (Exception e) {
+            System.err.println("⚠️ Warning: Could not create chat room indexes: " + e.getMessage());
+        }
     }
 
     private void cleanupInvalidLocationData(MongoTemplate mongoTemplate) {
@@ -3,8 +3,11 @@ package com.mediconnect.config;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
 import org.springframework.data.mongodb.core.index.GeospatialIndex;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
@@ -35,4 +38,13 @@ public class MongoConfig {
                 .build();
     }
 
+    /**
+     * Makes @Transactional and the outbox writes use Mongo transactions - needs a replica set
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mongodb.transactions.enabled", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+
 }
\ No newline at end of file
@@ -68,6 +68,8 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(
+                "X-Chat-Older-Cursor", "X-Chat-Newer-Cursor")); // chat history paging
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
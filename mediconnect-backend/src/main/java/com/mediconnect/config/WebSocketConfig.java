@@ -18,6 +18,7 @@ public class WebSocketConfig implements WebSocketConfigurer {
     
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Subprotocols come from the handler; Tomcat negotiates permessage-deflate when the client offers it
         registry.addHandler(chatWebSocketHandler, "/ws/chat")
                 .setAllowedOriginPatterns("*") // In production, specify exact origins
                 .addInterceptors(chatHandshakeInterceptor);
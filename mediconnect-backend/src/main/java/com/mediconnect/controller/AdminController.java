@@ -3,20 +3,22 @@ package com.mediconnect.controller;
 import com.mediconnect.dto.admin.DoctorVerificationRequest;
 import com.mediconnect.dto.admin.DoctorVerificationResponse;
 import com.mediconnect.dto.doctor.DoctorProfileResponse;
+import com.mediconnect.dto.user.UserSummary;
 import com.mediconnect.enums.DocumentType;
 import com.mediconnect.enums.VerificationStatus;
 import com.mediconnect.model.DoctorProfile;
 import com.mediconnect.model.User;
 import com.mediconnect.repository.DoctorProfileRepository;
 import com.mediconnect.repository.UserRepository;
+import com.mediconnect.service.EmailDispatcher;
 import com.mediconnect.service.EmailService;
+import com.mediconnect.service.UserSummaryResolver;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -42,13 +44,19 @@ public class AdminController {
     private final DoctorProfileRepository doctorProfileRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final EmailDispatcher emailDispatcher;
+    private final UserSummaryResolver userSummaryResolver;
 
     public AdminController(DoctorProfileRepository doctorProfileRepository,
                          UserRepository userRepository,
-                         EmailService emailService) {
+                         EmailService emailService,
+                         EmailDispatcher emailDispatcher,
+                         UserSummaryResolver userSummaryResolver) {
         this.doctorProfileRepository = doctorProfileRepository;
         this.userRepository = userRepository;
         this.emailService = emailService;
+        this.emailDispatcher = emailDispatcher;
+        this.userSummaryResolver = userSummaryResolver;
     }
 
     @Operation(summary = "Get doctors by verification status", description = "Retrieves a list of doctors filtered by their verification status")
@@ -60,10 +68,13 @@ public class AdminController {
     @GetMapping("/doctors/approvals")
     public ResponseEntity<?> getDoctorsByStatus(@RequestParam VerificationStatus status) {
         List<DoctorProfile> doctorProfiles = doctorProfileRepository.findByVerificationStatus(status);
+        Map<String, UserSummary> users = userSummaryResolver.resolve(doctorProfiles.stream()
+            .map(DoctorProfile::getUserId)
+            .collect(Collectors.toSet()));
         
         List<Map<String, Object>> doctorSummaries = doctorProfiles.stream()
             .map(profile -> {
-                User user = userRepository.findById(profile.getUserId())
+                UserSummary user = Optional.ofNullable(users.get(profile.getUserId()))
                     .orElseThrow(() -> new RuntimeException("User not found"));
                 
                 Map<String, Object> summary = new HashMap<>();
@@ -168,18 +179,15 @@ public class AdminController {
         doctorProfileRepository.save(doctorProfile);
 
         // Send email notification
-        try {
+        String reason = null != doctorProfile.getReasons() && !doctorProfile.getReasons().isEmpty() ?
+                doctorProfile.getReasons().get(0).getReason() : "Unknown";
+        emailDispatcher.dispatch("verification email for doctor " + doctorProfile.getId(), () ->
             emailService.sendVerificationStatusEmail(
                 doctor.getEmail(),
                 doctor.getFullName(),
-                    String.valueOf(doctorProfile.getVerificationStatus()),
-                null !=doctorProfile.getReasons()  && !doctorProfile.getReasons().isEmpty()?
-                        doctorProfile.getReasons().get(0).getReason() : "Unknown"
-            );
-        } catch (MessagingException e) {
-            // Log the error but don't fail the request
-            System.err.println("Failed to send verification email: " + e.getMessage());
-        }
+                String.valueOf(doctorProfile.getVerificationStatus()),
+                reason
+            ));
 
         return ResponseEntity.ok().build();
     }
@@ -2,6 +2,7 @@ package com.mediconnect.controller;
 
 import com.mediconnect.dto.appointment.AppointmentRequest;
 import com.mediconnect.dto.appointment.AppointmentResponse;
+import com.mediconnect.dto.user.UserSummary;
 import com.mediconnect.dto.common.ErrorVO;
 import com.mediconnect.dto.common.StructuredErrorResponse;
 import com.mediconnect.enums.ErrorCode;
@@ -10,19 +11,24 @@ import com.mediconnect.enums.AppointmentType;
 import com.mediconnect.enums.UserRole;
 import com.mediconnect.model.Appointment;
 import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
 import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.model.MonthlyAvailability;
+import com.mediconnect.model.OutboxEvent;
 import com.mediconnect.model.User;
 import com.mediconnect.repository.AppointmentRepository;
 import com.mediconnect.repository.DoctorProfileRepository;
 import com.mediconnect.repository.UserRepository;
 import com.mediconnect.repository.CalendarRepository;
-import com.mediconnect.service.EmailService;
+import com.mediconnect.repository.MonthlyAvailabilityRepository;
+import com.mediconnect.service.OutboxService;
 import com.mediconnect.service.UserService;
+import com.mediconnect.service.UserSummaryResolver;
 import com.mediconnect.util.UserContext;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
 import jakarta.validation.Valid;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -33,9 +39,13 @@ import org.springframework.format.annotation.DateTimeFormat;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -57,13 +67,17 @@ public class AppointmentController {
     private UserRepository userRepository;
 
     @Autowired
-    private EmailService emailService;
+    private OutboxService outboxService;
 
     @Autowired
     private CalendarRepository calendarRepository;
     @Autowired
     private DoctorProfileRepository doctorProfileRepository;
     @Autowired
+    private MonthlyAvailabilityRepository monthlyAvailabilityRepository;
+    @Autowired
+    private UserSummaryResolver userSummaryResolver;
+    @Autowired
     private UserService userService;
 
     @PostMapping
@@ -79,28 +93,6 @@ public class AppointmentController {
         User patient = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Optional<Calendar> calendarOpt = calendarRepository.findById(request.getCalendarId());
-
-        if (calendarOpt.isEmpty()) {
-            log.error("Calendar not found for ID: {}", request.getCalendarId());
-            return ResponseEntity.status(400).build();
-        }
-
-        Calendar calendar = calendarOpt.get();
-
-        // Verify the slot exists and is available
-        Optional<Calendar.Slot> slotOpt = calendar.getSlots().stream()
-                .filter(slot -> slot.getId().equals(request.getSlotId()) && slot.isAvailable())
-                .findFirst();
-
-        if (slotOpt.isEmpty()) {
-            log.error("Slot not available - Calendar: {}, Slot: {}", request.getCalendarId(), request.getSlotId());
-            return ResponseEntity.status(400).contentType(MediaType.APPLICATION_JSON)
-                    .body(StructuredErrorResponse.fromErrorCode(ErrorCode.SLOT_NOT_AVAILABLE));
-        }
-
-        Calendar.Slot slot = slotOpt.get();
-
         // Check for scheduling conflicts
         List<Appointment> conflicts = appointmentRepository.findByPatientIdAndCalendarIdActive(
                 patient.getId(), request.getCalendarId());
@@ -113,6 +105,8 @@ public class AppointmentController {
         }
 
         Appointment appointment = new Appointment();
+        // Assign the id up front so the slot can be claimed for this appointment before it is stored
+        appointment.setId(new ObjectId().toHexString());
         appointment.setDoctorId(request.getDoctorId());
         appointment.setPatientId(patient.getId());
         appointment.setCalendarId(request.getCalendarId());
@@ -120,43 +114,28 @@ public class AppointmentController {
         appointment.setType(AppointmentType.valueOf(request.getType()));
         appointment.setReason(request.getReason());
 
-        appointment = appointmentRepository.save(appointment);
+        // Claim the slot atomically - concurrent bookers of the same slot cannot both succeed
+        Optional<Calendar> bookedCalendar = calendarRepository.bookSlot(
+                request.getCalendarId(), request.getSlotId(), request.getSlotIndex(), appointment.getId());
+
+        if (bookedCalendar.isEmpty()) {
+            log.error("Slot not available - Calendar: {}, Slot: {}", request.getCalendarId(), request.getSlotId());
+            return ResponseEntity.status(400).contentType(MediaType.APPLICATION_JSON)
+                    .body(StructuredErrorResponse.fromErrorCode(ErrorCode.SLOT_NOT_AVAILABLE));
+        }
 
-        // Update slot availability
-        slot.setAvailable(false);
-        slot.setAppointmentId(appointment.getId());
-        calendarRepository.save(calendar);
+        Calendar.Slot slot = bookedCalendar.get().getSlots().get(0);
+        appointment.setSlotStartTime(slot.getStartTime());
+        appointment.setSlotEndTime(slot.getEndTime());
 
-        // Send email notifications
         try {
-            var doctor = userRepository.findById(request.getDoctorId()).orElseThrow();
-
-            // Notify doctor
-            emailService.sendAppointmentStatusEmail(
-                doctor.getEmail(),
-                doctor.getFullName(),
-                "SCHEDULED",
-                slot.getStartTime(),
-                slot.getStartTime(),
-                slot.getEndTime(),
-                appointment.getType(),
-                null
-            );
-
-            // Notify patient
-            emailService.sendAppointmentStatusEmail(
-                patient.getEmail(),
-                patient.getFullName(),
-                "SCHEDULED",
-                slot.getStartTime(),
-                slot.getStartTime(),
-                slot.getEndTime(),
-                appointment.getType(),
-                null
-            );
-        } catch (MessagingException e) {
-            // Log the error but don't fail the request
-            log.error("Failed to send email notifications for appointment: {}", appointment.getId(), e);
+            // The appointment and its notification event are stored together
+            appointment = saveWithStatusEvent(appointment, "SCHEDULED", null,
+                    List.of(appointment.getDoctorId(), appointment.getPatientId()), true);
+        } catch (RuntimeException e) {
+            // Give the slot back so it does not stay blocked by an appointment that was never stored
+            calendarRepository.releaseSlot(request.getCalendarId(), request.getSlotId(), request.getSlotIndex(), appointment.getId());
+            throw e;
         }
 
         return ResponseEntity.ok(AppointmentResponse.fromAppointment(appointment));
@@ -199,20 +178,12 @@ public class AppointmentController {
             }
         }
 
-        // Sort appointments based on requirements
-        appointments.sort((a, b) -> {
-            LocalDateTime endTimeA = getAppointmentEndTime(a);
-            LocalDateTime endTimeB = getAppointmentEndTime(b);
-            
-            // Always sort by end time descending
-            return endTimeB.compareTo(endTimeA);
-        });
+        resolveSlotTimes(appointments);
 
-        List<AppointmentResponse> response = appointments.stream()
-            .map(this::createAppointmentResponseWithDetails)
-            .collect(Collectors.toList());
+        // Always sort by end time descending
+        appointments.sort(Comparator.comparing(Appointment::getSlotEndTime).reversed());
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(createAppointmentResponsesWithDetails(appointments));
     }
 
     @GetMapping("/patient")
@@ -251,29 +222,8 @@ public class AppointmentController {
 
         appointment.setStatus(AppointmentStatus.CONFIRMED);
         appointment.setUpdatedAt(System.currentTimeMillis());
-        appointment = appointmentRepository.save(appointment);
-
-        // Send email notifications
-        try {
-            var doctor = userRepository.findById(user.getId()).orElseThrow();
-            var patient = userRepository.findById(appointment.getPatientId()).orElseThrow();
-
-
-            // Notify patient
-            emailService.sendAppointmentStatusEmail(
-                patient.getEmail(),
-                patient.getFullName(),
-                "CONFIRMED",
-                null, //appointment.getStartTime(),
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getEndTime(),
-                appointment.getType(),
-                null
-            );
-        } catch (MessagingException e) {
-            // Log the error but don't fail the request
-            e.printStackTrace();
-        }
+        // Notifications are sent by the outbox relay once the change is stored
+        appointment = saveWithStatusEvent(appointment, "CONFIRMED", null, List.of(appointment.getPatientId()), false);
 
         return ResponseEntity.ok(AppointmentResponse.fromAppointment(appointment));
     }
@@ -295,39 +245,8 @@ public class AppointmentController {
 
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointment.setUpdatedAt(System.currentTimeMillis());
-        appointment = appointmentRepository.save(appointment);
-
-        // Send email notifications
-        try {
-            var doctor = userRepository.findById(appointment.getDoctorId()).orElseThrow();
-            var patient = userRepository.findById(appointment.getPatientId()).orElseThrow();
-
-            // Notify both parties
-            emailService.sendAppointmentStatusEmail(
-                doctor.getEmail(),
-                doctor.getFullName(),
-                "CANCELLED",
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getEndTime(),
-                appointment.getType(),
-                reason
-            );
-
-            emailService.sendAppointmentStatusEmail(
-                patient.getEmail(),
-                patient.getFullName(),
-                "CANCELLED",
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getEndTime(),
-                appointment.getType(),
-                reason
-            );
-        } catch (MessagingException e) {
-            // Log the error but don't fail the request
-            e.printStackTrace();
-        }
+        // Notifications are sent by the outbox relay once the change is stored
+        appointment = saveWithStatusEvent(appointment, "CANCELLED", reason, List.of(appointment.getDoctorId(), appointment.getPatientId()), false);
 
         return ResponseEntity.ok(AppointmentResponse.fromAppointment(appointment));
     }
@@ -348,28 +267,8 @@ public class AppointmentController {
 
         appointment.setStatus(AppointmentStatus.COMPLETED);
         appointment.setUpdatedAt(System.currentTimeMillis());
-        appointment = appointmentRepository.save(appointment);
-
-        // Send email notifications
-        try {
-            var doctor = userRepository.findById(doctorId).orElseThrow();
-            var patient = userRepository.findById(appointment.getPatientId()).orElseThrow();
-
-            // Notify patient
-            emailService.sendAppointmentStatusEmail(
-                patient.getEmail(),
-                patient.getFullName(),
-                "COMPLETED",
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getStartTime(),
-                    null, //appointment.getEndTime(),
-                appointment.getType(),
-                null
-            );
-        } catch (MessagingException e) {
-            // Log the error but don't fail the request
-            e.printStackTrace();
-        }
+        // Notifications are sent by the outbox relay once the change is stored
+        appointment = saveWithStatusEvent(appointment, "COMPLETED", null, List.of(appointment.getPatientId()), false);
 
         return ResponseEntity.ok(AppointmentResponse.fromAppointment(appointment));
     }
@@ -385,28 +284,39 @@ public class AppointmentController {
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         LocalDate todayDate = LocalDate.now();
-        LocalDate endDate = todayDate
-                .withDayOfMonth(todayDate.lengthOfMonth());
+        YearMonth month = YearMonth.from(todayDate);
 
-        List<Calendar> calendars = calendarRepository.findByDoctorIdAndDateBetween(doctorId, todayDate, endDate);
-        Map<LocalDate, Map<String, Object>> result = new HashMap<>();
+        // Round trip 1: the month summary (rebuilt from the calendars only if it does not exist yet)
+        MonthlyAvailability summary = monthlyAvailabilityRepository.findById(MonthlyAvailability.idOf(doctorId, month))
+                .orElseGet(() -> monthlyAvailabilityRepository.rebuild(doctorId, month));
+
+        Map<LocalDate, MonthlyAvailability.DaySummary> days = new HashMap<>();
+        summary.getDays().forEach((day, daySummary) -> {
+            LocalDate date = LocalDate.parse(day);
+            if (!date.isBefore(todayDate)) {
+                days.put(date, daySummary);
+            }
+        });
 
+        // Round trip 2: the patient's bookings for all of those days at once
+        List<String> calendarIds = days.values().stream()
+                .map(MonthlyAvailability.DaySummary::getCalendarId)
+                .collect(Collectors.toList());
+        Map<String, Appointment> appointmentsByCalendarId = new HashMap<>();
+        for (Appointment appointment : appointmentRepository.findByPatientIdAndCalendarIdInAndStatusIsNot(
+                patient.getId(), calendarIds, "CANCELLED")) {
+            appointmentsByCalendarId.putIfAbsent(appointment.getCalendarId(), appointment);
+        }
+
+        Map<LocalDate, Map<String, Object>> result = new HashMap<>();
         LocalDateTime now = LocalDateTime.now();
 
-        for (Calendar calendar : calendars) {
+        for (Map.Entry<LocalDate, MonthlyAvailability.DaySummary> day : days.entrySet()) {
             Map<String, Object> dayInfo = new HashMap<>();
-            
-            // Check if patient has any appointments for this day
-            Optional<Appointment> patientAppointment = appointmentRepository.findByPatientIdAndCalendarIdAndStatusIsNot(
-                    patient.getId(), calendar.getId(), "CANCELLED")
-                    .stream()
-                    .findFirst();
+            Appointment appointment = appointmentsByCalendarId.get(day.getValue().getCalendarId());
 
-            if (patientAppointment.isPresent()) {
-                Appointment appointment = patientAppointment.get();
-                Optional<Calendar.Slot> slot = calendar.getSlots().stream()
-                        .filter(s -> s.getId().equals(appointment.getSlotId()))
-                        .findFirst();
+            if (appointment != null) {
+                Optional<Calendar.Slot> slot = findAppointmentSlot(appointment);
 
                 if (slot.isPresent()) {
                     dayInfo.put("hasAppointment", true);
@@ -417,17 +327,35 @@ public class AppointmentController {
                 }
             } else {
                 // Check for available slots
-                boolean hasAvailableSlot = calendar.getSlots().stream()
-                        .anyMatch(slot -> slot.isAvailable() && slot.getStartTime().isAfter(now));
+                boolean hasAvailableSlot = day.getValue()
+                        .hasAvailableSlotAfter(CompactDaySlots.minuteOfDay(day.getKey(), now));
                 dayInfo.put("hasAppointment", false);
                 dayInfo.put("hasAvailableSlot", hasAvailableSlot);
             }
 
-            result.put(calendar.getDate(), dayInfo);
+            result.put(day.getKey(), dayInfo);
         }
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Slot times of an appointment, from its own copy when present and from its calendar otherwise
+     */
+    private Optional<Calendar.Slot> findAppointmentSlot(Appointment appointment) {
+        if (appointment.getSlotStartTime() != null && appointment.getSlotEndTime() != null) {
+            Calendar.Slot slot = new Calendar.Slot();
+            slot.setId(appointment.getSlotId());
+            slot.setStartTime(appointment.getSlotStartTime());
+            slot.setEndTime(appointment.getSlotEndTime());
+            return Optional.of(slot);
+        }
+
+        return calendarRepository.findById(appointment.getCalendarId())
+                .flatMap(calendar -> calendar.getSlots().stream()
+                        .filter(s -> s.getId().equals(appointment.getSlotId()))
+                        .findFirst());
+    }
+
     @GetMapping("/doctor/{doctorId}/day-slots")
     @PreAuthorize("hasRole('PATIENT')")
     @Operation(summary = "Get available slots for a specific day", description = "Retrieves all available slots for a doctor on a specific day after the current time")
@@ -454,6 +382,12 @@ public class AppointmentController {
 
         Map<String, String> appointmentIdToSlotId = new HashMap<>();
 
+        // Sent back with a booking so it can address the slot without looking it up
+        Map<String, Integer> slotIndexes = new HashMap<>();
+        for (int i = 0; i < calendar.getSlots().size(); i++) {
+            slotIndexes.put(calendar.getSlots().get(i).getId(), i);
+        }
+
         // Filter slots that are available and after the current time
         Map<String, Calendar.Slot> availableSlots = calendar.getSlots().stream()
                 .filter(slot -> slot.isAvailable() && slot.getStartTime().isAfter(now))
@@ -479,6 +413,7 @@ public class AppointmentController {
             dayInfo.put("startTime", slot.getStartTime());
             dayInfo.put("endTime", slot.getEndTime());
             dayInfo.put("calendarId", calendar.getId());
+            dayInfo.put("slotIndex", slotIndexes.get(slotId));
             result.add(dayInfo);
 
         });
@@ -486,32 +421,6 @@ public class AppointmentController {
         return ResponseEntity.ok(result);
     }
 
-    // Helper method to get appointment date/time from calendar and slot
-    private LocalDateTime getAppointmentDateTime(Appointment appointment) {
-        Calendar calendar = calendarRepository.findById(appointment.getCalendarId()).orElse(null);
-        if (calendar != null) {
-            return calendar.getSlots().stream()
-                    .filter(slot -> slot.getId().equals(appointment.getSlotId()))
-                    .findFirst()
-                    .map(Calendar.Slot::getStartTime)
-                    .orElse(LocalDateTime.now());
-        }
-        return LocalDateTime.now();
-    }
-
-    // Helper method to get appointment end time from calendar and slot
-    private LocalDateTime getAppointmentEndTime(Appointment appointment) {
-        Calendar calendar = calendarRepository.findById(appointment.getCalendarId()).orElse(null);
-        if (calendar != null) {
-            return calendar.getSlots().stream()
-                    .filter(slot -> slot.getId().equals(appointment.getSlotId()))
-                    .findFirst()
-                    .map(Calendar.Slot::getEndTime)
-                    .orElse(LocalDateTime.now());
-        }
-        return LocalDateTime.now();
-    }
-
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT')")
     @Operation(summary = "Get appointment by ID", description = "Retrieves a specific appointment by its ID")
@@ -533,32 +442,83 @@ public class AppointmentController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stores the appointment together with an outbox event that notifies the recipients of the new status.
+     * Cached chat access decisions are dropped by ChatAccessCacheListener.
+     */
+    private Appointment saveWithStatusEvent(Appointment appointment, String status, String reason,
+                                            List<String> recipientIds, boolean insert) {
+        return outboxService.saveWithEvent(appointment, insert,
+                OutboxEvent.appointmentStatus(appointment, status, reason, recipientIds));
+    }
+
     // Helper method to create appointment response with patient details
     private AppointmentResponse createAppointmentResponseWithDetails(Appointment appointment) {
-        AppointmentResponse response = AppointmentResponse.fromAppointment(appointment);
-        
-        // Get patient details (only name for privacy)
-        User patient = userRepository.findById(appointment.getPatientId())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        if (patient != null) {
-            response.setPatientName(patient.getFullName());
+        return createAppointmentResponsesWithDetails(List.of(appointment)).get(0);
+    }
+
+    /**
+     * Builds responses with patient and doctor names, resolving all users in one batch
+     * and slot times of older appointments with one $in query
+     */
+    private List<AppointmentResponse> createAppointmentResponsesWithDetails(List<Appointment> appointments) {
+        resolveSlotTimes(appointments);
+
+        Set<String> userIds = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            userIds.add(appointment.getPatientId());
+            userIds.add(appointment.getDoctorId());
         }
-        
-        // Get doctor details
-        User doctor = userRepository.findById(appointment.getDoctorId())
-                .orElseThrow(() -> new RuntimeException("Doctor not found"));
-        if (doctor != null) {
+        Map<String, UserSummary> usersById = userSummaryResolver.resolve(userIds);
+
+        List<AppointmentResponse> responses = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            AppointmentResponse response = AppointmentResponse.fromAppointment(appointment);
+
+            // Get patient details (only name for privacy)
+            UserSummary patient = usersById.get(appointment.getPatientId());
+            if (patient == null) {
+                throw new RuntimeException("User not found");
+            }
+            response.setPatientName(patient.getFullName());
+
+            // Get doctor details
+            UserSummary doctor = usersById.get(appointment.getDoctorId());
+            if (doctor == null) {
+                throw new RuntimeException("Doctor not found");
+            }
             response.setDoctorName(doctor.getFullName());
+
+            responses.add(response);
         }
-        
-        // Get appointment date/time from actual slot
-        LocalDateTime appointmentDateTime = getAppointmentDateTime(appointment);
-        LocalDateTime appointmentEndTime = getAppointmentEndTime(appointment);
-        response.setStartTime(appointmentDateTime);
-        response.setEndTime(appointmentEndTime);
-        
-        return response;
+        return responses;
     }
 
+    /**
+     * Fills in slot times on appointments stored before they were copied from the slot,
+     * loading all of their calendars with one $in query
+     */
+    private void resolveSlotTimes(List<Appointment> appointments) {
+        Set<String> calendarIds = appointments.stream()
+                .filter(appointment -> appointment.getSlotStartTime() == null || appointment.getSlotEndTime() == null)
+                .map(Appointment::getCalendarId)
+                .collect(Collectors.toSet());
+
+        if (calendarIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Calendar.Slot> slotsById = new HashMap<>();
+        calendarRepository.findAllById(calendarIds)
+                .forEach(calendar -> calendar.getSlots().forEach(slot -> slotsById.put(slot.getId(), slot)));
 
-} 
\ No newline at end of file
+        LocalDateTime now = LocalDateTime.now();
+        for (Appointment appointment : appointments) {
+            if (appointment.getSlotStartTime() == null || appointment.getSlotEndTime() == null) {
+                Calendar.Slot slot = slotsById.get(appointment.getSlotId());
+                appointment.setSlotStartTime(slot != null ? slot.getStartTime() : now);
+                appointment.setSlotEndTime(slot != null ? slot.getEndTime() : now);
+            }
+        }
+    }
+}
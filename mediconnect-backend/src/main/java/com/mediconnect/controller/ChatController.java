@@ -1,5 +1,6 @@
 package com.mediconnect.controller;
 
+import com.mediconnect.dto.chat.ChatHistoryPage;
 import com.mediconnect.dto.chat.ChatMessageRequest;
 import com.mediconnect.dto.chat.ChatMessageResponse;
 import com.mediconnect.enums.UserRole;
@@ -17,6 +18,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -29,18 +31,41 @@ public class ChatController {
     private final UserService userService;
     private final ChatWebSocketHandler chatWebSocketHandler;
 
+    public static final String HISTORY_OLDER_CURSOR_HEADER = "X-Chat-Older-Cursor";
+    public static final String HISTORY_NEWER_CURSOR_HEADER = "X-Chat-Newer-Cursor";
+
     @GetMapping("/history/{appointmentId}")
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT')")
-    @Operation(summary = "Get chat history", description = "Retrieves chat history for a specific appointment")
-    public ResponseEntity<List<ChatMessageResponse>> getChatHistory(@PathVariable String appointmentId) {
+    @Operation(summary = "Get chat history", description = "Retrieves one page of chat history for a specific appointment, "
+            + "the latest messages by default, or the page before or after a cursor (not both). Cursors for the neighbouring pages are returned in the "
+            + HISTORY_OLDER_CURSOR_HEADER + " and " + HISTORY_NEWER_CURSOR_HEADER + " headers")
+    public ResponseEntity<List<ChatMessageResponse>> getChatHistory(
+            @PathVariable String appointmentId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) {
+        // A page is read in one direction only
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
+
         try {
             String userEmail = UserContext.getCurrentUserEmail();
             User user = userService.findByEmail(userEmail);
             String userId = user.getId();
             UserRole userRole = user.getRole();
 
-            List<ChatMessageResponse> history = chatService.getChatHistory(appointmentId, userId, userRole);
-            return ResponseEntity.ok(history);
+            ChatHistoryPage page = chatService.getChatHistory(appointmentId, userId, userRole, before, after, limit);
+
+            // The body stays a plain message list; paging cursors travel in headers
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getOlderCursor() != null) {
+                response.header(HISTORY_OLDER_CURSOR_HEADER, page.getOlderCursor());
+            }
+            if (page.getNewerCursor() != null) {
+                response.header(HISTORY_NEWER_CURSOR_HEADER, page.getNewerCursor());
+            }
+            return response.body(page.getMessages());
         } catch (Exception e) {
             log.error("Error getting chat history for appointment: {}", appointmentId, e);
             return ResponseEntity.badRequest().build();
@@ -58,6 +83,9 @@ public class ChatController {
             UserRole userRole = user.getRole();
 
             ChatMessageResponse response = chatService.sendMessage(request, userId, userRole);
+            
+            // Deliver to the room like messages sent over the socket
+            chatWebSocketHandler.broadcastMessage(request.getAppointmentId(), response);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error sending message for appointment: {}", request.getAppointmentId(), e);
@@ -74,13 +102,8 @@ public class ChatController {
             User user = userService.findByEmail(userEmail);
             String userId = user.getId();
 
-            // Mark messages as read and get the updated messages
-            List<ChatMessageResponse> updatedMessages = chatService.markMessagesAsReadAndGetUpdates(appointmentId, userId);
-            
-            // Extract message IDs for broadcasting
-            List<String> messageIds = updatedMessages.stream()
-                    .map(ChatMessageResponse::getId)
-                    .toList();
+            // Mark messages as read and get the IDs of the ones that changed
+            List<String> messageIds = chatService.markMessagesAsReadAndGetIds(appointmentId, userId);
             
             // Broadcast read status update to all connected users
             if (!messageIds.isEmpty()) {
@@ -110,4 +133,19 @@ public class ChatController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @GetMapping("/unread-counts")
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT')")
+    @Operation(summary = "Get unread message counts", description = "Gets the unread message counts of all active chats of the current user, keyed by appointment ID")
+    public ResponseEntity<Map<String, Long>> getUnreadMessageCounts() {
+        try {
+            String userEmail = UserContext.getCurrentUserEmail();
+            User user = userService.findByEmail(userEmail);
+
+            return ResponseEntity.ok(chatService.getUnreadMessageCounts(user.getId(), user.getRole()));
+        } catch (Exception e) {
+            log.error("Error getting unread message counts", e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
 } 
\ No newline at end of file
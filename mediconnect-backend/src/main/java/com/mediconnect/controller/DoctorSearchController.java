@@ -1,6 +1,7 @@
 package com.mediconnect.controller;
 
 import com.mediconnect.dto.doctor.DoctorSearchResponse;
+import com.mediconnect.dto.doctor.DoctorSuggestionResponse;
 import com.mediconnect.model.DoctorProfile;
 import com.mediconnect.service.DoctorSearchService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,6 +16,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/doctors/search")
 @Tag(name = "Doctor Search", description = "APIs for searching doctors")
@@ -57,6 +60,14 @@ public class DoctorSearchController {
         return ResponseEntity.ok(doctors);
     }
 
+    @GetMapping("/suggestions")
+    @Operation(summary = "Suggest doctors", description = "Typeahead for the search box: doctors and specializations with a word starting with the text, most popular first")
+    public ResponseEntity<List<DoctorSuggestionResponse>> suggest(
+            @Parameter(description = "Text typed so far") @RequestParam String q,
+            @Parameter(description = "Maximum number of suggestions") @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(doctorSearchService.suggest(q, limit));
+    }
+
     private Page<DoctorSearchResponse> convertToSearchResponse(Page<DoctorProfile> doctors) {
         // Implementation of convertToSearchResponse method
         return null; // Placeholder return, actual implementation needed
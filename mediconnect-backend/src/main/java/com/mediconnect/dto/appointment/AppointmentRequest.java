@@ -29,6 +29,9 @@ public class AppointmentRequest {
     @Schema(description = "ID of the slot", example = "slot123")
     private String slotId;
 
+    @Schema(description = "Position of the slot in its calendar, as listed by the day slots", example = "4")
+    private Integer slotIndex;
+
     @NotBlank(message = "Appointment type is required")
     @Schema(description = "Type of appointment", example = "VIDEO", allowableValues = {"ONLINE"})
     private String type;
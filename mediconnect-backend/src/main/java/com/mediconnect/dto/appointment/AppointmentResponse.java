@@ -74,6 +74,8 @@ public class AppointmentResponse {
         response.setPatientId(appointment.getPatientId());
         response.setCalendarId(appointment.getCalendarId());
         response.setSlotId(appointment.getSlotId());
+        response.setStartTime(appointment.getSlotStartTime());
+        response.setEndTime(appointment.getSlotEndTime());
         response.setStatus(appointment.getStatus());
         response.setType(appointment.getType());
         response.setReason(appointment.getReason());
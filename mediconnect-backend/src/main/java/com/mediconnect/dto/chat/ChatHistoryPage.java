@@ -0,0 +1,23 @@
+package com.mediconnect.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of chat history in ascending order, with opaque cursors for the neighbouring pages.
+ * A cursor is null when there is nothing more in that direction.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatHistoryPage {
+
+    private List<ChatMessageResponse> messages;
+    private String olderCursor; // pass as "before" to load the previous page
+    private String newerCursor; // pass as "after" to load the next page
+}
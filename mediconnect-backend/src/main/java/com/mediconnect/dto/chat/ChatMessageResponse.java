@@ -18,6 +18,7 @@ public class ChatMessageResponse {
     
     private String id;
     private String appointmentId;
+    private long seq;
     private String senderId;
     private String senderType;
     private String content;
@@ -33,6 +34,7 @@ public class ChatMessageResponse {
         return ChatMessageResponse.builder()
                 .id(message.getId())
                 .appointmentId(message.getAppointmentId())
+                .seq(message.getSeq())
                 .senderId(message.getSenderId())
                 .senderType(message.getSenderType())
                 .content(message.getContent())
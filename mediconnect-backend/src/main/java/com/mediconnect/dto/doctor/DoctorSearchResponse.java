@@ -1,9 +1,9 @@
 package com.mediconnect.dto.doctor;
 
 import com.mediconnect.dto.AddressResponse;
+import com.mediconnect.dto.user.UserSummary;
 import com.mediconnect.enums.VerificationStatus;
 import com.mediconnect.model.DoctorProfile;
-import com.mediconnect.model.User;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -43,7 +43,7 @@ public class DoctorSearchResponse {
     @Schema(description = "Available slots")
     private int availableSlots;
 
-    public static DoctorSearchResponse fromDoctorProfile(User user, DoctorProfile profile, int slots) {
+    public static DoctorSearchResponse fromDoctorProfile(UserSummary user, DoctorProfile profile, int slots) {
         return new DoctorSearchResponse(
                 user.getId(),
             user.getFullName(),
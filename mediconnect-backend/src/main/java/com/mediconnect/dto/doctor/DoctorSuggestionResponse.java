@@ -0,0 +1,25 @@
+package com.mediconnect.dto.doctor;
+
+import com.mediconnect.enums.SuggestionType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Typeahead suggestion for the doctor search box")
+public class DoctorSuggestionResponse {
+    @Schema(description = "Whether the suggestion is a doctor or a specialization")
+    private SuggestionType type;
+
+    @Schema(description = "Doctor unique id, or the specialization for specialization suggestions")
+    private String id;
+
+    @Schema(description = "Text to show and to search for", example = "Dr. John Smith")
+    private String text;
+
+    @Schema(description = "Doctor's specialization", example = "Cardiology")
+    private String specialization;
+}
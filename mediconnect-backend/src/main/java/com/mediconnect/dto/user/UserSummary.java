@@ -0,0 +1,18 @@
+package com.mediconnect.dto.user;
+
+import com.mediconnect.model.Address;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Display fields of a user, loaded as a projection for list enrichment
+ */
+@Data
+@NoArgsConstructor
+public class UserSummary {
+    private String id;
+    private String fullName;
+    private String email;
+    private Address address;
+    private String profilePhotoId;
+}
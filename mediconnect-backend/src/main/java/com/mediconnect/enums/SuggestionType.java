@@ -0,0 +1,5 @@
+package com.mediconnect.enums;
+
+public enum SuggestionType {
+    DOCTOR, SPECIALIZATION
+}
@@ -51,6 +51,7 @@ public class SlotException extends RuntimeException {
         public static final String MINIMUM_DURATION_VIOLATION = "SLOT_010";
         public static final String NEXT_MONTH_RESTRICTION = "SLOT_011";
         public static final String SLOT_LARGE = "SLOT_012";
+        public static final String CONCURRENT_UPDATE = "SLOT_013";
 
         // Private constructor to prevent instantiation
         private ErrorCodes() {}
@@ -0,0 +1,247 @@
+package com.mediconnect.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodings of chat frames per negotiated WebSocket subprotocol.
+ *
+ * JSON stays the default for clients that ask for no subprotocol. Clients that negotiate
+ * chat-cbor.v1 get the same frames as CBOR maps with the short field tags below and epoch-millis
+ * timestamps, and send their messages the same way. Frames are serialized to JSON once and
+ * transcoded token by token, so the binary form costs no extra object mapping.
+ *
+ * Serialization goes through a per-thread buffer that is reused across frames, leaving one exact-size
+ * array per frame and encoding. An EncodedFrame is immutable once built and is shared by every
+ * recipient session.
+ */
+@Component
+public class ChatFrameCodec {
+
+    public static final String JSON_SUBPROTOCOL = "chat-json.v1";
+    public static final String CBOR_SUBPROTOCOL = "chat-cbor.v1";
+
+    private static final String TIMESTAMP_FIELD = "timestamp";
+
+    // Serialization buffers are kept per thread up to this size; a larger frame gets a one-off buffer
+    private static final int MAX_POOLED_BUFFER_BYTES = 64 * 1024;
+    private static final ThreadLocal<FrameBuffer> BUFFERS = ThreadLocal.withInitial(FrameBuffer::new);
+
+    // JSON field name -> CBOR tag; fields without a tag keep their name
+    private static final Map<String, String> TAGS = new LinkedHashMap<>();
+    static {
+        TAGS.put("type", "t");
+        TAGS.put("appointmentId", "a");
+        TAGS.put("id", "i");
+        TAGS.put("seq", "q");
+        TAGS.put("senderId", "s");
+        TAGS.put("senderType", "st");
+        TAGS.put("content", "c");
+        TAGS.put("fileUrl", "fu");
+        TAGS.put(TIMESTAMP_FIELD, "ts");
+        TAGS.put("sent", "sn");
+        TAGS.put("read", "rd");
+        TAGS.put("readBy", "rb");
+        TAGS.put("fileMetadata", "fm");
+        TAGS.put("fileName", "fn");
+        TAGS.put("mimeType", "mt");
+        TAGS.put("fileSize", "fs");
+        TAGS.put("fileExtension", "fe");
+        TAGS.put("readByUserId", "ru");
+        TAGS.put("messageIds", "mi");
+        TAGS.put("userId", "u");
+        TAGS.put("userRole", "ur");
+        TAGS.put("isOnline", "o");
+        TAGS.put("message", "m");
+    }
+
+    private static final Map<String, String> FIELDS = new HashMap<>();
+    static {
+        TAGS.forEach((field, tag) -> FIELDS.put(tag, field));
+    }
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final CBORFactory cborFactory = cborMapper.getFactory();
+
+    public ChatFrameCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public static boolean isBinary(String subprotocol) {
+        return CBOR_SUBPROTOCOL.equals(subprotocol);
+    }
+
+    /**
+     * Serializes the payload once into a frame that can be sent to any number of sessions
+     */
+    public EncodedFrame encode(Object payload) throws IOException {
+        return new EncodedFrame(toJson(payload));
+    }
+
+    /**
+     * Wraps an already serialized JSON frame, e.g. one received from the chat room bus
+     */
+    public EncodedFrame wrap(byte[] json) {
+        return new EncodedFrame(json);
+    }
+
+    /**
+     * Serializes the payload as UTF-8 JSON
+     */
+    public byte[] toJson(Object payload) throws IOException {
+        FrameBuffer out = borrowBuffer();
+        objectMapper.writeValue(out, payload);
+        return releaseBuffer(out);
+    }
+
+    /**
+     * Transcodes a JSON frame to CBOR, replacing field names with their tags and ISO timestamps with epoch millis
+     */
+    public byte[] toCbor(byte[] json) throws IOException {
+        FrameBuffer out = borrowBuffer();
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    generator.writeFieldName(TAGS.getOrDefault(name, name));
+                } else if (token == JsonToken.VALUE_STRING && TIMESTAMP_FIELD.equals(parser.currentName())) {
+                    writeTimestamp(generator, parser.getText());
+                } else {
+                    generator.copyCurrentEvent(parser);
+                }
+            }
+        }
+        return releaseBuffer(out);
+    }
+
+    /**
+     * Reads a CBOR frame sent by a client into the given type, expanding field tags back to names
+     */
+    public <T> T fromCbor(ByteBuffer payload, Class<T> type) throws IOException {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        JsonNode tree = cborMapper.readTree(bytes);
+        return objectMapper.treeToValue(expandTags(tree), type);
+    }
+
+    private static FrameBuffer borrowBuffer() {
+        FrameBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    private static byte[] releaseBuffer(FrameBuffer buffer) {
+        byte[] bytes = buffer.toByteArray();
+        if (buffer.capacity() > MAX_POOLED_BUFFER_BYTES) {
+            BUFFERS.remove();
+        }
+        return bytes;
+    }
+
+    private static void writeTimestamp(JsonGenerator generator, String text) throws IOException {
+        try {
+            long epochMillis = LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            generator.writeNumber(epochMillis);
+        } catch (DateTimeParseException e) {
+            generator.writeString(text);
+        }
+    }
+
+    private static JsonNode expandTags(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode expanded = ((ObjectNode) node).objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                expanded.set(FIELDS.getOrDefault(field.getKey(), field.getKey()), expandTags(field.getValue()));
+            }
+            return expanded;
+        }
+        if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                ((ArrayNode) node).set(i, expandTags(node.get(i)));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * A chat frame serialized once; each encoding is built on first use and then reused
+     */
+    public final class EncodedFrame {
+
+        private final byte[] json;
+        private volatile TextMessage textMessage;
+        private volatile byte[] cbor;
+
+        private EncodedFrame(byte[] json) {
+            this.json = json;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * The frame in the encoding of the session's subprotocol. Text messages are shared; binary
+         * messages share the bytes but each gets its own buffer, since sending consumes it.
+         */
+        public WebSocketMessage<?> messageFor(WebSocketSession session) throws IOException {
+            if (isBinary(session.getAcceptedProtocol())) {
+                byte[] bytes = cbor;
+                if (bytes == null) {
+                    bytes = toCbor(json);
+                    cbor = bytes;
+                }
+                return new BinaryMessage(bytes);
+            }
+            TextMessage message = textMessage;
+            if (message == null) {
+                // Built from bytes so the payload length is not re-encoded on every send
+                message = new TextMessage(json);
+                textMessage = message;
+            }
+            return message;
+        }
+    }
+
+    private static class FrameBuffer extends ByteArrayOutputStream {
+
+        FrameBuffer() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
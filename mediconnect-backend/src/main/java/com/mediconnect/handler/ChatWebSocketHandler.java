@@ -6,31 +6,51 @@ import com.mediconnect.dto.chat.ChatMessageResponse;
 import com.mediconnect.dto.chat.ReadStatusUpdate;
 import com.mediconnect.dto.chat.UserPresenceUpdate;
 import com.mediconnect.enums.UserRole;
+import com.mediconnect.service.ChatReplayBuffer;
+import com.mediconnect.service.ChatRoomBus;
 import com.mediconnect.service.ChatService;
+import com.mediconnect.util.HashedTimingWheel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
     
     private final ChatService chatService;
     private final ObjectMapper objectMapper;
+    private final ChatFrameCodec chatFrameCodec;
+    private final ChatRoomBus chatRoomBus;
+    private final ChatReplayBuffer chatReplayBuffer;
     
-    // Connection pool: Map<appointmentId, Map<sessionId, WebSocketSession>>
+    // Local sessions: Map<appointmentId, Map<sessionId, WebSocketSession>>; the node is subscribed to each room on the bus
     private final Map<String, Map<String, WebSocketSession>> chatRooms = new ConcurrentHashMap<>();
     
     // User sessions: Map<userId, Set<appointmentId>>
@@ -39,11 +59,38 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     // Cleanup scheduler for inactive connections
     private final ScheduledExecutorService cleanupScheduler = Executors.newScheduledThreadPool(1);
     
-    // Heartbeat scheduler for presence updates
-    private final ScheduledExecutorService heartbeatScheduler = Executors.newScheduledThreadPool(1);
+    // Presence last announced per room: Map<appointmentId, Map<userId, AnnouncedPresence>>
+    private final Map<String, Map<String, AnnouncedPresence>> publishedPresence = new ConcurrentHashMap<>();
     
-    // Track active heartbeats: Map<appointmentId:userId, ScheduledFuture>
-    private final Map<String, java.util.concurrent.ScheduledFuture<?>> activeHeartbeats = new ConcurrentHashMap<>();
+    // The online frame is kept while the user stays present, for snapshots and re-announcements
+    private record AnnouncedPresence(String userRole, ChatFrameCodec.EncodedFrame onlineFrame) {
+    }
+    
+    // Sweeps every room once per rotation and rooms with connection changes on the next tick
+    @Value("${chat.presence.wheel-size:40}")
+    private int presenceWheelSize;
+    
+    @Value("${chat.presence.tick-ms:250}")
+    private long presenceTickMs;
+    
+    private HashedTimingWheel presenceWheel;
+    
+    // Outbound fan-out: per-session buffers drained by a shared pool
+    @Value("${chat.websocket.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+    
+    @Value("${chat.websocket.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+    
+    @Value("${chat.websocket.outbound-threads:4}")
+    private int outboundThreads;
+    
+    // Each session queues at most one drain task, so this bounds the sessions waiting for a thread
+    @Value("${chat.websocket.outbound-queue-capacity:10000}")
+    private int outboundQueueCapacity;
+    
+    private ExecutorService outboundExecutor;
+    private final AtomicInteger outboundThreadCount = new AtomicInteger();
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
@@ -60,40 +107,75 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 return;
             }
             
-            // Add session to chat room
-            chatRooms.computeIfAbsent(appointmentId, k -> new ConcurrentHashMap<>())
-                    .put(session.getId(), session);
+            // All sends go through a bounded per-session queue so a slow client only delays itself
+            WebSocketSession outbound = new QueuedSessionDecorator(session, outboundExecutor,
+                    sendTimeLimitMs, bufferSizeLimit);
+            
+            // Add session to chat room, subscribing this node to the room with its first session
+            chatRooms.compute(appointmentId, (id, roomSessions) -> {
+                if (roomSessions == null) {
+                    roomSessions = new ConcurrentHashMap<>();
+                    chatRoomBus.subscribe(id, this::deliverFrame);
+                }
+                roomSessions.put(session.getId(), outbound);
+                return roomSessions;
+            });
             
             // Add session to user sessions
             userSessions.computeIfAbsent(userId, k -> new ConcurrentHashMap<>())
-                    .put(appointmentId, session);
+                    .put(appointmentId, outbound);
             
             log.info("WebSocket connection established: userId={}, appointmentId={}, sessionId={}", 
                     userId, appointmentId, session.getId());
             
             // Send connection confirmation
-            sendMessage(session, createConnectionMessage("connected", appointmentId));
+            sendMessage(outbound, createConnectionMessage("connected", appointmentId));
             
-            // Broadcast user presence update to other participants
-            log.info("Broadcasting user online status: userId={}, appointmentId={}, userRole={}", userId, appointmentId, userRole.name());
-            broadcastUserPresenceUpdate(appointmentId, userId, userRole.name(), true);
+            // A resuming client only gets the messages it missed
+            Long lastSeq = (Long) session.getAttributes().get("lastSeq");
+            if (lastSeq != null) {
+                replayMissedMessages(outbound, appointmentId, lastSeq);
+            }
             
-            // Start heartbeat for this user
-            startHeartbeat(appointmentId, userId, userRole.name());
+            // Tell the new session who is already here; its own arrival is announced on the next presence tick
+            sendPresenceSnapshot(outbound, appointmentId, userId);
+            chatRoomBus.publish(appointmentId, ChatRoomBus.Kind.PRESENCE_SYNC, null, null);
+            presenceWheel.markDirty(appointmentId);
             
         } catch (Exception e) {
             log.error("Error establishing WebSocket connection", e);
         }
     }
     
+    /**
+     * JSON is used when the client asks for no subprotocol
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(ChatFrameCodec.CBOR_SUBPROTOCOL, ChatFrameCodec.JSON_SUBPROTOCOL);
+    }
+    
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        String payload = message.getPayload();
+        log.debug("Received WebSocket message: {}", payload);
+        handleChatMessage(session, () -> objectMapper.readValue(payload, ChatMessageRequest.class));
+    }
+    
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        log.debug("Received binary WebSocket message: {} bytes", message.getPayloadLength());
+        handleChatMessage(session, () -> chatFrameCodec.fromCbor(message.getPayload(), ChatMessageRequest.class));
+    }
+    
+    private interface ChatRequestReader {
+        ChatMessageRequest read() throws IOException;
+    }
+    
+    private void handleChatMessage(WebSocketSession session, ChatRequestReader reader) {
         try {
-            String payload = message.getPayload();
-            log.debug("Received WebSocket message: {}", payload);
-            
             // Parse message
-            ChatMessageRequest chatRequest = objectMapper.readValue(payload, ChatMessageRequest.class);
+            ChatMessageRequest chatRequest = reader.read();
             
             // Extract user information
             String userId = (String) session.getAttributes().get("userId");
@@ -105,22 +187,24 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 return;
             }
             
-            // Send message through chat service
+            // Send message through chat service - it is queued for persistence, already marked as sent
             ChatMessageResponse response = chatService.sendMessage(chatRequest, userId, userRole);
             
             // Broadcast message to all participants in the chat room
             broadcastMessage(appointmentId, response);
             
-            // Mark the sender's message as sent (not read)
-            chatService.markMessageAsSent(response.getId(), userId);
-            
             log.info("Message processed and broadcasted: appointmentId={}, senderId={}, messageId={}", 
                     appointmentId, userId, response.getId());
             
         } catch (Exception e) {
             log.error("Error handling WebSocket message", e);
             try {
-                sendMessage(session, createErrorMessage("Failed to process message"));
+                String appointmentId = (String) session.getAttributes().get("appointmentId");
+                WebSocketSession outbound = Optional.ofNullable(appointmentId)
+                        .map(chatRooms::get)
+                        .map(roomSessions -> roomSessions.get(session.getId()))
+                        .orElse(session);
+                sendMessage(outbound, createErrorMessage("Failed to process message"));
             } catch (IOException ex) {
                 log.error("Error sending error message", ex);
             }
@@ -134,13 +218,12 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             String appointmentId = (String) session.getAttributes().get("appointmentId");
             String sessionId = session.getId();
             
-            // Remove session from chat room
-            Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
-            if (roomSessions != null) {
-                roomSessions.remove(sessionId);
-                if (roomSessions.isEmpty()) {
-                    chatRooms.remove(appointmentId);
-                }
+            // Remove session from chat room; the node stops receiving the room's traffic with its last session
+            if (appointmentId != null) {
+                chatRooms.computeIfPresent(appointmentId, (id, roomSessions) -> {
+                    roomSessions.remove(sessionId);
+                    return leaveRoomIfEmpty(id, roomSessions);
+                });
             }
             
             // Remove session from user sessions
@@ -155,16 +238,9 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             log.info("WebSocket connection closed: userId={}, appointmentId={}, sessionId={}, status={}", 
                     userId, appointmentId, sessionId, status);
             
-            // Broadcast user presence update to other participants
-            if (userId != null && appointmentId != null) {
-                UserRole userRole = (UserRole) session.getAttributes().get("userRole");
-                if (userRole != null) {
-                    log.info("Broadcasting user offline status: userId={}, appointmentId={}, userRole={}", userId, appointmentId, userRole.name());
-                    broadcastUserPresenceUpdate(appointmentId, userId, userRole.name(), false);
-                }
-                
-                // Stop heartbeat for this user
-                stopHeartbeat(appointmentId, userId);
+            // Departure is announced on the next presence tick, unless the user reconnects before it
+            if (appointmentId != null) {
+                presenceWheel.markDirty(appointmentId);
             }
             
         } catch (Exception e) {
@@ -178,118 +254,153 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
     
     /**
-     * Broadcasts a message to all participants in a chat room
+     * Broadcasts a message to all participants in a chat room, on whichever node they are connected
      */
     public void broadcastMessage(String appointmentId, ChatMessageResponse message) {
-        Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
-        if (roomSessions == null) {
-            log.warn("No active sessions for appointment: {}", appointmentId);
-            return;
+        // Recorded as sent; only messages from other nodes are read back from their frames
+        if (chatRooms.containsKey(appointmentId)) {
+            chatReplayBuffer.record(message);
         }
-        
-        String messageJson;
-        try {
-            messageJson = objectMapper.writeValueAsString(message);
-        } catch (Exception e) {
-            log.error("Error serializing message", e);
-            return;
-        }
-        
-        TextMessage textMessage = new TextMessage(messageJson);
-        
-        // Send to all sessions in the room
-        roomSessions.values().forEach(session -> {
-            try {
-                if (session.isOpen()) {
-                    session.sendMessage(textMessage);
-                }
-            } catch (IOException e) {
-                log.error("Error sending message to session: {}", session.getId(), e);
-            }
-        });
+        publish(appointmentId, ChatRoomBus.Kind.MESSAGE, message, null);
     }
     
     /**
      * Broadcasts read status updates to all participants in a chat room
      */
     public void broadcastReadStatusUpdate(String appointmentId, String readByUserId, List<String> messageIds) {
-        Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
-        if (roomSessions == null) {
-            log.warn("No active sessions for appointment: {}", appointmentId);
-            return;
-        }
+        publish(appointmentId, ChatRoomBus.Kind.READ_RECEIPT,
+                ReadStatusUpdate.create(appointmentId, readByUserId, messageIds), null);
         
-        ReadStatusUpdate readStatusUpdate = ReadStatusUpdate.create(appointmentId, readByUserId, messageIds);
+        log.info("Broadcasted read status update: appointmentId={}, readByUserId={}, messageIds={}", 
+                appointmentId, readByUserId, messageIds);
+    }
+    
+    /**
+     * Broadcasts user presence updates to all participants in a chat room
+     */
+    public void broadcastUserPresenceUpdate(String appointmentId, String userId, String userRole, boolean isOnline) {
+        announcePresence(appointmentId, userId, userRole, isOnline);
+    }
+    
+    /**
+     * Broadcasts a presence update and returns its frame, or null when it could not be serialized
+     */
+    private ChatFrameCodec.EncodedFrame announcePresence(String appointmentId, String userId, String userRole, boolean isOnline) {
+        // Sent to everyone in the room except the user who triggered the update
+        ChatFrameCodec.EncodedFrame frame = publish(appointmentId, ChatRoomBus.Kind.PRESENCE,
+                UserPresenceUpdate.create(appointmentId, userId, userRole, isOnline), userId);
         
-        String messageJson;
+        log.info("Broadcasted user presence update: appointmentId={}, userId={}, userRole={}, isOnline={}", 
+                appointmentId, userId, userRole, isOnline);
+        return frame;
+    }
+    
+    /**
+     * Serializes the payload once and publishes it to the room; returns the frame, or null when serialization failed
+     */
+    private ChatFrameCodec.EncodedFrame publish(String appointmentId, ChatRoomBus.Kind kind, Object payload, String excludeUserId) {
+        ChatFrameCodec.EncodedFrame frame;
         try {
-            messageJson = objectMapper.writeValueAsString(readStatusUpdate);
+            frame = chatFrameCodec.encode(payload);
         } catch (Exception e) {
-            log.error("Error serializing read status update", e);
-            return;
+            log.error("Error serializing {} frame", kind, e);
+            return null;
         }
+        chatRoomBus.publish(appointmentId, kind, frame.getJson(), excludeUserId);
+        return frame;
+    }
+    
+    /**
+     * Delivers a bus frame to this node's sessions of the room
+     */
+    private void deliverFrame(ChatRoomBus.Frame frame) {
+        String appointmentId = frame.appointmentId();
         
-        TextMessage textMessage = new TextMessage(messageJson);
+        if (frame.kind() == ChatRoomBus.Kind.PRESENCE_SYNC) {
+            if (!chatRoomBus.getNodeId().equals(frame.origin())) {
+                announceLocalPresence(appointmentId);
+            }
+            return;
+        }
         
-        // Send to all sessions in the room
-        roomSessions.values().forEach(session -> {
+        if (frame.kind() == ChatRoomBus.Kind.MESSAGE && !chatRoomBus.getNodeId().equals(frame.origin())) {
+            // Every message of a subscribed room passes here or through broadcastMessage, which is
+            // what lets the buffer vouch for gaps
             try {
-                if (session.isOpen()) {
-                    session.sendMessage(textMessage);
-                }
+                chatReplayBuffer.record(objectMapper.readValue(frame.payload(), ChatMessageResponse.class));
             } catch (IOException e) {
-                log.error("Error sending read status update to session: {}", session.getId(), e);
+                log.error("Error reading chat message frame for appointment: {}", appointmentId, e);
             }
-        });
+        }
         
-        log.info("Broadcasted read status update: appointmentId={}, readByUserId={}, messageIds={}", 
-                appointmentId, readByUserId, messageIds);
-    }
-    
-    /**
-     * Broadcasts user presence updates to all participants in a chat room
-     */
-    public void broadcastUserPresenceUpdate(String appointmentId, String userId, String userRole, boolean isOnline) {
         Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
         if (roomSessions == null) {
-            log.warn("No active sessions for appointment: {}", appointmentId);
             return;
         }
         
-        UserPresenceUpdate presenceUpdate = UserPresenceUpdate.create(appointmentId, userId, userRole, isOnline);
-        
-        String messageJson;
-        try {
-            messageJson = objectMapper.writeValueAsString(presenceUpdate);
-        } catch (Exception e) {
-            log.error("Error serializing user presence update", e);
+        // Each encoding is built at most once per frame, however many sessions use it
+        ChatFrameCodec.EncodedFrame encoded = chatFrameCodec.wrap(frame.payload());
+        for (WebSocketSession session : roomSessions.values()) {
+            if (frame.excludeUserId() == null || !frame.excludeUserId().equals(session.getAttributes().get("userId"))) {
+                send(session, encoded);
+            }
+        }
+    }
+    
+    /**
+     * Queues a message on the session's outbound queue; the write happens on the outbound pool, in
+     * order, so the caller never blocks. Sessions that exceed the send-time or buffer limit are closed.
+     */
+    private void enqueue(WebSocketSession session, WebSocketMessage<?> message) {
+        if (!session.isOpen()) {
             return;
         }
-        
-        TextMessage textMessage = new TextMessage(messageJson);
-        
-        // Send to all sessions in the room (except the user who triggered the update)
-        roomSessions.values().forEach(session -> {
+
+        try {
+            session.sendMessage(message);
+        } catch (SessionLimitExceededException e) {
+            log.warn("Evicting slow WebSocket session {}: {}", session.getId(), e.getMessage());
             try {
-                String sessionUserId = (String) session.getAttributes().get("userId");
-                if (session.isOpen() && !userId.equals(sessionUserId)) {
-                    session.sendMessage(textMessage);
-                }
-            } catch (IOException e) {
-                log.error("Error sending user presence update to session: {}", session.getId(), e);
+                session.close(e.getStatus());
+            } catch (IOException | IllegalStateException ex) {
+                log.debug("Error closing slow session: {}", session.getId(), ex);
             }
+        } catch (IOException e) {
+            log.error("Error sending message to session: {}", session.getId(), e);
+        }
+    }
+    
+    @PostConstruct
+    public void startOutboundPool() {
+        outboundExecutor = new ThreadPoolExecutor(outboundThreads, outboundThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(outboundQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "chat-ws-outbound-" + outboundThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         });
-        
-        log.info("Broadcasted user presence update: appointmentId={}, userId={}, userRole={}, isOnline={}", 
-                appointmentId, userId, userRole, isOnline);
+    }
+    
+    @PreDestroy
+    public void stopOutboundPool() {
+        outboundExecutor.shutdown();
     }
     
     /**
      * Sends a message to a specific session
      */
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
-        String messageJson = objectMapper.writeValueAsString(message);
-        session.sendMessage(new TextMessage(messageJson));
+        send(session, chatFrameCodec.encode(message));
+    }
+    
+    /**
+     * Queues an encoded frame in the encoding of the session's subprotocol
+     */
+    private void send(WebSocketSession session, ChatFrameCodec.EncodedFrame frame) {
+        try {
+            enqueue(session, frame.messageFor(session));
+        } catch (IOException e) {
+            log.error("Error encoding frame for session: {}", session.getId(), e);
+        }
     }
     
     /**
@@ -314,6 +425,21 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         );
     }
     
+    /**
+     * Stops receiving the room's traffic once its last local session is gone; returns the sessions
+     * to keep in chatRooms, or null to drop the room
+     */
+    private Map<String, WebSocketSession> leaveRoomIfEmpty(String appointmentId, Map<String, WebSocketSession> roomSessions) {
+        if (!roomSessions.isEmpty()) {
+            return roomSessions;
+        }
+        chatRoomBus.unsubscribe(appointmentId);
+        // Messages published while unsubscribed never reach the buffer, so it can no longer vouch for gaps
+        chatReplayBuffer.evict(appointmentId);
+        log.debug("Removed empty chat room: {}", appointmentId);
+        return null;
+    }
+    
     /**
      * Cleans up inactive connections
      */
@@ -322,13 +448,10 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             log.debug("Starting cleanup of inactive WebSocket connections");
             
             // Remove closed sessions from chat rooms
-            chatRooms.forEach((appointmentId, sessions) -> {
+            chatRooms.keySet().forEach(appointmentId -> chatRooms.computeIfPresent(appointmentId, (id, sessions) -> {
                 sessions.entrySet().removeIf(entry -> !entry.getValue().isOpen());
-                if (sessions.isEmpty()) {
-                    chatRooms.remove(appointmentId);
-                    log.debug("Removed empty chat room: {}", appointmentId);
-                }
-            });
+                return leaveRoomIfEmpty(id, sessions);
+            }));
             
             // Remove closed sessions from user sessions
             userSessions.forEach((userId, appointments) -> {
@@ -363,75 +486,112 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
     
     /**
-     * Starts heartbeat for a user in a specific appointment
+     * Compares the users with an open session in the room against what was last announced and
+     * broadcasts only the differences. A user who leaves and comes back between two visits
+     * produces nothing; an idle room costs one scan per rotation and no frames.
      */
-    private void startHeartbeat(String appointmentId, String userId, String userRole) {
-        String heartbeatKey = appointmentId + ":" + userId;
+    private void reconcilePresence(String appointmentId) {
+        Map<String, String> current = new HashMap<>();
+        Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
+        if (roomSessions != null) {
+            roomSessions.values().stream()
+                    .filter(WebSocketSession::isOpen)
+                    .forEach(session -> {
+                        String userId = (String) session.getAttributes().get("userId");
+                        UserRole userRole = (UserRole) session.getAttributes().get("userRole");
+                        if (userId != null && userRole != null) {
+                            current.put(userId, userRole.name());
+                        }
+                    });
+        }
         
-        // Cancel existing heartbeat if any
-        stopHeartbeat(appointmentId, userId);
+        Map<String, AnnouncedPresence> published = publishedPresence.getOrDefault(appointmentId, Map.of());
         
-        // Schedule heartbeat every 10 seconds
-        java.util.concurrent.ScheduledFuture<?> heartbeat = heartbeatScheduler.scheduleAtFixedRate(() -> {
-            try {
-                // Check if user is still connected
-                Map<String, WebSocketSession> roomSessions = chatRooms.get(appointmentId);
-                if (roomSessions != null) {
-                    boolean userStillConnected = roomSessions.values().stream()
-                            .anyMatch(session -> {
-                                String sessionUserId = (String) session.getAttributes().get("userId");
-                                return userId.equals(sessionUserId) && session.isOpen();
-                            });
-                    
-                    if (userStillConnected) {
-                        log.debug("Broadcasting heartbeat presence: userId={}, appointmentId={}", userId, appointmentId);
-                        broadcastUserPresenceUpdate(appointmentId, userId, userRole, true);
-                    } else {
-                        log.debug("User no longer connected, stopping heartbeat: userId={}, appointmentId={}", userId, appointmentId);
-                        stopHeartbeat(appointmentId, userId);
-                    }
-                } else {
-                    log.debug("Chat room no longer exists, stopping heartbeat: appointmentId={}", appointmentId);
-                    stopHeartbeat(appointmentId, userId);
+        // Sessions of the room on other nodes still need to hear about departures when it empties here
+        Map<String, AnnouncedPresence> announced = announcePresenceChanges(appointmentId, published, current);
+        
+        if (current.isEmpty()) {
+            publishedPresence.remove(appointmentId);
+            presenceWheel.remove(appointmentId);
+        } else {
+            publishedPresence.put(appointmentId, Map.copyOf(announced));
+            presenceWheel.add(appointmentId);
+        }
+    }
+    
+    /**
+     * Returns the presence now announced for the room; users already announced keep their frame
+     */
+    private Map<String, AnnouncedPresence> announcePresenceChanges(String appointmentId, Map<String, AnnouncedPresence> published,
+                                                                   Map<String, String> current) {
+        Map<String, AnnouncedPresence> announced = new HashMap<>();
+        current.forEach((userId, userRole) -> {
+            AnnouncedPresence presence = published.get(userId);
+            if (presence == null) {
+                ChatFrameCodec.EncodedFrame onlineFrame = announcePresence(appointmentId, userId, userRole, true);
+                if (onlineFrame == null) {
+                    // Not announced; retried on the next visit
+                    return;
                 }
-            } catch (Exception e) {
-                log.error("Error in heartbeat for user: userId={}, appointmentId={}", userId, appointmentId, e);
-                stopHeartbeat(appointmentId, userId);
+                presence = new AnnouncedPresence(userRole, onlineFrame);
             }
-        }, 10, 10, java.util.concurrent.TimeUnit.SECONDS);
-        
-        // Store the heartbeat future
-        activeHeartbeats.put(heartbeatKey, heartbeat);
-        
-        log.info("Started heartbeat for user: userId={}, appointmentId={}", userId, appointmentId);
+            announced.put(userId, presence);
+        });
+        published.forEach((userId, presence) -> {
+            if (!current.containsKey(userId)) {
+                announcePresence(appointmentId, userId, presence.userRole(), false);
+            }
+        });
+        return announced;
     }
     
     /**
-     * Stops heartbeat for a user in a specific appointment
+     * Re-announces the users this node has announced as present, for a session that joined the room on another node
      */
-    private void stopHeartbeat(String appointmentId, String userId) {
-        String heartbeatKey = appointmentId + ":" + userId;
-        java.util.concurrent.ScheduledFuture<?> heartbeat = activeHeartbeats.remove(heartbeatKey);
+    private void announceLocalPresence(String appointmentId) {
+        publishedPresence.getOrDefault(appointmentId, Map.of()).forEach((userId, presence) ->
+                chatRoomBus.publish(appointmentId, ChatRoomBus.Kind.PRESENCE, presence.onlineFrame().getJson(), userId));
+    }
+    
+    /**
+     * Sends a resuming session the messages after its lastSeq, or asks it to reload history when the
+     * gap is too large. Messages broadcast while this runs may arrive twice; clients drop duplicates by id.
+     */
+    private void replayMissedMessages(WebSocketSession session, String appointmentId, long lastSeq) throws IOException {
+        Optional<List<ChatMessageResponse>> missed = chatService.getMessagesSince(appointmentId, lastSeq);
+        if (missed.isEmpty()) {
+            sendMessage(session, createConnectionMessage("resync_required", appointmentId));
+            return;
+        }
         
-        if (heartbeat != null && !heartbeat.isCancelled()) {
-            heartbeat.cancel(false);
-            log.info("Stopped heartbeat for user: userId={}, appointmentId={}", userId, appointmentId);
+        for (ChatMessageResponse message : missed.get()) {
+            sendMessage(session, message);
         }
+        log.info("Replayed {} missed messages: appointmentId={}, sessionId={}, lastSeq={}", 
+                missed.get().size(), appointmentId, session.getId(), lastSeq);
     }
     
     /**
-     * Stops all active heartbeats
+     * Sends a newly connected session the announced presence of the other users in its room
      */
-    public void stopAllHeartbeats() {
-        log.info("Stopping all active heartbeats. Count: {}", activeHeartbeats.size());
-        
-        activeHeartbeats.values().forEach(heartbeat -> {
-            if (heartbeat != null && !heartbeat.isCancelled()) {
-                heartbeat.cancel(false);
+    private void sendPresenceSnapshot(WebSocketSession session, String appointmentId, String userId) {
+        Map<String, AnnouncedPresence> published = publishedPresence.getOrDefault(appointmentId, Map.of());
+        for (Map.Entry<String, AnnouncedPresence> entry : published.entrySet()) {
+            if (!entry.getKey().equals(userId)) {
+                send(session, entry.getValue().onlineFrame());
             }
-        });
-        
-        activeHeartbeats.clear();
-        log.info("All heartbeats stopped");
+        }
+    }
+    
+    @PostConstruct
+    public void startPresenceWheel() {
+        presenceWheel = new HashedTimingWheel("chat-presence-wheel", presenceWheelSize, presenceTickMs,
+                this::reconcilePresence);
+        presenceWheel.start();
+    }
+    
+    @PreDestroy
+    public void stopPresenceWheel() {
+        presenceWheel.stop();
     }
-} 
\ No newline at end of file
+}
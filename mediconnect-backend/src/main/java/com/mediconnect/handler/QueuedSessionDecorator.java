@@ -0,0 +1,120 @@
+package com.mediconnect.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session whose sendMessage only queues. Queued messages are written in order by a task on the
+ * shared outbound executor, at most one per session at a time, so callers never block on the socket
+ * and a slow client holds up no more than one executor thread.
+ *
+ * Limits follow ConcurrentWebSocketSessionDecorator with the TERMINATE strategy: once the write in
+ * progress has taken longer than the send-time limit, or the queued payload exceeds the buffer-size
+ * limit, sendMessage throws SessionLimitExceededException and the session should be closed. The
+ * same happens when the executor's bounded queue rejects the drain task.
+ */
+@Slf4j
+class QueuedSessionDecorator extends WebSocketSessionDecorator {
+
+    private final Executor executor;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+
+    private final Queue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+
+    QueuedSessionDecorator(WebSocketSession delegate, Executor executor, int sendTimeLimit, int bufferSizeLimit) {
+        super(delegate);
+        this.executor = executor;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (limitExceeded || !isOpen()) {
+            return;
+        }
+
+        long sendStart = sendStartTime;
+        if (sendStart > 0 && System.currentTimeMillis() - sendStart > sendTimeLimit) {
+            limitExceeded("Send time limit " + sendTimeLimit + " ms exceeded");
+        }
+        if (bufferSize.addAndGet(message.getPayloadLength()) > bufferSizeLimit) {
+            limitExceeded("Buffer size limit " + bufferSizeLimit + " bytes exceeded");
+        }
+
+        queue.add(message);
+        if (!scheduleDrain()) {
+            limitExceeded("Outbound executor saturated");
+        }
+    }
+
+    private void limitExceeded(String reason) {
+        limitExceeded = true;
+        queue.clear();
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * Starts a drain unless one is running; returns false if the executor rejected it
+     */
+    private boolean scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> message;
+            while (!limitExceeded && (message = queue.poll()) != null) {
+                // Sending a binary message consumes its buffer, so take the length first
+                int payloadLength = message.getPayloadLength();
+                sendStartTime = System.currentTimeMillis();
+                try {
+                    getDelegate().sendMessage(message);
+                } catch (IOException | IllegalStateException e) {
+                    log.error("Error sending message to session: {}", getId(), e);
+                } finally {
+                    sendStartTime = 0;
+                    bufferSize.addAndGet(-payloadLength);
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // A message queued after the last poll but before the flag was cleared
+        if (!limitExceeded && !queue.isEmpty() && !scheduleDrain()) {
+            limitExceeded = true;
+            queue.clear();
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Error closing session: {}", getId(), e);
+            }
+        }
+    }
+}
@@ -83,6 +83,16 @@ public class ChatHandshakeInterceptor implements HandshakeInterceptor {
                 attributes.put("userRole", user.getRole());
                 attributes.put("appointmentId", appointmentId);
                 
+                // Highest message seq the client already has; set when it resumes after a reconnect
+                String lastSeq = servletRequest.getServletRequest().getParameter("lastSeq");
+                if (lastSeq != null) {
+                    try {
+                        attributes.put("lastSeq", Long.parseLong(lastSeq));
+                    } catch (NumberFormatException e) {
+                        log.warn("Ignoring invalid lastSeq in WebSocket request: {}", lastSeq);
+                    }
+                }
+                
                 log.info("WebSocket handshake successful for user: {}, appointment: {}", user.getId(), appointmentId);
                 return true;
             }
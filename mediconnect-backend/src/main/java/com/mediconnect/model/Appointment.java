@@ -7,6 +7,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Document(collection = "appointments")
@@ -23,6 +24,9 @@ public class Appointment {
     private AppointmentStatus status; // SCHEDULED, CONFIRMED, CANCELLED, COMPLETED
     private AppointmentType type;
     private String reason;
+
+    // Outbox events written with the last changes and not moved to the outbox yet, see OutboxService
+    private List<OutboxEvent> pendingEvents;
     
     // Timestamps
     private Long createdAt;
@@ -1,6 +1,8 @@
 package com.mediconnect.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.springframework.data.annotation.Version;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -12,6 +14,12 @@ public class Calendar {
     private String doctorId;
     private LocalDate date;
     private List<Slot> slots;
+    @JsonIgnore
+    private CompactDaySlots compact; // Derived from slots on every save, see CalendarCompactCallback
+    @Version
+    private Long revision; // Moved by every write - saves check and bump it, slot updates $inc it - orders the monthly summary updates
+    @JsonIgnore
+    private String writeId; // Tag of the bulk slot write that last replaced the slots
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -23,4 +31,4 @@ public class Calendar {
         private boolean isAvailable;
         private String appointmentId;
     }
-} 
\ No newline at end of file
+} 
@@ -5,6 +5,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 
@@ -25,14 +26,20 @@ public class ChatMessage {
     @Indexed
     private String appointmentId;
     
+    private long seq; // Per-room sequence number, assigned when the message is accepted
+    
     private String senderId;
     private String senderType; // "PATIENT" or "DOCTOR"
+    
+    @Transient
+    private String recipientId; // The other participant, whose unread counter the message increments
     private String content;
     private MessageType type;
     private String fileUrl; // For attachments
     private LocalDateTime timestamp;
     private boolean isSent;
     private boolean isRead;
+    @Builder.Default
     private Set<String> readBy = new HashSet<>(); // Set of user IDs who read the message
     
     // File metadata
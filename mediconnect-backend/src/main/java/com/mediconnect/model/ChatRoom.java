@@ -9,6 +9,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 
@@ -29,6 +30,18 @@ public class ChatRoom {
     private LocalDateTime lastActivity;
     private boolean isActive;
     private int messageCount;
+    private long lastSeq; // Highest message sequence number persisted for this room
+    private long reservedSeq; // Highest sequence number handed out to a writer, reserved with $inc per message
+    
+    // Read watermark per participant: Map<userId, seq of the last message they have read>
+    @Builder.Default
+    private Map<String, Long> readWatermarks = new HashMap<>();
+    
+    // Unread messages per participant: Map<userId, count>, $inc'd when messages are stored and $inc'd
+    // down by the number marked read
+    @Builder.Default
+    private Map<String, Long> unreadCounts = new HashMap<>();
+    private boolean unreadCountsBackfilled; // Unread messages stored before the counters are included
     
     // Transient field for active WebSocket sessions (not persisted)
     @Builder.Default
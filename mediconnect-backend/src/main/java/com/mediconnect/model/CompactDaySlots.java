@@ -0,0 +1,140 @@
+package com.mediconnect.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Compact encoding of the slots of one doctor-day.
+ *
+ * Entry i describes slots[i] of the owning calendar: its start as minute of day and its duration
+ * in minutes (both packed as 2-byte shorts), plus bit i of the availability bitset. A day with
+ * 100 slots fits in about 420 bytes, so availability checks can be answered from a projection
+ * of this field without decoding the full slot objects.
+ *
+ * The availability words are stored as a plain array of longs so that a single slot can be
+ * flipped in place with a $bit update.
+ */
+@Data
+@NoArgsConstructor
+public class CompactDaySlots {
+
+    private byte[] starts;
+    private byte[] durations;
+    private long[] availability;
+
+    public static CompactDaySlots from(LocalDate date, List<Calendar.Slot> slots) {
+        int size = slots != null ? slots.size() : 0;
+        LocalDateTime dayStart = date.atStartOfDay();
+
+        CompactDaySlots compact = new CompactDaySlots();
+        compact.starts = new byte[size * 2];
+        compact.durations = new byte[size * 2];
+        compact.availability = new long[(size + 63) / 64];
+
+        for (int i = 0; i < size; i++) {
+            Calendar.Slot slot = slots.get(i);
+            putShort(compact.starts, i, (int) ChronoUnit.MINUTES.between(dayStart, slot.getStartTime()));
+            putShort(compact.durations, i, (int) ChronoUnit.MINUTES.between(slot.getStartTime(), slot.getEndTime()));
+            compact.setAvailable(i, slot.isAvailable());
+        }
+
+        return compact;
+    }
+
+    public static CompactDaySlots from(Calendar calendar) {
+        return from(calendar.getDate(), calendar.getSlots());
+    }
+
+    public int size() {
+        return starts != null ? starts.length / 2 : 0;
+    }
+
+    public int getStartMinute(int index) {
+        return getShort(starts, index);
+    }
+
+    public int getDurationMinutes(int index) {
+        return getShort(durations, index);
+    }
+
+    public boolean isAvailable(int index) {
+        return (availability[wordIndex(index)] & bitMask(index)) != 0;
+    }
+
+    public void setAvailable(int index, boolean available) {
+        if (available) {
+            availability[wordIndex(index)] |= bitMask(index);
+        } else {
+            availability[wordIndex(index)] &= ~bitMask(index);
+        }
+    }
+
+    /**
+     * Number of available slots starting after the given minute of day
+     */
+    public int countAvailableAfter(int minuteOfDay) {
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (isAvailable(i) && getStartMinute(i) > minuteOfDay) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether an available slot starts after the given minute of day
+     */
+    public boolean hasAvailableSlotAfter(int minuteOfDay) {
+        for (int i = 0; i < size(); i++) {
+            if (isAvailable(i) && getStartMinute(i) > minuteOfDay) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Position of the entry for a slot of the given day, matched on start and duration; -1 if absent
+     */
+    public int indexOf(LocalDate date, Calendar.Slot slot) {
+        int startMinute = (int) ChronoUnit.MINUTES.between(date.atStartOfDay(), slot.getStartTime());
+        int durationMinutes = (int) ChronoUnit.MINUTES.between(slot.getStartTime(), slot.getEndTime());
+
+        for (int i = 0; i < size(); i++) {
+            if (getStartMinute(i) == startMinute && getDurationMinutes(i) == durationMinutes) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Minute of day of a time on the given date, for comparison with slot start minutes
+     */
+    public static int minuteOfDay(LocalDate date, LocalDateTime time) {
+        return (int) ChronoUnit.MINUTES.between(date.atStartOfDay(), time);
+    }
+
+    public static int wordIndex(int index) {
+        return index >>> 6;
+    }
+
+    public static long bitMask(int index) {
+        return 1L << (index & 63);
+    }
+
+    private static void putShort(byte[] target, int index, int value) {
+        target[index * 2] = (byte) (value >> 8);
+        target[index * 2 + 1] = (byte) value;
+    }
+
+    private static int getShort(byte[] source, int index) {
+        return (short) (((source[index * 2] & 0xFF) << 8) | (source[index * 2 + 1] & 0xFF));
+    }
+}
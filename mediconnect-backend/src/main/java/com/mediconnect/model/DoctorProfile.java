@@ -43,6 +43,28 @@ public class DoctorProfile extends BaseEntity {
     private String city;
     private String state;
 
+    // Fields doctor search results are built from, read by the in-memory search indexes
+    public static final String[] SEARCH_FIELDS = {"userId", "specialization", "yearsOfExperience", "bio", "photoUrl",
+            "verificationStatus", "location", "city", "state"};
+
+    /**
+     * Detached copy holding only the search fields, safe to share between requests
+     */
+    public DoctorProfile copySearchFields() {
+        DoctorProfile copy = new DoctorProfile();
+        copy.id = id;
+        copy.userId = userId;
+        copy.specialization = specialization;
+        copy.yearsOfExperience = yearsOfExperience;
+        copy.bio = bio;
+        copy.photoUrl = photoUrl;
+        copy.verificationStatus = verificationStatus;
+        copy.location = location;
+        copy.city = city;
+        copy.state = state;
+        return copy;
+    }
+
     public void setReasons(ReasonHistory reason) {
         if(this.reasons == null) {
             List<ReasonHistory> reasons = new ArrayList<>();
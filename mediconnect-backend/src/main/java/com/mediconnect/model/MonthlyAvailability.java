@@ -0,0 +1,66 @@
+package com.mediconnect.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-doctor per-month availability summary behind the patient month grid.
+ *
+ * Holds one small entry per calendar day, keyed by ISO date, and is kept up to date
+ * incrementally whenever a calendar of the month is saved or one of its slots is booked
+ * or released. Documents are only created by a full rebuild from the calendars, so a
+ * missing document always means "rebuild", never "no availability".
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "monthly_availability")
+public class MonthlyAvailability {
+
+    @Id
+    private String id; // doctorId:yyyy-MM
+    private String doctorId;
+    private String month;
+    private Map<String, DaySummary> days = new HashMap<>();
+    private LocalDateTime updatedAt;
+
+    public static String idOf(String doctorId, YearMonth month) {
+        return doctorId + ":" + month;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class DaySummary {
+        private String calendarId;
+        private int availableCount;
+        private int lastAvailableStart = -1; // minute of day of the latest available slot, -1 if none
+        private long revision; // calendar revision the entry was computed from
+
+        public static DaySummary from(Calendar calendar) {
+            CompactDaySlots compact = calendar.getCompact() != null
+                    ? calendar.getCompact()
+                    : CompactDaySlots.from(calendar);
+
+            DaySummary summary = new DaySummary();
+            summary.calendarId = calendar.getId();
+            summary.revision = calendar.getRevision() != null ? calendar.getRevision() : 0;
+            for (int i = 0; i < compact.size(); i++) {
+                if (compact.isAvailable(i)) {
+                    summary.availableCount++;
+                    summary.lastAvailableStart = Math.max(summary.lastAvailableStart, compact.getStartMinute(i));
+                }
+            }
+            return summary;
+        }
+
+        public boolean hasAvailableSlotAfter(int minuteOfDay) {
+            return lastAvailableStart > minuteOfDay;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mediconnect.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Side effect of a state change, stored together with it and delivered later by the OutboxRelay.
+ *
+ * Delivered events are deleted; events that keep failing stay behind in state FAILED.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "outbox")
+public class OutboxEvent {
+
+    public static final String TYPE_APPOINTMENT_STATUS = "APPOINTMENT_STATUS";
+
+    public static final String STATE_PENDING = "PENDING";
+    public static final String STATE_FAILED = "FAILED";
+
+    @Id
+    private String id;
+    private String type;
+
+    // Appointment status payload
+    private String appointmentId;
+    private String status;
+    private String reason;
+    private List<String> recipientIds;
+
+    // Recipients already served, skipped when the event is retried
+    private List<String> notifiedRecipientIds = new ArrayList<>();
+    private List<String> emailedRecipientIds = new ArrayList<>();
+
+    // Delivery bookkeeping
+    private String state;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    private String claimToken;
+    private LocalDateTime lockedUntil;
+    private String lastError;
+
+    public static OutboxEvent appointmentStatus(Appointment appointment, String status, String reason, List<String> recipientIds) {
+        OutboxEvent event = new OutboxEvent();
+        event.type = TYPE_APPOINTMENT_STATUS;
+        event.appointmentId = appointment.getId();
+        event.status = status;
+        event.reason = reason;
+        event.recipientIds = recipientIds;
+        event.state = STATE_PENDING;
+        event.createdAt = LocalDateTime.now();
+        event.nextAttemptAt = event.createdAt;
+        return event;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mediconnect.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * City, state and coordinates of a pincode, filled by the offline dataset import or by the first
+ * online lookup of the pincode
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "pincode_locations")
+public class PincodeLocation {
+
+    public static final String SOURCE_IMPORT = "IMPORT";
+    public static final String SOURCE_API = "API";
+
+    @Id
+    private String pincode;
+    private String city;
+    private String state;
+    private GeoJsonPoint location;
+    private String source;
+    private LocalDateTime updatedAt;
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,6 +18,7 @@ public interface AppointmentRepository extends MongoRepository<Appointment, Stri
     List<Appointment> findByPatientIdAndStatus(String patientId, String status);
     List<Appointment> findByPatientIdAndCalendarId(String patientId, String calendarId);
     List<Appointment> findByPatientIdAndCalendarIdAndStatusIsNot(String patientId, String calendarId, String status);
+    List<Appointment> findByPatientIdAndCalendarIdInAndStatusIsNot(String patientId, Collection<String> calendarIds, String status);
 
     @Query("{ 'patientId': ?0, 'calendarId': ?1, 'status': { $nin: ['CANCELLED', 'COMPLETED'] } }")
     List<Appointment> findByPatientIdAndCalendarIdActive(String patientId, String calendarId);
@@ -0,0 +1,23 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the compact slot encoding whenever a full Calendar document is written,
+ * so every repository save keeps it in step with the slot list. The revision is the
+ * entity's version, so the save itself checks and bumps it.
+ */
+@Component
+public class CalendarCompactCallback implements BeforeConvertCallback<Calendar> {
+
+    @Override
+    public Calendar onBeforeConvert(Calendar calendar, String collection) {
+        if (calendar.getDate() != null) {
+            calendar.setCompact(CompactDaySlots.from(calendar));
+        }
+        return calendar;
+    }
+}
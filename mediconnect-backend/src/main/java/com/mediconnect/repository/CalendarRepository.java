@@ -7,17 +7,33 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CalendarRepository extends MongoRepository<Calendar, String> {
+public interface CalendarRepository extends MongoRepository<Calendar, String>, CalendarRepositoryCustom {
+    // Slot reads - skip the compact encoding, which is derived from the slots again on save
+    @Query(value = "{ 'doctorId': ?0, 'date': ?1 }", fields = "{ 'compact': 0 }")
     Optional<Calendar> findByDoctorIdAndDate(String doctorId, LocalDate date);
 
-    @Query("{ 'doctorId': ?0, 'date': { $gte: ?1, $lte: ?2 } }")
+    @Query(value = "{ 'doctorId': ?0, 'date': { $gte: ?1, $lte: ?2 } }", fields = "{ 'compact': 0 }")
     List<Calendar> findByDoctorIdAndDateBetween(String doctorId, LocalDate startDate, LocalDate endDate);
 
+    // Availability reads - skip the slot array and return only the compact encoding
+    @Query(value = "{ 'doctorId': ?0, 'date': { $gte: ?1, $lte: ?2 } }", fields = "{ 'slots': 0 }")
+    List<Calendar> findCompactByDoctorIdAndDateBetween(String doctorId, LocalDate startDate, LocalDate endDate);
+
+    @Query(value = "{ 'doctorId': ?0, 'date': ?1 }", fields = "{ 'slots': 0 }")
+    Optional<Calendar> findCompactByDoctorIdAndDate(String doctorId, LocalDate date);
+
+    // One day of many doctors, e.g. today's availability for a page of search results
+    @Query(value = "{ 'doctorId': { $in: ?0 }, 'date': ?1 }", fields = "{ 'slots': 0 }")
+    List<Calendar> findCompactByDoctorIdInAndDate(Collection<String> doctorIds, LocalDate date);
+
+    @Query(value = "{ 'doctorId': ?0, 'date': { $in: ?1 } }", fields = "{ 'compact': 0 }")
     List<Calendar> findByDoctorIdAndDateIn(String doctorId, List<LocalDate> dates);
 
+    @Query(value = "{ '_id': ?0, 'doctorId': ?1 }", fields = "{ 'compact': 0 }")
     Optional<Calendar> findByIdAndDoctorId(String calendarId, String doctorId);
 }
\ No newline at end of file
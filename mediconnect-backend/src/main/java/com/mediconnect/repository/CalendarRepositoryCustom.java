@@ -0,0 +1,48 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface CalendarRepositoryCustom {
+
+    /**
+     * Atomically claims an available slot for an appointment with a single conditional findAndModify,
+     * which also clears the slot's bit in the compact encoding.
+     * @param calendarId the calendar holding the slot
+     * @param slotId the slot to claim
+     * @param slotIndex the slot's position in the calendar as it was listed, or null if unknown; a stale
+     * position only costs a lookup of the current one
+     * @param appointmentId the appointment the slot is booked for
+     * @return the calendar projected to the booked slot as stored after the booking, or empty if the slot
+     * is missing or already taken
+     */
+    Optional<Calendar> bookSlot(String calendarId, String slotId, Integer slotIndex, String appointmentId);
+
+    /**
+     * Releases a slot, but only while it is still held by the given appointment; the position is used
+     * as in {@link #bookSlot}
+     * @return true if the slot was released
+     */
+    boolean releaseSlot(String calendarId, String slotId, Integer slotIndex, String appointmentId);
+
+    /**
+     * Writes the slots of many doctor-days in one unordered bulk request.
+     * Calendars without an id are inserted with a fresh id, unless the day was created concurrently;
+     * calendars with an id are only overwritten while their revision still matches, so a booking or
+     * save made since they were read is never undone.
+     * @return the calendars that were not written because their day changed since it was read
+     */
+    List<Calendar> bulkUpsertSlots(List<Calendar> calendars);
+
+    /**
+     * Counts the available slots starting after the given time, in the database, so the slots
+     * themselves are never loaded
+     * @return the count per doctor id of each calendar
+     */
+    Map<String, Integer> countAvailableSlotsAfter(Collection<String> calendarIds, LocalDateTime after);
+}
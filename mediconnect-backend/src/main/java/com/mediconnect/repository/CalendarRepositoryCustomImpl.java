@@ -0,0 +1,268 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.BooleanOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+@RequiredArgsConstructor
+public class CalendarRepositoryCustomImpl implements CalendarRepositoryCustom {
+
+    // Lookups of a slot's position before giving up on a calendar that keeps changing
+    private static final int SLOT_CHANGE_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final MonthlyAvailabilityRepository monthlyAvailabilityRepository;
+
+    @Override
+    public Optional<Calendar> bookSlot(String calendarId, String slotId, Integer slotIndex, String appointmentId) {
+        // The availability check is part of the filter, so two concurrent bookers of the
+        // same slot can never both match - the loser simply gets no document back
+        return changeSlot(calendarId, slotId, slotIndex, slot -> slot.isAvailable(),
+                (key, criteria) -> criteria.and(key + ".isAvailable").is(true),
+                (key, update) -> update.set(key + ".isAvailable", false).set(key + ".appointmentId", appointmentId),
+                false);
+    }
+
+    @Override
+    public boolean releaseSlot(String calendarId, String slotId, Integer slotIndex, String appointmentId) {
+        return changeSlot(calendarId, slotId, slotIndex, slot -> appointmentId.equals(slot.getAppointmentId()),
+                (key, criteria) -> criteria.and(key + ".appointmentId").is(appointmentId),
+                (key, update) -> update.set(key + ".isAvailable", true).unset(key + ".appointmentId"),
+                true).isPresent();
+    }
+
+    /**
+     * Changes one slot and its availability bit in a single findAndModify.
+     *
+     * The slot's position comes with the request, as listed by the day slots, so the update can
+     * address slots.N and the matching bit of the compact encoding directly while the filter checks
+     * the slot id and state at that position. Only when that misses - the slot was taken, or an edit
+     * of the day moved it - is the position looked up from a projection of slot ids and states.
+     * @return the calendar projected to the changed slot, after the change
+     */
+    private Optional<Calendar> changeSlot(String calendarId, String slotId, Integer slotIndex,
+                                          Predicate<Calendar.Slot> canChange,
+                                          BiFunction<String, Criteria, Criteria> slotFilter,
+                                          BiFunction<String, Update, Update> slotUpdate,
+                                          boolean available) {
+        if (slotIndex != null && slotIndex >= 0) {
+            Calendar changed = changeSlotAt(calendarId, slotId, slotIndex, true, slotFilter, slotUpdate, available);
+            if (changed != null) {
+                return Optional.of(changed);
+            }
+        }
+
+        for (int attempt = 0; attempt < SLOT_CHANGE_ATTEMPTS; attempt++) {
+            Query lookup = Query.query(Criteria.where("id").is(calendarId));
+            lookup.fields().include("slots.id", "slots.isAvailable", "slots.appointmentId", "compact");
+            Calendar current = mongoTemplate.findOne(lookup, Calendar.class);
+            if (current == null || current.getSlots() == null) {
+                return Optional.empty();
+            }
+
+            int index = -1;
+            for (int i = 0; i < current.getSlots().size(); i++) {
+                if (slotId.equals(current.getSlots().get(i).getId())) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0 || !canChange.test(current.getSlots().get(index))) {
+                return Optional.empty();
+            }
+
+            // Calendars written before the compact encoding existed get it on their next save
+            CompactDaySlots compact = current.getCompact();
+            boolean hasCompact = compact != null && compact.size() == current.getSlots().size();
+            Calendar changed = changeSlotAt(calendarId, slotId, index, hasCompact, slotFilter, slotUpdate, available);
+            if (changed != null) {
+                return Optional.of(changed);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The findAndModify of a slot at a known position, or null if the filter did not match
+     */
+    private Calendar changeSlotAt(String calendarId, String slotId, int index, boolean withCompact,
+                                  BiFunction<String, Criteria, Criteria> slotFilter,
+                                  BiFunction<String, Update, Update> slotUpdate,
+                                  boolean available) {
+        String key = "slots." + index;
+        Criteria criteria = slotFilter.apply(key, Criteria.where("id").is(calendarId).and(key + ".id").is(slotId));
+        Update update = slotUpdate.apply(key, new Update())
+                .set("updatedAt", LocalDateTime.now())
+                .inc("revision", 1);
+        if (withCompact) {
+            // The compact encoding is always written together with the slots, so where it exists it covers this one
+            criteria.and("compact").exists(true);
+            String word = "compact.availability." + CompactDaySlots.wordIndex(index);
+            if (available) {
+                update.bitwise(word).or(CompactDaySlots.bitMask(index));
+            } else {
+                update.bitwise(word).and(~CompactDaySlots.bitMask(index));
+            }
+        }
+
+        Query query = Query.query(criteria);
+        query.fields().include("doctorId", "date", "compact", "updatedAt", "revision").slice("slots", index, 1);
+        Calendar changed = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Calendar.class);
+        // The summary entry is computed from the post-image, so it includes concurrent changes made before this one
+        if (changed != null && changed.getCompact() != null) {
+            monthlyAvailabilityRepository.updateDays(List.of(changed));
+        }
+        return changed;
+    }
+
+    @Override
+    public List<Calendar> bulkUpsertSlots(List<Calendar> calendars) {
+        if (calendars.isEmpty()) {
+            return List.of();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // Tags the updates of this call, so the ones that applied can be told apart afterwards
+        String writeId = new ObjectId().toHexString();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Calendar.class);
+        Set<Integer> inserts = new HashSet<>();
+
+        for (int i = 0; i < calendars.size(); i++) {
+            Calendar calendar = calendars.get(i);
+            CompactDaySlots compact = CompactDaySlots.from(calendar);
+            if (calendar.getId() == null) {
+                // A day created by someone else in the meantime matches the filter and is left alone
+                inserts.add(i);
+                Query query = Query.query(Criteria.where("doctorId").is(calendar.getDoctorId())
+                        .and("date").is(calendar.getDate()));
+                Update update = new Update()
+                        .setOnInsert("_id", new ObjectId())
+                        .setOnInsert("slots", calendar.getSlots())
+                        .setOnInsert("compact", compact)
+                        // The first revision a versioned save gives a new calendar
+                        .setOnInsert("revision", 0L)
+                        .setOnInsert("createdAt", now)
+                        .setOnInsert("updatedAt", now);
+                bulkOps.upsert(query, update);
+            } else {
+                // Every booking and save moves the revision, so this only matches the state the slots were merged into
+                Query query = Query.query(Criteria.where("id").is(calendar.getId())
+                        .and("revision").is(calendar.getRevision()));
+                Update update = new Update()
+                        .set("slots", calendar.getSlots())
+                        .set("compact", compact)
+                        .inc("revision", 1)
+                        .set("writeId", writeId)
+                        .set("updatedAt", now);
+                bulkOps.updateOne(query, update);
+            }
+        }
+
+        BulkWriteResult result = bulkOps.execute();
+
+        Map<Integer, String> insertedIds = new HashMap<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            insertedIds.put(upsert.getIndex(), upsert.getId().asObjectId().getValue().toHexString());
+        }
+
+        Set<String> changedIds = new HashSet<>();
+        if (result.getModifiedCount() + insertedIds.size() < calendars.size()) {
+            List<String> updatedIds = new ArrayList<>();
+            for (int i = 0; i < calendars.size(); i++) {
+                if (!inserts.contains(i)) {
+                    updatedIds.add(calendars.get(i).getId());
+                }
+            }
+            Query query = Query.query(Criteria.where("id").in(updatedIds).and("writeId").ne(writeId));
+            query.fields().include("id");
+            mongoTemplate.find(query, Calendar.class).forEach(calendar -> changedIds.add(calendar.getId()));
+        }
+
+        List<Calendar> written = new ArrayList<>();
+        List<Calendar> changed = new ArrayList<>();
+        for (int i = 0; i < calendars.size(); i++) {
+            Calendar calendar = calendars.get(i);
+            boolean stored = inserts.contains(i) ? insertedIds.containsKey(i) : !changedIds.contains(calendar.getId());
+            if (!stored) {
+                changed.add(calendar);
+                continue;
+            }
+            if (inserts.contains(i)) {
+                calendar.setId(insertedIds.get(i));
+                calendar.setCreatedAt(now);
+                calendar.setRevision(0L);
+            } else {
+                calendar.setRevision(nextRevision(calendar));
+            }
+            // The summary below is built from the entity, so it has to carry what was just written
+            calendar.setCompact(CompactDaySlots.from(calendar));
+            calendar.setUpdatedAt(now);
+            if (!inserts.contains(i)) {
+                calendar.setWriteId(writeId);
+            }
+            written.add(calendar);
+        }
+
+        monthlyAvailabilityRepository.updateDays(written);
+        return changed;
+    }
+
+    @Override
+    public Map<String, Integer> countAvailableSlotsAfter(Collection<String> calendarIds, LocalDateTime after) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (calendarIds.isEmpty()) {
+            return counts;
+        }
+
+        // Converted as the mapping layer stores slot times, which the aggregation pipeline does not do for values
+        Object afterValue = mongoTemplate.getConverter().convertToMongoType(after);
+        ArrayOperators.Filter availableAfter = ArrayOperators.Filter.filter("slots").as("slot")
+                .by(BooleanOperators.And.and(
+                        ComparisonOperators.valueOf("slot.isAvailable").equalToValue(true),
+                        ComparisonOperators.valueOf("slot.startTime").greaterThanValue(afterValue)));
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("id").in(calendarIds).and("slots").exists(true)),
+                Aggregation.project("doctorId").and(ArrayOperators.Size.lengthOfArray(availableAfter)).as("available"));
+
+        for (Document row : mongoTemplate.aggregate(aggregation, Calendar.class, Document.class)) {
+            String doctorId = row.getString("doctorId");
+            Number available = row.get("available", Number.class);
+            if (doctorId != null && available != null) {
+                counts.put(doctorId, available.intValue());
+            }
+        }
+        return counts;
+    }
+
+    private static long nextRevision(Calendar calendar) {
+        // What the guarded $inc stores: the update only applies at the revision that was read
+        return calendar.getRevision() == null ? 1 : calendar.getRevision() + 1;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives calendars stored before the revision existed their first one.
+ *
+ * The revision is the calendar's version, and a calendar loaded without one would be saved as a
+ * new document. Runs before the application serves requests, so no such calendar is saved first;
+ * the update is a single command and a no-op once every calendar has a revision.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CalendarRevisionBackfill {
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void backfillRevisions() {
+        try {
+            long backfilled = mongoTemplate.updateMulti(Query.query(Criteria.where("revision").exists(false)),
+                    new Update().set("revision", 0L), Calendar.class).getModifiedCount();
+            if (backfilled > 0) {
+                log.info("Backfilled the revision of {} calendars", backfilled);
+            }
+        } catch (Exception e) {
+            log.error("Error backfilling calendar revisions", e);
+        }
+    }
+}
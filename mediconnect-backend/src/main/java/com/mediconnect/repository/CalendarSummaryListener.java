@@ -0,0 +1,27 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Pushes every full Calendar save into the monthly availability summary
+ */
+@Component
+@RequiredArgsConstructor
+public class CalendarSummaryListener extends AbstractMongoEventListener<Calendar> {
+
+    private final MonthlyAvailabilityRepository monthlyAvailabilityRepository;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Calendar> event) {
+        Calendar calendar = event.getSource();
+        if (calendar.getDoctorId() != null && calendar.getDate() != null) {
+            monthlyAvailabilityRepository.updateDays(List.of(calendar));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Appointment;
+import com.mediconnect.service.ChatSecurityService;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Drops cached chat access decisions whenever an appointment is saved (confirm, cancel, complete,
+ * reschedule) or deleted. A save inside a transaction is only visible once it commits, so the
+ * decisions are dropped then - dropped earlier, they could be cached again from the old state.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatAccessCacheListener extends AbstractMongoEventListener<Appointment> {
+
+    private final ChatSecurityService chatSecurityService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Appointment> event) {
+        String appointmentId = event.getSource().getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            chatSecurityService.invalidate(appointmentId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                chatSecurityService.invalidate(appointmentId);
+            }
+        });
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Appointment> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId objectId) {
+            chatSecurityService.invalidate(objectId.toHexString());
+        } else if (id != null) {
+            chatSecurityService.invalidate(id.toString());
+        }
+    }
+}
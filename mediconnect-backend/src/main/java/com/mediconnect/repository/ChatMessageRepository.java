@@ -1,6 +1,7 @@
 package com.mediconnect.repository;
 
 import com.mediconnect.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -9,14 +10,17 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface ChatMessageRepository extends MongoRepository<ChatMessage, String> {
+public interface ChatMessageRepository extends MongoRepository<ChatMessage, String>, ChatMessageRepositoryCustom {
     
-    @Query("{'appointmentId': ?0}")
+    @Query(value = "{'appointmentId': ?0}", sort = "{'timestamp': 1, '_id': 1}")
     List<ChatMessage> findByAppointmentIdOrderByTimestampAsc(String appointmentId);
     
-    @Query("{'appointmentId': ?0, 'timestamp': {$gte: ?1}}")
+    @Query(value = "{'appointmentId': ?0, 'timestamp': {$gte: ?1}}", sort = "{'timestamp': 1, '_id': 1}")
     List<ChatMessage> findByAppointmentIdAndTimestampAfterOrderByTimestampAsc(String appointmentId, LocalDateTime timestamp);
     
+    @Query(value = "{'appointmentId': ?0, 'seq': {$gt: ?1}}", sort = "{'seq': 1}")
+    List<ChatMessage> findByAppointmentIdAndSeqGreaterThan(String appointmentId, long seq, Pageable pageable);
+    
     @Query("{'appointmentId': ?0, 'senderId': ?1, 'isRead': false}")
     List<ChatMessage> findUnreadMessagesByAppointmentIdAndSenderId(String appointmentId, String senderId);
     
@@ -32,6 +36,9 @@ public interface ChatMessageRepository extends MongoRepository<ChatMessage, Stri
     @Query(value = "{'appointmentId': ?0, 'isRead': false}", count = true)
     long countUnreadMessagesByAppointmentId(String appointmentId);
     
+    @Query(value = "{'appointmentId': ?0, 'senderId': {$ne: ?1}, 'isRead': false}", count = true)
+    long countUnreadMessagesByAppointmentIdAndOtherSenderId(String appointmentId, String userId);
+    
     @Query(value = "{'appointmentId': ?0, 'senderId': ?1, 'isRead': false}", count = true)
     long countUnreadMessagesByAppointmentIdAndSenderId(String appointmentId, String senderId);
 } 
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.util.ChatCursor;
+
+import java.util.List;
+
+public interface ChatMessageRepositoryCustom {
+
+    /**
+     * Up to limit messages of a room in ascending (timestamp, id) order: strictly before the
+     * before cursor, strictly after the after cursor, or the latest ones when neither is given
+     */
+    List<ChatMessage> findPage(String appointmentId, ChatCursor before, ChatCursor after, int limit);
+
+    /**
+     * Marks the unread messages of other senders with afterSeq &lt; seq &lt;= upToSeq as read by the
+     * reader in a single update. Without afterSeq all unread messages up to upToSeq are covered,
+     * including ones stored before sequencing.
+     */
+    MarkedRead markReadUpTo(String appointmentId, String readerId, Long afterSeq, long upToSeq);
+
+    /**
+     * Unread messages of other senders that were stored before sequencing, the ones the room's
+     * unread counters do not include yet
+     */
+    long countUnsequencedUnread(String appointmentId, String readerId);
+
+    /**
+     * Ids of the messages found unread, for broadcasting, and how many this call changed - with
+     * concurrent readers some ids may have been marked by the other one
+     */
+    record MarkedRead(List<String> messageIds, long count) {
+    }
+}
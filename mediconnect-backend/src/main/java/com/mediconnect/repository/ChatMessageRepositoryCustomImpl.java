@@ -0,0 +1,92 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.util.ChatCursor;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ChatMessageRepositoryCustomImpl implements ChatMessageRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<ChatMessage> findPage(String appointmentId, ChatCursor before, ChatCursor after, int limit) {
+        Criteria criteria = Criteria.where("appointmentId").is(appointmentId);
+        Sort.Direction direction;
+
+        // Both branches walk the {appointmentId, timestamp, _id} index from the cursor position
+        if (after != null) {
+            criteria.orOperator(
+                    Criteria.where("timestamp").gt(after.getTimestamp()),
+                    Criteria.where("timestamp").is(after.getTimestamp()).and("id").gt(after.getMessageId()));
+            direction = Sort.Direction.ASC;
+        } else {
+            if (before != null) {
+                criteria.orOperator(
+                        Criteria.where("timestamp").lt(before.getTimestamp()),
+                        Criteria.where("timestamp").is(before.getTimestamp()).and("id").lt(before.getMessageId()));
+            }
+            direction = Sort.Direction.DESC;
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(direction, "timestamp", "id"))
+                .limit(limit);
+
+        List<ChatMessage> messages = new ArrayList<>(mongoTemplate.find(query, ChatMessage.class));
+        if (direction == Sort.Direction.DESC) {
+            Collections.reverse(messages);
+        }
+        return messages;
+    }
+
+    @Override
+    public MarkedRead markReadUpTo(String appointmentId, String readerId, Long afterSeq, long upToSeq) {
+        Criteria criteria = Criteria.where("appointmentId").is(appointmentId)
+                .and("senderId").ne(readerId)
+                .and("isRead").is(false);
+        if (afterSeq != null) {
+            criteria.and("seq").gt(afterSeq).lte(upToSeq);
+        } else {
+            // Messages stored before sequencing have no seq and all precede the first sequenced one
+            criteria.orOperator(
+                    Criteria.where("seq").lte(upToSeq),
+                    Criteria.where("seq").exists(false));
+        }
+
+        // Ids only, from the {appointmentId, seq} index
+        Query idQuery = Query.query(criteria);
+        idQuery.fields().include("id");
+        List<String> ids = mongoTemplate.find(idQuery, ChatMessage.class).stream()
+                .map(ChatMessage::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return new MarkedRead(ids, 0);
+        }
+
+        // isRead=false stays in the filter, so the modified count is exactly what this call marked
+        UpdateResult result = mongoTemplate.updateMulti(Query.query(criteria),
+                new Update().set("isRead", true).addToSet("readBy", readerId),
+                ChatMessage.class);
+        return new MarkedRead(ids, result.getModifiedCount());
+    }
+
+    @Override
+    public long countUnsequencedUnread(String appointmentId, String readerId) {
+        return mongoTemplate.count(Query.query(Criteria.where("appointmentId").is(appointmentId)
+                        .and("senderId").ne(readerId)
+                        .and("isRead").is(false)
+                        .and("seq").exists(false)),
+                ChatMessage.class);
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChatRoomRepository extends MongoRepository<ChatRoom, String> {
+public interface ChatRoomRepository extends MongoRepository<ChatRoom, String>, ChatRoomRepositoryCustom {
     
     Optional<ChatRoom> findByAppointmentId(String appointmentId);
     
@@ -29,6 +29,9 @@ public interface ChatRoomRepository extends MongoRepository<ChatRoom, String> {
     @Query("{'lastActivity': {$lt: ?0}}")
     List<ChatRoom> findInactiveRooms(LocalDateTime cutoffTime);
     
+    @Query(value = "{'unreadCountsBackfilled': {$ne: true}}", fields = "{'appointmentId': 1, 'patientId': 1, 'doctorId': 1}")
+    List<ChatRoom> findRoomsWithoutBackfilledUnreadCounts();
+    
     @Query(value = "{'appointmentId': ?0}", exists = true)
     boolean existsByAppointmentId(String appointmentId);
     
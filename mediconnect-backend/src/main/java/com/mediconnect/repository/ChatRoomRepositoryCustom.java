@@ -0,0 +1,18 @@
+package com.mediconnect.repository;
+
+import java.util.Map;
+
+public interface ChatRoomRepositoryCustom {
+
+    /**
+     * Moves a participant's read watermark forward to seq, never back, and takes the messages they
+     * just read off their unread counter
+     */
+    void markRead(String appointmentId, String userId, long seq, long readCount);
+
+    /**
+     * Adds the unread messages stored before the counters existed to a room's counters, once;
+     * returns false if the room was backfilled already
+     */
+    boolean backfillUnreadCounts(String appointmentId, Map<String, Long> unsequencedUnread);
+}
@@ -0,0 +1,37 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.ChatRoom;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ChatRoomRepositoryCustomImpl implements ChatRoomRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void markRead(String appointmentId, String userId, long seq, long readCount) {
+        Update update = new Update().max("readWatermarks." + userId, seq);
+        if (readCount > 0) {
+            update.inc("unreadCounts." + userId, -readCount);
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("appointmentId").is(appointmentId)), update, ChatRoom.class);
+    }
+
+    @Override
+    public boolean backfillUnreadCounts(String appointmentId, Map<String, Long> unsequencedUnread) {
+        Update update = new Update().set("unreadCountsBackfilled", true);
+        unsequencedUnread.forEach((userId, count) -> update.inc("unreadCounts." + userId, count));
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("appointmentId").is(appointmentId).and("unreadCountsBackfilled").ne(true)),
+                update,
+                ChatRoom.class);
+        return result.getModifiedCount() > 0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.service.DoctorGeoIndex;
+import com.mediconnect.service.DoctorNameIndex;
+import com.mediconnect.service.DoctorSuggestionIndex;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the in-memory doctor search indexes in step with saved and deleted profiles, including verification changes
+ */
+@Component
+@RequiredArgsConstructor
+public class DoctorSearchIndexListener extends AbstractMongoEventListener<DoctorProfile> {
+
+    private final DoctorGeoIndex doctorGeoIndex;
+    private final DoctorNameIndex doctorNameIndex;
+    private final DoctorSuggestionIndex doctorSuggestionIndex;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<DoctorProfile> event) {
+        doctorGeoIndex.update(event.getSource());
+        doctorNameIndex.updateProfile(event.getSource());
+        doctorSuggestionIndex.updateProfile(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<DoctorProfile> event) {
+        Object id = event.getSource().get("_id");
+        String profileId = id instanceof ObjectId objectId ? objectId.toHexString() : id != null ? id.toString() : null;
+        if (profileId != null) {
+            doctorGeoIndex.remove(profileId);
+            doctorNameIndex.removeProfile(profileId);
+            doctorSuggestionIndex.removeProfile(profileId);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.User;
+import com.mediconnect.service.DoctorNameIndex;
+import com.mediconnect.service.DoctorSuggestionIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Re-indexes a doctor's name in the in-memory name and suggestion indexes when their user is saved
+ */
+@Component
+@RequiredArgsConstructor
+public class DoctorSearchIndexUserListener extends AbstractMongoEventListener<User> {
+
+    private final DoctorNameIndex doctorNameIndex;
+    private final DoctorSuggestionIndex doctorSuggestionIndex;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        User user = event.getSource();
+        doctorNameIndex.updateUserName(user.getId(), user.getFullName());
+        doctorSuggestionIndex.updateUserName(user.getId(), user.getFullName());
+    }
+}
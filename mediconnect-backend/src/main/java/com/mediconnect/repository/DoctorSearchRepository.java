@@ -3,7 +3,6 @@ package com.mediconnect.repository;
 import com.mediconnect.model.DoctorProfile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.geo.Distance;
@@ -14,11 +13,14 @@ import java.util.List;
 
 @Repository
 public interface DoctorSearchRepository extends MongoRepository<DoctorProfile, String> {
-    
+
     @Query(value = "{'specialization': ?0, 'yearsOfExperience': {$gte: ?1}, 'verificationStatus': 'VERIFIED'}")
     Page<DoctorProfile> findBySpecializationAndMinExperience(String specialization, Integer minExperience, Pageable pageable);
 
-    @Query(value = "{'specialization': ?0, 'verificationStatus': 'VERIFIED', 'location': {$near: {$geometry: {type: 'Point', coordinates: [?2, ?3]}, $maxDistance: ?4}}}")
+    // Without a minimum experience every doctor matches, as no yearsOfExperience is of type minKey
+    @Query(value = "{'specialization': ?0, 'verificationStatus': 'VERIFIED', "
+            + "'yearsOfExperience': ?#{ [1] == null ? { '$not': { '$type': 'minKey' } } : { '$gte': [1] } }, "
+            + "'location': {$near: {$geometry: {type: 'Point', coordinates: [?2, ?3]}, $maxDistance: ?4}}}")
     Page<DoctorProfile> findBySpecializationNearLocation(
         String specialization, 
         Integer minExperience, 
@@ -28,8 +30,11 @@ public interface DoctorSearchRepository extends MongoRepository<DoctorProfile, S
         Pageable pageable
     );
 
-    @Query(value = "{'verificationStatus': 'VERIFIED', 'location': {$near: {$geometry: {type: 'Point', coordinates: [?0, ?1]}, $maxDistance: ?2}}}")
+    @Query(value = "{'verificationStatus': 'VERIFIED', "
+            + "'yearsOfExperience': ?#{ [0] == null ? { '$not': { '$type': 'minKey' } } : { '$gte': [0] } }, "
+            + "'location': {$near: {$geometry: {type: 'Point', coordinates: [?1, ?2]}, $maxDistance: ?3}}}")
     Page<DoctorProfile> findByLocationNear(
+        Integer minExperience,
         Double longitude, 
         Double latitude, 
         Double maxDistanceInMeters,
@@ -44,24 +49,4 @@ public interface DoctorSearchRepository extends MongoRepository<DoctorProfile, S
 
     @Query(value = "{'city': ?0, 'state': ?1, 'verificationStatus': 'VERIFIED'}")
     Page<DoctorProfile> findByCityAndState(String city, String state, Pageable pageable);
-
-    @Query(value = "[{ $lookup: { from: 'users', localField: 'userId', foreignField: '_id', as: 'user' } }, " +
-            "{ $unwind: '$user' }, " +
-            "{ $match: { $text: { $search: ?0, $caseSensitive: false, $diacriticSensitive: false }, 'specialization': ?1, 'verificationStatus': 'VERIFIED' } }]")
-    Page<DoctorProfile> findByFullNameRegexAndSpecialization(String name, String specialization, Pageable pageable);
-
-    @Aggregation(pipeline = {
-            "{ $search: { " +
-                    "    index: 'default', " +
-                    "    text: { " +
-                    "      query: ?0, " +
-                    "      path: ['fullName'], " +
-                    "      fuzzy: { maxEdits: 2, prefixLength: 1 } " +
-                    "    } " +
-                    "} }",
-            "{ $lookup: { from: 'users', localField: 'userId', foreignField: '_id', as: 'user' } }",
-            "{ $unwind: '$user' }",
-            "{ $match: { 'verificationStatus': 'VERIFIED' } }"
-    })
-    List<DoctorProfile> findByFullNameRegex(String name, Pageable pageable);
 } 
\ No newline at end of file
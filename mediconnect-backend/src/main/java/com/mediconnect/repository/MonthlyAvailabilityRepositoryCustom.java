@@ -0,0 +1,26 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.MonthlyAvailability;
+
+import java.time.YearMonth;
+import java.util.Collection;
+
+public interface MonthlyAvailabilityRepositoryCustom {
+
+    /**
+     * Refreshes the day entries of the given calendars in their existing month summaries
+     */
+    void updateDays(Collection<Calendar> calendars);
+
+    /**
+     * Drops the day entry of a deleted calendar
+     */
+    void removeDay(Calendar calendar);
+
+    /**
+     * Computes the month summary from the doctor's calendars and creates it if missing; a summary
+     * that exists by then only has its days brought up to the calendars' revisions
+     */
+    MonthlyAvailability rebuild(String doctorId, YearMonth month);
+}
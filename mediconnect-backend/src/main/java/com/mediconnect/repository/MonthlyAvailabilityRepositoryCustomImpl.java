@@ -0,0 +1,101 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.MonthlyAvailability;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class MonthlyAvailabilityRepositoryCustomImpl implements MonthlyAvailabilityRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void updateDays(Collection<Calendar> calendars) {
+        if (calendars.isEmpty()) {
+            return;
+        }
+
+        // No upsert: a month without a summary is rebuilt in full on its next read
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyAvailability.class);
+        for (Calendar calendar : calendars) {
+            MonthlyAvailability.DaySummary day = MonthlyAvailability.DaySummary.from(calendar);
+            String dayKey = dayKey(calendar.getDate());
+
+            // Concurrent bookings of one day can arrive out of order; an entry computed from an
+            // older revision of the calendar never replaces a newer one
+            Query query = byMonth(calendar.getDoctorId(), calendar.getDate());
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where(dayKey + ".revision").lt(day.getRevision()),
+                    Criteria.where(dayKey + ".revision").exists(false)));
+
+            Update update = new Update()
+                    .set(dayKey, day)
+                    .set("updatedAt", LocalDateTime.now());
+            bulkOps.updateOne(query, update);
+        }
+        bulkOps.execute();
+    }
+
+    @Override
+    public void removeDay(Calendar calendar) {
+        Update update = new Update()
+                .unset(dayKey(calendar.getDate()))
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(byMonth(calendar.getDoctorId(), calendar.getDate()), update, MonthlyAvailability.class);
+    }
+
+    @Override
+    public MonthlyAvailability rebuild(String doctorId, YearMonth month) {
+        List<Calendar> calendars = findCalendars(doctorId, month);
+
+        Map<String, MonthlyAvailability.DaySummary> days = new HashMap<>();
+        for (Calendar calendar : calendars) {
+            days.put(calendar.getDate().toString(), MonthlyAvailability.DaySummary.from(calendar));
+        }
+
+        // Only creates the summary: one written in the meantime - by another rebuild, or kept up
+        // by updateDays since - is not replaced, its entries are moved forward by revision instead
+        String id = MonthlyAvailability.idOf(doctorId, month);
+        Update update = new Update()
+                .setOnInsert("doctorId", doctorId)
+                .setOnInsert("month", month.toString())
+                .setOnInsert("days", days)
+                .set("updatedAt", LocalDateTime.now());
+        UpdateResult result = mongoTemplate.upsert(Query.query(Criteria.where("id").is(id)), update, MonthlyAvailability.class);
+
+        if (result.getUpsertedId() != null) {
+            // Slots changed between the read and the insert found no summary to update
+            updateDays(findCalendars(doctorId, month));
+        } else {
+            updateDays(calendars);
+        }
+        return mongoTemplate.findById(id, MonthlyAvailability.class);
+    }
+
+    private List<Calendar> findCalendars(String doctorId, YearMonth month) {
+        return mongoTemplate.find(Query.query(Criteria.where("doctorId").is(doctorId)
+                .and("date").gte(month.atDay(1)).lte(month.atEndOfMonth())), Calendar.class);
+    }
+
+    private Query byMonth(String doctorId, LocalDate date) {
+        return Query.query(Criteria.where("id").is(MonthlyAvailability.idOf(doctorId, YearMonth.from(date))));
+    }
+
+    private String dayKey(LocalDate date) {
+        return "days." + date;
+    }
+}
@@ -0,0 +1,9 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxRepository extends MongoRepository<OutboxEvent, String>, OutboxRepositoryCustom {
+}
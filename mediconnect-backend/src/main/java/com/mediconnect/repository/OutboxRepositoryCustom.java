@@ -0,0 +1,43 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.OutboxEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxRepositoryCustom {
+
+    /**
+     * Inserts events that carry their ids already; the ones stored before are skipped
+     */
+    void insertIfAbsent(Collection<OutboxEvent> events);
+
+    /**
+     * Leases up to limit due events to the caller; other relays skip them until the lease runs out
+     */
+    List<OutboxEvent> claimBatch(int limit, Duration lease);
+
+    /**
+     * Extends the lease of events still being delivered under the given claims
+     */
+    void renewLeases(Collection<String> eventIds, Collection<String> claimTokens, Duration lease);
+
+    /**
+     * Records that one recipient of an event got its notification or its email
+     * @param field notifiedRecipientIds or emailedRecipientIds
+     */
+    void markRecipientDone(String eventId, String field, String recipientId);
+
+    /**
+     * Deletes a delivered event, unless its lease ran out and another relay claimed it since
+     */
+    void deleteClaimed(OutboxEvent event);
+
+    /**
+     * Records a failed delivery and either schedules the next attempt or parks the event as FAILED;
+     * ignored if another relay claimed the event since
+     */
+    void markFailed(OutboxEvent event, String error, LocalDateTime nextAttemptAt, boolean giveUp);
+}
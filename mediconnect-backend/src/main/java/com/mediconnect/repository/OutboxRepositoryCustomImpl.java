@@ -0,0 +1,111 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class OutboxRepositoryCustomImpl implements OutboxRepositoryCustom {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void insertIfAbsent(Collection<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEvent.class)
+                    .insert(new ArrayList<>(events))
+                    .execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public List<OutboxEvent> claimBatch(int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+
+        Query candidates = Query.query(due(now)).with(Sort.by("createdAt")).limit(limit);
+        candidates.fields().include("id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .collect(Collectors.toList());
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Re-check the due condition while claiming so events taken by another relay in between are skipped
+        String claimToken = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(Query.query(due(now).and("id").in(ids)),
+                new Update().set("claimToken", claimToken).set("lockedUntil", now.plus(lease)),
+                OutboxEvent.class);
+
+        return mongoTemplate.find(Query.query(Criteria.where("claimToken").is(claimToken))
+                .with(Sort.by("createdAt")), OutboxEvent.class);
+    }
+
+    @Override
+    public void renewLeases(Collection<String> eventIds, Collection<String> claimTokens, Duration lease) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(eventIds).and("claimToken").in(claimTokens)),
+                new Update().set("lockedUntil", LocalDateTime.now().plus(lease)),
+                OutboxEvent.class);
+    }
+
+    @Override
+    public void markRecipientDone(String eventId, String field, String recipientId) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(eventId)),
+                new Update().addToSet(field, recipientId),
+                OutboxEvent.class);
+    }
+
+    @Override
+    public void deleteClaimed(OutboxEvent event) {
+        mongoTemplate.remove(claimed(event), OutboxEvent.class);
+    }
+
+    @Override
+    public void markFailed(OutboxEvent event, String error, LocalDateTime nextAttemptAt, boolean giveUp) {
+        Update update = new Update()
+                .inc("attempts", 1)
+                .set("lastError", error)
+                .set("nextAttemptAt", nextAttemptAt)
+                .unset("claimToken")
+                .unset("lockedUntil");
+        if (giveUp) {
+            update.set("state", OutboxEvent.STATE_FAILED);
+        }
+
+        mongoTemplate.updateFirst(claimed(event), update, OutboxEvent.class);
+    }
+
+    private Query claimed(OutboxEvent event) {
+        return Query.query(Criteria.where("id").is(event.getId()).and("claimToken").is(event.getClaimToken()));
+    }
+
+    private Criteria due(LocalDateTime now) {
+        return Criteria.where("state").is(OutboxEvent.STATE_PENDING)
+                .and("nextAttemptAt").lte(now)
+                .orOperator(Criteria.where("lockedUntil").is(null), Criteria.where("lockedUntil").lt(now));
+    }
+}
@@ -0,0 +1,9 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.PincodeLocation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PincodeLocationRepository extends MongoRepository<PincodeLocation, String> {
+}
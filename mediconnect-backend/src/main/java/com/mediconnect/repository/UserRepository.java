@@ -1,9 +1,12 @@
 package com.mediconnect.repository;
 
+import com.mediconnect.dto.user.UserSummary;
 import com.mediconnect.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +14,7 @@ public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
     Optional<User> findByProfilePhotoId(String profilePhotoId);
+
+    // Projection - only the UserSummary fields are read
+    List<UserSummary> findSummariesByIdIn(Collection<String> ids);
 } 
\ No newline at end of file
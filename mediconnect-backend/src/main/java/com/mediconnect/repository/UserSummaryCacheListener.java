@@ -0,0 +1,35 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.User;
+import com.mediconnect.service.UserSummaryResolver;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts cached user summaries whenever a user is saved or deleted
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSummaryCacheListener extends AbstractMongoEventListener<User> {
+
+    private final UserSummaryResolver userSummaryResolver;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        userSummaryResolver.invalidate(event.getSource().getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId objectId) {
+            userSummaryResolver.invalidate(objectId.toHexString());
+        } else if (id != null) {
+            userSummaryResolver.invalidate(id.toString());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.repository.ChatRoomRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * accept() gives a message its id and per-room sequence number and returns immediately,
+ * so it can be broadcast before it is stored. A flusher thread writes queued messages in one bulk
+ * insert per batch - when batch-size messages are queued or flush-interval-ms after the first one -
+ * together with one counter update per room. Messages not yet flushed are missing from history
+ * reads for at most one flush interval. A batch whose insert still fails after MAX_FLUSH_ATTEMPTS is
+ * dropped and logged.
+ *
+ * A room's counter update only applies while the room's lastSeq is below the batch's highest sequence
+ * number, and moves lastSeq to it in the same update, so retrying it never counts a batch twice. Only
+ * the rooms whose update failed are retried; one still failing after MAX_FLUSH_ATTEMPTS is logged.
+ *
+ * chat.persistence.mode=sync writes each message before accept() returns instead, and accept()
+ * throws if the write fails. A full queue makes accept() wait up to enqueue-timeout-ms and then
+ * throw - writing past the queue would store messages out of order. Queued messages are drained
+ * on shutdown.
+ *
+ * Sequence numbers come from ChatRoom.reservedSeq, one atomic $inc per message, so they are unique
+ * and follow send order across restarts and instances. A message whose write fails leaves its number
+ * unused, so readers must allow gaps. Within an instance, a room's messages are queued - or written,
+ * in sync mode - in the order of their numbers, which the counter guard relies on.
+ */
+@Slf4j
+@Service
+public class ChatMessageWriter {
+
+    public enum Mode { WRITE_BEHIND, SYNC }
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int ROOM_LOCK_STRIPES = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final ChatRoomRepository chatRoomRepository;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long enqueueTimeoutMs;
+
+    private final BlockingQueue<ChatMessage> queue;
+    private final Set<String> seededRooms = ConcurrentHashMap.newKeySet();
+    private final Object[] roomLocks = new Object[ROOM_LOCK_STRIPES];
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public ChatMessageWriter(MongoTemplate mongoTemplate,
+                             ChatRoomRepository chatRoomRepository,
+                             @Value("${chat.persistence.mode:WRITE_BEHIND}") Mode mode,
+                             @Value("${chat.persistence.batch-size:100}") int batchSize,
+                             @Value("${chat.persistence.flush-interval-ms:50}") long flushIntervalMs,
+                             @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+                             @Value("${chat.persistence.enqueue-timeout-ms:1000}") long enqueueTimeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.chatRoomRepository = chatRoomRepository;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < roomLocks.length; i++) {
+            roomLocks[i] = new Object();
+        }
+
+        this.flusher = new Thread(this::runFlusher, "chat-message-flusher");
+        this.flusher.setDaemon(true);
+        if (mode == Mode.WRITE_BEHIND) {
+            this.flusher.start();
+        }
+        log.info("Chat message persistence mode: {}", mode);
+    }
+
+    /**
+     * Assigns id and sequence number and schedules the message for persistence
+     * @throws IllegalStateException if the message could not be stored (sync mode) or queued
+     */
+    public ChatMessage accept(ChatMessage message) {
+        if (!running) {
+            throw new IllegalStateException("Chat message writer is shutting down");
+        }
+
+        message.setId(new ObjectId().toHexString());
+
+        // A number reserved after another must not overtake it on the way to the room counters
+        synchronized (roomLock(message.getAppointmentId())) {
+            message.setSeq(nextSeq(message.getAppointmentId()));
+
+            if (mode == Mode.SYNC) {
+                flush(List.of(message));
+                return message;
+            }
+
+            try {
+                if (!queue.offer(message, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("Chat message queue is full");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing a chat message", e);
+            }
+        }
+        return message;
+    }
+
+    private Object roomLock(String appointmentId) {
+        return roomLocks[Math.floorMod(appointmentId.hashCode(), roomLocks.length)];
+    }
+
+    private long nextSeq(String appointmentId) {
+        if (!seededRooms.contains(appointmentId)) {
+            seedReservedSeq(appointmentId);
+            seededRooms.add(appointmentId);
+        }
+        return reserveSeq(appointmentId);
+    }
+
+    /**
+     * Rooms that predate reserved sequences: start the counter above every number already used
+     */
+    private void seedReservedSeq(String appointmentId) {
+        chatRoomRepository.findById(appointmentId).ifPresent(room -> {
+            long used = Math.max(room.getLastSeq(), room.getMessageCount());
+            if (room.getReservedSeq() < used) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("appointmentId").is(appointmentId)),
+                        new Update().max("reservedSeq", used), ChatRoom.class);
+            }
+        });
+    }
+
+    /**
+     * Reserves the next sequence number of a room
+     */
+    private long reserveSeq(String appointmentId) {
+        Query query = Query.query(Criteria.where("appointmentId").is(appointmentId));
+        query.fields().include("reservedSeq");
+        ChatRoom room = mongoTemplate.findAndModify(query,
+                new Update().inc("reservedSeq", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                ChatRoom.class);
+        if (room == null) {
+            throw new IllegalStateException("Chat room not found: " + appointmentId);
+        }
+        return room.getReservedSeq();
+    }
+
+    private void runFlusher() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Collect until the batch is full or the interval since the first message has passed
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    ChatMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushOrDrop(batch);
+            } catch (InterruptedException e) {
+                // Shutdown - the loop condition drains what is left
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                flushOrDrop(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushOrDrop(List<ChatMessage> batch) {
+        try {
+            flush(batch);
+        } catch (RuntimeException e) {
+            log.error("Dropping {} chat messages after {} failed flush attempts", batch.size(), MAX_FLUSH_ATTEMPTS, e);
+        }
+    }
+
+    /**
+     * Stores a batch, retrying up to MAX_FLUSH_ATTEMPTS times; throws the last failure of the insert
+     */
+    private void flush(List<ChatMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insertMessages(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_FLUSH_ATTEMPTS) {
+                    throw e;
+                }
+                backOff(attempt, e);
+            }
+        }
+
+        // The messages are stored by now, so a room whose counters keep failing does not fail the batch
+        List<RoomCounters> pending = roomCounters(batch);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                updateRooms(pending);
+                return;
+            } catch (RuntimeException e) {
+                // Otherwise whether any of the updates applied is unknown, and the guard makes sending them all again safe
+                if (e instanceof BulkOperationException bulkFailure) {
+                    List<RoomCounters> sent = pending;
+                    pending = bulkFailure.getErrors().stream().map(error -> sent.get(error.getIndex())).toList();
+                }
+                if (attempt >= MAX_FLUSH_ATTEMPTS) {
+                    log.error("Chat room counters not updated for {} after {} attempts",
+                            pending.stream().map(RoomCounters::appointmentId).toList(), MAX_FLUSH_ATTEMPTS, e);
+                    return;
+                }
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private void backOff(int attempt, RuntimeException failure) {
+        log.warn("Chat message flush failed (attempt {}), retrying: {}", attempt, failure.getMessage());
+        try {
+            Thread.sleep(100L * attempt);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void insertMessages(List<ChatMessage> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                    .insert(batch)
+                    .execute();
+        } catch (BulkOperationException e) {
+            // A retried batch: the ids are ours, so messages stored by an earlier attempt are simply skipped
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    private List<RoomCounters> roomCounters(List<ChatMessage> batch) {
+        Map<String, List<ChatMessage>> byRoom = new LinkedHashMap<>();
+        for (ChatMessage message : batch) {
+            byRoom.computeIfAbsent(message.getAppointmentId(), id -> new ArrayList<>()).add(message);
+        }
+
+        List<RoomCounters> rooms = new ArrayList<>();
+        byRoom.forEach((appointmentId, messages) -> rooms.add(new RoomCounters(appointmentId,
+                messages.stream().mapToLong(ChatMessage::getSeq).max().orElse(0L),
+                messages.size(),
+                messages.stream()
+                        .filter(message -> message.getRecipientId() != null)
+                        .collect(Collectors.groupingBy(ChatMessage::getRecipientId, Collectors.counting())))));
+        return rooms;
+    }
+
+    private void updateRooms(List<RoomCounters> rooms) {
+        BulkOperations roomOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatRoom.class);
+        for (RoomCounters room : rooms) {
+            // Skips a room that already counted this batch; rooms stored before lastSeq existed have none
+            Query query = Query.query(Criteria.where("appointmentId").is(room.appointmentId())
+                    .orOperator(Criteria.where("lastSeq").lt(room.lastSeq()), Criteria.where("lastSeq").exists(false)));
+            Update update = new Update()
+                    .inc("messageCount", room.messageCount())
+                    .max("lastSeq", room.lastSeq())
+                    .set("lastActivity", LocalDateTime.now())
+                    .set("isActive", true);
+            room.unread().forEach((recipientId, count) -> update.inc("unreadCounts." + recipientId, count));
+            roomOps.updateOne(query, update);
+        }
+        roomOps.execute();
+    }
+
+    private record RoomCounters(String appointmentId, long lastSeq, int messageCount, Map<String, Long> unread) {
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher.isAlive()) {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        // Anything the flusher could not take any more
+        List<ChatMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flushOrDrop(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+        log.info("Chat message writer drained");
+    }
+}
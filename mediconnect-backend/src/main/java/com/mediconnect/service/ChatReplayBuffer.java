@@ -0,0 +1,90 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.chat.ChatMessageResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The most recent messages of recently active rooms, kept so that a reconnecting client can be
+ * sent what it missed without a history query.
+ *
+ * Each room keeps up to messages-per-room messages ordered by seq, and remembers the highest seq
+ * it has let go of. Messages are recorded as they are delivered to the node's sessions, and a room
+ * is evicted when the node stops hosting it, so every message above that floor was recorded here
+ * and a gap that starts at or above it can be answered completely from memory. The number of rooms
+ * is bounded by an LRU.
+ */
+@Service
+public class ChatReplayBuffer {
+
+    private final int messagesPerRoom;
+    private final Map<String, RoomBuffer> rooms;
+
+    public ChatReplayBuffer(@Value("${chat.replay.messages-per-room:100}") int messagesPerRoom,
+                            @Value("${chat.replay.max-rooms:5000}") int maxRooms) {
+        this.messagesPerRoom = messagesPerRoom;
+        this.rooms = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoomBuffer> eldest) {
+                return size() > maxRooms;
+            }
+        };
+    }
+
+    public void record(ChatMessageResponse message) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            // A new buffer only vouches for messages after the first one it sees
+            buffer = rooms.computeIfAbsent(message.getAppointmentId(), id -> new RoomBuffer(message.getSeq() - 1));
+        }
+        buffer.add(message, messagesPerRoom);
+    }
+
+    public void evict(String appointmentId) {
+        synchronized (rooms) {
+            rooms.remove(appointmentId);
+        }
+    }
+
+    /**
+     * Messages of the room with seq greater than afterSeq in seq order, or empty when part of
+     * that range is not held in memory
+     */
+    public Optional<List<ChatMessageResponse>> since(String appointmentId, long afterSeq) {
+        RoomBuffer buffer;
+        synchronized (rooms) {
+            buffer = rooms.get(appointmentId);
+        }
+        return buffer != null ? buffer.since(afterSeq) : Optional.empty();
+    }
+
+    private static class RoomBuffer {
+        private final TreeMap<Long, ChatMessageResponse> messages = new TreeMap<>();
+        private long floorSeq;
+
+        RoomBuffer(long floorSeq) {
+            this.floorSeq = floorSeq;
+        }
+
+        synchronized void add(ChatMessageResponse message, int capacity) {
+            messages.put(message.getSeq(), message);
+            while (messages.size() > capacity) {
+                floorSeq = messages.pollFirstEntry().getKey();
+            }
+        }
+
+        synchronized Optional<List<ChatMessageResponse>> since(long afterSeq) {
+            if (afterSeq < floorSeq) {
+                return Optional.empty();
+            }
+            return Optional.of(new ArrayList<>(messages.tailMap(afterSeq, false).values()));
+        }
+    }
+}
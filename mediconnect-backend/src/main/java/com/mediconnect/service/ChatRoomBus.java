@@ -0,0 +1,51 @@
+package com.mediconnect.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries chat room traffic - messages, read receipts and presence - to every node that hosts
+ * sessions of the room. A node subscribes to a room while it has at least one local session in it
+ * and only receives frames of the rooms it is subscribed to.
+ *
+ * Payloads are the serialized WebSocket frames as UTF-8 JSON, so a frame is encoded once no matter
+ * how many nodes and sessions it reaches.
+ */
+public interface ChatRoomBus {
+
+    enum Kind {
+        MESSAGE,
+        READ_RECEIPT,
+        PRESENCE,
+        // Asks the other nodes to announce the presence of their local users in the room
+        PRESENCE_SYNC,
+        // The appointment changed: every node drops its cached chat access decisions for it
+        ACCESS_CHANGED
+    }
+
+    /**
+     * @param excludeUserId user whose sessions should not get the frame, e.g. the subject of a presence update
+     * @param origin        id of the node that published the frame
+     */
+    record Frame(String appointmentId, Kind kind, byte[] payload, String excludeUserId, String origin) {
+    }
+
+    /**
+     * Delivers the frame to the room's listener on this node, if any, and to the other subscribed nodes
+     */
+    void publish(String appointmentId, Kind kind, byte[] payload, String excludeUserId);
+
+    /**
+     * Starts delivering the room's frames to the listener; replaces an existing listener of the room
+     */
+    void subscribe(String appointmentId, Consumer<Frame> listener);
+
+    void unsubscribe(String appointmentId);
+
+    /**
+     * Delivers every frame of the kind to the listener, whichever room it is for, instead of to the
+     * room listeners - for node-wide state such as caches
+     */
+    void subscribeNode(Kind kind, Consumer<Frame> listener);
+
+    String getNodeId();
+}
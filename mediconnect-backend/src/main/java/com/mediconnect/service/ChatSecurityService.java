@@ -4,16 +4,38 @@ import com.mediconnect.enums.AppointmentStatus;
 import com.mediconnect.enums.UserRole;
 import com.mediconnect.model.Appointment;
 import com.mediconnect.repository.AppointmentRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ChatSecurityService {
     
     private final AppointmentRepository appointmentRepository;
+    private final ChatRoomBus chatRoomBus;
+    private final long decisionTtlMillis;
+    
+    // Chat access decisions: Map<appointmentId, Map<userId:role, decision>>, dropped on any appointment save
+    private final Map<String, Map<String, CachedDecision>> decisions = new ConcurrentHashMap<>();
+    
+    // Bumped on every invalidation so a decision computed from a pre-save read is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public ChatSecurityService(AppointmentRepository appointmentRepository,
+                               ChatRoomBus chatRoomBus,
+                               @Value("${chat.authorization.cache-ttl-ms:60000}") long decisionTtlMillis) {
+        this.appointmentRepository = appointmentRepository;
+        this.chatRoomBus = chatRoomBus;
+        this.decisionTtlMillis = decisionTtlMillis;
+        // Saves on any node drop the decisions on every node
+        chatRoomBus.subscribeNode(ChatRoomBus.Kind.ACCESS_CHANGED, frame -> dropDecisions(frame.appointmentId()));
+    }
     
     /**
      * Validates if a user has access to chat for a specific appointment
@@ -82,11 +104,87 @@ public class ChatSecurityService {
     }
     
     /**
-     * Comprehensive validation for chat access
+     * Comprehensive validation for chat access. Decisions are cached for a short TTL and the
+     * appointment is read at most once per miss.
      */
     public boolean validateChatAccess(String appointmentId, String userId, UserRole role) {
-        return validateAppointmentStatus(appointmentId) && 
-               validateMessageAccess(appointmentId, userId, role);
+        String key = userId + ":" + role;
+        long now = System.currentTimeMillis();
+        
+        CachedDecision cached = decisions.getOrDefault(appointmentId, Map.of()).get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.allowed();
+        }
+        
+        long generation = invalidations.get();
+        boolean allowed;
+        try {
+            Appointment appointment = appointmentRepository.findById(appointmentId).orElse(null);
+            allowed = isChatAllowed(appointment, appointmentId, userId, role);
+        } catch (Exception e) {
+            // Not cached, the next call retries the read
+            log.error("Error validating chat access for appointment: {}, user: {}", appointmentId, userId, e);
+            return false;
+        }
+        
+        if (generation == invalidations.get()) {
+            decisions.computeIfAbsent(appointmentId, k -> new ConcurrentHashMap<>())
+                    .put(key, new CachedDecision(allowed, now + decisionTtlMillis));
+        }
+        return allowed;
+    }
+    
+    /**
+     * Drops the cached decisions of an appointment on every node; called whenever the appointment is saved
+     */
+    public void invalidate(String appointmentId) {
+        chatRoomBus.publish(appointmentId, ChatRoomBus.Kind.ACCESS_CHANGED, null, null);
+    }
+    
+    private void dropDecisions(String appointmentId) {
+        invalidations.incrementAndGet();
+        decisions.remove(appointmentId);
+    }
+    
+    @Scheduled(fixedDelayString = "${chat.authorization.cache-ttl-ms:60000}")
+    public void evictExpiredDecisions() {
+        long now = System.currentTimeMillis();
+        decisions.values().forEach(byUser -> byUser.values().removeIf(decision -> decision.expiresAt() <= now));
+        decisions.values().removeIf(Map::isEmpty);
+    }
+    
+    private boolean isChatAllowed(Appointment appointment, String appointmentId, String userId, UserRole role) {
+        if (appointment == null) {
+            log.warn("Appointment not found: {}", appointmentId);
+            return false;
+        }
+        
+        // Only allow chat for CONFIRMED appointments
+        if (AppointmentStatus.CONFIRMED != appointment.getStatus()) {
+            log.warn("Appointment {} not confirmed, status: {}", appointmentId, appointment.getStatus());
+            return false;
+        }
+        
+        // Validate user is participant
+        if (role == UserRole.PATIENT) {
+            boolean hasAccess = userId.equals(appointment.getPatientId());
+            if (!hasAccess) {
+                log.warn("Patient {} not authorized for appointment {}", userId, appointmentId);
+            }
+            return hasAccess;
+        } else if (role == UserRole.DOCTOR) {
+            boolean hasAccess = userId.equals(appointment.getDoctorId());
+            if (!hasAccess) {
+                log.warn("Doctor {} not authorized for appointment {}", userId, appointmentId);
+            }
+            return hasAccess;
+        }
+        
+        log.warn("Invalid user role: {} for user: {}", role, userId);
+        return false;
+    }
+    
+    private record CachedDecision(boolean allowed, long expiresAt) {
     }
     
     /**
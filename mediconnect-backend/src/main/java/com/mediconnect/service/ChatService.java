@@ -1,5 +1,6 @@
 package com.mediconnect.service;
 
+import com.mediconnect.dto.chat.ChatHistoryPage;
 import com.mediconnect.dto.chat.ChatMessageRequest;
 import com.mediconnect.dto.chat.ChatMessageResponse;
 import com.mediconnect.enums.UserRole;
@@ -7,24 +8,60 @@ import com.mediconnect.model.Appointment;
 import com.mediconnect.model.ChatMessage;
 import com.mediconnect.model.ChatRoom;
 import com.mediconnect.repository.ChatMessageRepository;
+import com.mediconnect.repository.ChatMessageRepositoryCustom;
 import com.mediconnect.repository.ChatRoomRepository;
-import lombok.RequiredArgsConstructor;
+import com.mediconnect.util.ChatCursor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ChatService {
     
     private final ChatMessageRepository chatMessageRepository;
     private final ChatRoomRepository chatRoomRepository;
     private final ChatSecurityService chatSecurityService;
+    private final ChatMessageWriter chatMessageWriter;
+    private final ChatReplayBuffer chatReplayBuffer;
+
+    // Chat rooms known to exist, least recently used first: Map<appointmentId, participants>
+    private final Map<String, RoomParticipants> knownChatRooms;
+
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+    private static final int MAX_REPLAY_SIZE = 200;
+
+    public ChatService(ChatMessageRepository chatMessageRepository,
+                       ChatRoomRepository chatRoomRepository,
+                       ChatSecurityService chatSecurityService,
+                       ChatMessageWriter chatMessageWriter,
+                       ChatReplayBuffer chatReplayBuffer,
+                       @Value("${chat.known-rooms.max-size:10000}") int knownRoomsMaxSize) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.chatSecurityService = chatSecurityService;
+        this.chatMessageWriter = chatMessageWriter;
+        this.chatReplayBuffer = chatReplayBuffer;
+        this.knownChatRooms = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoomParticipants> eldest) {
+                return size() > knownRoomsMaxSize;
+            }
+        };
+    }
     
     /**
      * Sends a message and creates/updates chat room
@@ -36,14 +73,15 @@ public class ChatService {
                 throw new RuntimeException("Access denied for chat");
             }
             
-            // Get or create chat room
-            ChatRoom chatRoom = getOrCreateChatRoom(request.getAppointmentId(), senderId, senderRole);
+            // Make sure the chat room exists - its counters are updated when the message is flushed
+            RoomParticipants room = ensureChatRoom(request.getAppointmentId(), senderId, senderRole);
             
-            // Create and save message
+            // Create and queue message
             ChatMessage message = ChatMessage.builder()
                     .appointmentId(request.getAppointmentId())
                     .senderId(senderId)
                     .senderType(senderRole.name())
+                    .recipientId(senderId.equals(room.patientId()) ? room.doctorId() : room.patientId())
                     .content(request.getContent())
                     .type(request.getType())
                     .fileUrl(request.getFileUrl())
@@ -59,11 +97,7 @@ public class ChatService {
                             .build() : null)
                     .build();
             
-            ChatMessage savedMessage = chatMessageRepository.save(message);
-            
-            // Update chat room
-            chatRoom.incrementMessageCount();
-            chatRoomRepository.save(chatRoom);
+            ChatMessage savedMessage = chatMessageWriter.accept(message);
             
             log.info("Message sent successfully: appointmentId={}, senderId={}, messageId={}", 
                     request.getAppointmentId(), senderId, savedMessage.getId());
@@ -78,21 +112,42 @@ public class ChatService {
     }
     
     /**
-     * Gets chat history for an appointment
+     * Gets one page of chat history for an appointment - the latest messages unless a cursor is given
      */
-    public List<ChatMessageResponse> getChatHistory(String appointmentId, String userId, UserRole userRole) {
+    public ChatHistoryPage getChatHistory(String appointmentId, String userId, UserRole userRole,
+                                          String before, String after, int limit) {
+        // Validate access
+        if (!chatSecurityService.validateChatAccess(appointmentId, userId, userRole)) {
+            throw new RuntimeException("Access denied for chat history");
+        }
+
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Chat history is paged either before or after a cursor, not both");
+        }
+
+        ChatCursor beforeCursor = ChatCursor.decode(before);
+        ChatCursor afterCursor = ChatCursor.decode(after);
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+
         try {
-            // Validate access
-            if (!chatSecurityService.validateChatAccess(appointmentId, userId, userRole)) {
-                throw new RuntimeException("Access denied for chat history");
+            // One extra message tells whether there is more in the direction of travel
+            List<ChatMessage> messages = chatMessageRepository.findPage(appointmentId, beforeCursor, afterCursor, pageSize + 1);
+            boolean more = messages.size() > pageSize;
+            if (more) {
+                messages = afterCursor != null ? messages.subList(0, pageSize) : messages.subList(1, messages.size());
             }
-            
-            List<ChatMessage> messages = chatMessageRepository.findByAppointmentIdOrderByTimestampAsc(appointmentId);
-            
-            return messages.stream()
-                    .map(ChatMessageResponse::fromChatMessage)
-                    .collect(Collectors.toList());
-                    
+
+            boolean hasOlder = afterCursor != null || more;
+            boolean hasNewer = afterCursor != null ? more : beforeCursor != null;
+
+            return ChatHistoryPage.builder()
+                    .messages(messages.stream()
+                            .map(ChatMessageResponse::fromChatMessage)
+                            .collect(Collectors.toList()))
+                    .olderCursor(hasOlder ? (messages.isEmpty() ? after : ChatCursor.encode(messages.get(0))) : null)
+                    .newerCursor(hasNewer ? (messages.isEmpty() ? before : ChatCursor.encode(messages.get(messages.size() - 1))) : null)
+                    .build();
+
         } catch (Exception e) {
             log.error("Error getting chat history: appointmentId={}, userId={}", appointmentId, userId, e);
             throw new RuntimeException("Failed to get chat history", e);
@@ -100,11 +155,39 @@ public class ChatService {
     }
     
     /**
-     * Gets unread message count for a user
+     * Messages of a room with seq greater than afterSeq, for a client resuming after a reconnect.
+     * Served from the replay buffer when it holds the whole gap, otherwise from Mongo topped up with
+     * buffered messages that are not flushed yet. Empty when the gap exceeds MAX_REPLAY_SIZE and the
+     * client should reload history instead.
+     */
+    public Optional<List<ChatMessageResponse>> getMessagesSince(String appointmentId, long afterSeq) {
+        Optional<List<ChatMessageResponse>> buffered = chatReplayBuffer.since(appointmentId, afterSeq);
+        if (buffered.isPresent()) {
+            return buffered.filter(messages -> messages.size() <= MAX_REPLAY_SIZE);
+        }
+        
+        List<ChatMessageResponse> messages = chatMessageRepository
+                .findByAppointmentIdAndSeqGreaterThan(appointmentId, afterSeq, PageRequest.of(0, MAX_REPLAY_SIZE + 1))
+                .stream()
+                .map(ChatMessageResponse::fromChatMessage)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (messages.size() > MAX_REPLAY_SIZE) {
+            return Optional.empty();
+        }
+        
+        long lastStoredSeq = messages.isEmpty() ? afterSeq : messages.get(messages.size() - 1).getSeq();
+        chatReplayBuffer.since(appointmentId, lastStoredSeq).ifPresent(messages::addAll);
+        return Optional.of(messages);
+    }
+    
+    /**
+     * Gets unread message count for a user - messages from the other participant they have not read
      */
     public long getUnreadMessageCount(String appointmentId, String userId) {
         try {
-            return chatMessageRepository.countUnreadMessagesByAppointmentIdAndSenderId(appointmentId, userId);
+            return chatRoomRepository.findByAppointmentId(appointmentId)
+                    .map(room -> unreadCount(room, userId))
+                    .orElse(0L);
         } catch (Exception e) {
             log.error("Error getting unread message count: appointmentId={}, userId={}", appointmentId, userId, e);
             return 0;
@@ -112,50 +195,107 @@ public class ChatService {
     }
     
     /**
-     * Marks messages as read by the current user (messages from other users)
+     * Unread message counts of all active rooms of a user, keyed by appointment ID, from one query
      */
-    public void markMessagesAsRead(String appointmentId, String userId) {
-        try {
-            // Find unread messages from OTHER users (not from the current user)
-            List<ChatMessage> unreadMessages = chatMessageRepository
-                    .findUnreadMessagesByAppointmentIdAndOtherSenderId(appointmentId, userId);
-            
-            for (ChatMessage message : unreadMessages) {
-                message.setRead(true);
-                message.getReadBy().add(userId);
+    public Map<String, Long> getUnreadMessageCounts(String userId, UserRole userRole) {
+        Map<String, Long> counts = new HashMap<>();
+        for (ChatRoom room : getActiveChatRooms(userId, userRole)) {
+            counts.put(room.getAppointmentId(), unreadCount(room, userId));
+        }
+        return counts;
+    }
+    
+    /**
+     * The room's counter for the user
+     */
+    private long unreadCount(ChatRoom room, String userId) {
+        Long count = room.getUnreadCounts() != null ? room.getUnreadCounts().get(userId) : null;
+        return count != null ? Math.max(count, 0L) : 0L;
+    }
+    
+    /**
+     * Backfills the unread counters of rooms that predate them, once, off the startup thread
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillUnreadCountsOnStartup() {
+        Thread backfill = new Thread(() -> {
+            try {
+                int backfilled = 0;
+                for (ChatRoom room : chatRoomRepository.findRoomsWithoutBackfilledUnreadCounts()) {
+                    if (backfillUnreadCounts(room)) {
+                        backfilled++;
+                    }
+                }
+                if (backfilled > 0) {
+                    log.info("Backfilled unread counters of {} chat rooms", backfilled);
+                }
+            } catch (Exception e) {
+                log.error("Error backfilling chat unread counters", e);
+            }
+        }, "chat-unread-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+    
+    /**
+     * Adds the room's unread messages stored before sequencing - the ones the counters never saw - to
+     * its counters. Idempotent: only the first call per room changes anything.
+     */
+    private boolean backfillUnreadCounts(ChatRoom room) {
+        Map<String, Long> unsequencedUnread = new HashMap<>();
+        for (String participantId : new String[] { room.getPatientId(), room.getDoctorId() }) {
+            if (participantId != null) {
+                unsequencedUnread.put(participantId,
+                        chatMessageRepository.countUnsequencedUnread(room.getAppointmentId(), participantId));
             }
-            
-            chatMessageRepository.saveAll(unreadMessages);
-            log.info("Marked {} messages as read for appointmentId={}, userId={}", 
-                    unreadMessages.size(), appointmentId, userId);
-                    
-        } catch (Exception e) {
-            log.error("Error marking messages as read: appointmentId={}, userId={}", appointmentId, userId, e);
         }
+        return chatRoomRepository.backfillUnreadCounts(room.getAppointmentId(), unsequencedUnread);
     }
     
     /**
-     * Marks messages as read and returns the updated messages for broadcasting
+     * Marks messages as read by the current user (messages from other users)
      */
-    public List<ChatMessageResponse> markMessagesAsReadAndGetUpdates(String appointmentId, String userId) {
+    public void markMessagesAsRead(String appointmentId, String userId) {
+        markMessagesAsReadAndGetIds(appointmentId, userId);
+    }
+    
+    /**
+     * Marks everything from other senders up to the room's last persisted message as read and
+     * returns the ids of the messages that changed, for broadcasting. The range starts after the
+     * reader's watermark, so messages already read are neither reloaded nor rewritten.
+     *
+     * The unread counter goes down by exactly the number of messages marked here, so it stays right
+     * whatever order the writers flush in. Messages below the watermark that are still unread - ones
+     * flushed late, or stored before sequencing - show as a counter larger than the watermark range
+     * can hold, and are then found by a scan of the room's unread messages.
+     */
+    public List<String> markMessagesAsReadAndGetIds(String appointmentId, String userId) {
         try {
-            // Find unread messages from OTHER users (not from the current user)
-            List<ChatMessage> unreadMessages = chatMessageRepository
-                    .findUnreadMessagesByAppointmentIdAndOtherSenderId(appointmentId, userId);
+            ChatRoom room = chatRoomRepository.findByAppointmentId(appointmentId).orElse(null);
+            if (room == null) {
+                return List.of();
+            }
             
-            for (ChatMessage message : unreadMessages) {
-                message.setRead(true);
-                message.getReadBy().add(userId);
+            // Counting down needs the counters to include the legacy messages first
+            if (!room.isUnreadCountsBackfilled()) {
+                backfillUnreadCounts(room);
+                room = chatRoomRepository.findByAppointmentId(appointmentId).orElse(room);
             }
             
-            chatMessageRepository.saveAll(unreadMessages);
-            log.info("Marked {} messages as read for appointmentId={}, userId={}", 
-                    unreadMessages.size(), appointmentId, userId);
+            long upToSeq = room.getLastSeq();
+            Long readSeq = room.getReadWatermarks() != null ? room.getReadWatermarks().get(userId) : null;
+            long unread = room.getUnreadCounts() != null ? room.getUnreadCounts().getOrDefault(userId, 0L) : 0L;
+            if (unread <= 0 && readSeq != null && readSeq >= upToSeq) {
+                return List.of();
+            }
+            
+            Long afterSeq = readSeq != null && unread <= upToSeq - readSeq ? readSeq : null;
+            ChatMessageRepositoryCustom.MarkedRead marked = chatMessageRepository.markReadUpTo(appointmentId, userId, afterSeq, upToSeq);
+            chatRoomRepository.markRead(appointmentId, userId, upToSeq, marked.count());
             
-            // Return the updated messages for broadcasting
-            return unreadMessages.stream()
-                    .map(ChatMessageResponse::fromChatMessage)
-                    .collect(Collectors.toList());
+            log.info("Marked {} messages as read for appointmentId={}, userId={}", 
+                    marked.messageIds().size(), appointmentId, userId);
+            return marked.messageIds();
                     
         } catch (Exception e) {
             log.error("Error marking messages as read: appointmentId={}, userId={}", appointmentId, userId, e);
@@ -183,6 +323,32 @@ public class ChatService {
         }
     }
     
+    /**
+     * Creates the chat room on the first message; rooms known to exist are not looked up again
+     */
+    private RoomParticipants ensureChatRoom(String appointmentId, String userId, UserRole userRole) {
+        synchronized (knownChatRooms) {
+            RoomParticipants known = knownChatRooms.get(appointmentId);
+            if (known != null) {
+                return known;
+            }
+        }
+
+        // Looked up outside the lock; a concurrent first message of the room stores the same participants
+        ChatRoom room = getOrCreateChatRoom(appointmentId, userId, userRole);
+        RoomParticipants participants = new RoomParticipants(room.getPatientId(), room.getDoctorId());
+        synchronized (knownChatRooms) {
+            knownChatRooms.put(appointmentId, participants);
+        }
+        return participants;
+    }
+
+    /**
+     * All a message needs of its room to address the recipient
+     */
+    private record RoomParticipants(String patientId, String doctorId) {
+    }
+    
     /**
      * Gets or creates a chat room for an appointment
      */
@@ -207,12 +373,17 @@ public class ChatService {
                 .lastActivity(LocalDateTime.now())
                 .isActive(true)
                 .messageCount(0)
+                .unreadCountsBackfilled(true)
                 .build();
         
-        ChatRoom savedRoom = chatRoomRepository.save(newRoom);
-        log.info("Created new chat room for appointment: {}", appointmentId);
-        
-        return savedRoom;
+        // Insert rather than save: a room created concurrently elsewhere must not be overwritten
+        try {
+            ChatRoom savedRoom = chatRoomRepository.insert(newRoom);
+            log.info("Created new chat room for appointment: {}", appointmentId);
+            return savedRoom;
+        } catch (DuplicateKeyException e) {
+            return chatRoomRepository.findByAppointmentId(appointmentId).orElseThrow(() -> e);
+        }
     }
     
     /**
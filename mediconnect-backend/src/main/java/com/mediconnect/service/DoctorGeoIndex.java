@@ -0,0 +1,298 @@
+package com.mediconnect.service;
+
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.DoctorProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory spatial index of verified doctors for radius searches.
+ *
+ * Doctors are bucketed into a fixed latitude/longitude grid, one grid per specialization plus one
+ * over all of them. A query scans only the cells overlapping the search circle's bounding box,
+ * keeps doctors within the radius and experience bound, and orders them by great-circle distance.
+ *
+ * The index is loaded from Mongo once the application is ready (DoctorSearchIndexLoader) and reloaded
+ * by the scheduler periodically, which also picks up changes made on other instances; saves on this
+ * instance are applied immediately through DoctorSearchIndexListener. Until the first load completes,
+ * findNear returns empty and callers query Mongo instead. Indexed profiles are detached copies holding only the fields search results use.
+ */
+@Slf4j
+@Service
+public class DoctorGeoIndex {
+
+    // Earth radius MongoDB uses for spherical distances
+    private static final double EARTH_RADIUS_METERS = 6378100;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final double cellDegrees;
+
+    private volatile GeoGrid grid;
+    private volatile boolean ready;
+
+    // Changes applied while a reload runs, replayed onto the reloaded grid; null when no reload runs
+    private Map<String, Optional<DoctorProfile>> changedDuringReload;
+
+    public DoctorGeoIndex(MongoTemplate mongoTemplate,
+                          @Value("${doctor-search.geo-index.enabled:true}") boolean enabled,
+                          @Value("${doctor-search.geo-index.cell-degrees:0.1}") double cellDegrees) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.cellDegrees = cellDegrees;
+        this.grid = new GeoGrid(cellDegrees);
+    }
+
+    /**
+     * Verified doctors within the radius ordered by distance, or empty while the index is not loaded
+     */
+    public Optional<Page<DoctorProfile>> findNear(String specialization, Integer minExperience,
+                                                  double longitude, double latitude, double maxDistanceInMeters,
+                                                  Pageable pageable) {
+        if (!ready) {
+            return Optional.empty();
+        }
+
+        List<Hit> hits = grid.near(specialization, minExperience, longitude, latitude, maxDistanceInMeters);
+        hits.sort(Comparator.comparingDouble(Hit::distance));
+
+        List<DoctorProfile> content = new ArrayList<>();
+        if (pageable.isPaged()) {
+            long offset = pageable.getOffset();
+            for (int i = (int) Math.min(offset, hits.size()); i < hits.size() && content.size() < pageable.getPageSize(); i++) {
+                content.add(hits.get(i).doctor());
+            }
+        } else {
+            hits.forEach(hit -> content.add(hit.doctor()));
+        }
+        return Optional.of(new PageImpl<>(content, pageable, hits.size()));
+    }
+
+    /**
+     * Applies a saved profile: indexed when verified with a location, removed otherwise
+     */
+    public void update(DoctorProfile profile) {
+        if (profile == null || profile.getId() == null) {
+            return;
+        }
+        DoctorProfile indexed = isIndexable(profile) ? profile.copySearchFields() : null;
+        synchronized (this) {
+            grid.remove(profile.getId());
+            if (indexed != null) {
+                grid.put(indexed);
+            }
+            if (changedDuringReload != null) {
+                changedDuringReload.put(profile.getId(), Optional.ofNullable(indexed));
+            }
+        }
+    }
+
+    public void remove(String doctorId) {
+        synchronized (this) {
+            grid.remove(doctorId);
+            if (changedDuringReload != null) {
+                changedDuringReload.put(doctorId, Optional.empty());
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from Mongo and swaps it in; the first run ends the warm-up
+     */
+    @Scheduled(initialDelayString = "${doctor-search.geo-index.refresh-ms:300000}",
+            fixedDelayString = "${doctor-search.geo-index.refresh-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            changedDuringReload = new HashMap<>();
+        }
+
+        try {
+            Query query = new Query(Criteria.where("verificationStatus").is(VerificationStatus.VERIFIED)
+                    .and("location.type").exists(true));
+            query.fields().include(DoctorProfile.SEARCH_FIELDS);
+
+            long started = System.currentTimeMillis();
+            GeoGrid reloaded = new GeoGrid(cellDegrees);
+            for (DoctorProfile profile : mongoTemplate.find(query, DoctorProfile.class)) {
+                if (isIndexable(profile)) {
+                    reloaded.put(profile.copySearchFields());
+                }
+            }
+
+            synchronized (this) {
+                changedDuringReload.forEach((doctorId, profile) -> {
+                    reloaded.remove(doctorId);
+                    profile.ifPresent(reloaded::put);
+                });
+                grid = reloaded;
+                ready = true;
+            }
+            log.info("Doctor geo index loaded {} doctors in {} ms", reloaded.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Error loading doctor geo index", e);
+        } finally {
+            synchronized (this) {
+                changedDuringReload = null;
+            }
+        }
+    }
+
+    /**
+     * Whether a doctor is located within the radius, as findNear would judge it
+     */
+    public static Predicate<DoctorProfile> within(double longitude, double latitude, double maxDistanceInMeters) {
+        return doctor -> doctor.getLocation() != null
+                && distanceMeters(latitude, longitude, doctor.getLocation().getY(), doctor.getLocation().getX()) <= maxDistanceInMeters;
+    }
+
+    private static boolean isIndexable(DoctorProfile profile) {
+        return profile.getVerificationStatus() == VerificationStatus.VERIFIED
+                && profile.getLocation() != null;
+    }
+
+    private record Hit(DoctorProfile doctor, double distance) {
+    }
+
+    /**
+     * Grid cells keyed by row * COLUMN_KEY_SPAN + column; readers need no lock, writers are serialized by the index
+     */
+    private static final class GeoGrid {
+
+        private static final long COLUMN_KEY_SPAN = 1_000_000L;
+
+        private final double cellDegrees;
+        private final int columns;
+        private final Map<String, DoctorProfile> doctors = new ConcurrentHashMap<>();
+        private final Map<Long, Map<String, DoctorProfile>> allCells = new ConcurrentHashMap<>();
+        private final Map<String, Map<Long, Map<String, DoctorProfile>>> cellsBySpecialization = new ConcurrentHashMap<>();
+
+        GeoGrid(double cellDegrees) {
+            this.cellDegrees = cellDegrees;
+            this.columns = (int) Math.ceil(360 / cellDegrees);
+        }
+
+        int size() {
+            return doctors.size();
+        }
+
+        void put(DoctorProfile doctor) {
+            doctors.put(doctor.getId(), doctor);
+            long cell = cellOf(doctor.getLocation().getX(), doctor.getLocation().getY());
+            allCells.computeIfAbsent(cell, key -> new ConcurrentHashMap<>()).put(doctor.getId(), doctor);
+            if (doctor.getSpecialization() != null) {
+                cellsBySpecialization.computeIfAbsent(doctor.getSpecialization(), key -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(cell, key -> new ConcurrentHashMap<>())
+                        .put(doctor.getId(), doctor);
+            }
+        }
+
+        void remove(String doctorId) {
+            DoctorProfile doctor = doctors.remove(doctorId);
+            if (doctor == null) {
+                return;
+            }
+            long cell = cellOf(doctor.getLocation().getX(), doctor.getLocation().getY());
+            removeFromCell(allCells, cell, doctorId);
+            if (doctor.getSpecialization() != null) {
+                Map<Long, Map<String, DoctorProfile>> cells = cellsBySpecialization.get(doctor.getSpecialization());
+                if (cells != null) {
+                    removeFromCell(cells, cell, doctorId);
+                }
+            }
+        }
+
+        List<Hit> near(String specialization, Integer minExperience, double longitude, double latitude, double radiusMeters) {
+            List<Hit> hits = new ArrayList<>();
+            Map<Long, Map<String, DoctorProfile>> cells = specialization != null && !specialization.isBlank()
+                    ? cellsBySpecialization.getOrDefault(specialization, Map.of())
+                    : allCells;
+            if (cells.isEmpty()) {
+                return hits;
+            }
+
+            double latitudeSpan = radiusMeters / METERS_PER_DEGREE;
+            int firstRow = row(Math.max(-90, latitude - latitudeSpan));
+            int lastRow = row(Math.min(90, latitude + latitudeSpan));
+
+            // Longitude degrees shrink towards the poles; near them the whole row is scanned
+            double widestLatitude = Math.min(90, Math.abs(latitude) + latitudeSpan);
+            double cosLatitude = Math.cos(Math.toRadians(widestLatitude));
+            double longitudeSpan = cosLatitude > 1e-6 ? latitudeSpan / cosLatitude : 180;
+            int firstColumn = (int) Math.floor((longitude - longitudeSpan + 180) / cellDegrees);
+            int lastColumn = (int) Math.floor((longitude + longitudeSpan + 180) / cellDegrees);
+            int columnCount = Math.min(columns, lastColumn - firstColumn + 1);
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int i = 0; i < columnCount; i++) {
+                    // Columns wrap around the antimeridian
+                    int column = Math.floorMod(firstColumn + i, columns);
+                    Map<String, DoctorProfile> cell = cells.get(row * COLUMN_KEY_SPAN + column);
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (DoctorProfile doctor : cell.values()) {
+                        if (minExperience != null && (doctor.getYearsOfExperience() == null
+                                || doctor.getYearsOfExperience() < minExperience)) {
+                            continue;
+                        }
+                        double distance = distanceMeters(latitude, longitude,
+                                doctor.getLocation().getY(), doctor.getLocation().getX());
+                        if (distance <= radiusMeters) {
+                            hits.add(new Hit(doctor, distance));
+                        }
+                    }
+                }
+            }
+            return hits;
+        }
+
+        private void removeFromCell(Map<Long, Map<String, DoctorProfile>> cells, long cell, String doctorId) {
+            cells.computeIfPresent(cell, (key, members) -> {
+                members.remove(doctorId);
+                return members.isEmpty() ? null : members;
+            });
+        }
+
+        private long cellOf(double longitude, double latitude) {
+            return row(latitude) * COLUMN_KEY_SPAN + column(longitude);
+        }
+
+        private int row(double latitude) {
+            return (int) Math.floor((latitude + 90) / cellDegrees);
+        }
+
+        private int column(double longitude) {
+            return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+        }
+    }
+
+    private static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,371 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory trigram index over verified doctors' full names and specializations for fuzzy name search.
+ *
+ * Text is lower-cased, stripped of accents and punctuation, and each word is padded as in pg_trgm
+ * ("  jo", " jon", "jon ") before being cut into trigrams, so prefixes and misspellings still share
+ * most of their trigrams with the indexed name. A query's candidates are the doctors sharing at least
+ * one trigram with it. Each is scored per field by how much of the query it covers, with a little
+ * weight on overall similarity so shorter, closer names win ties; a name containing the query as
+ * typed gets a bonus, and specialization matches count for less than name matches.
+ *
+ * Names come from the doctor's User, so the index follows both profile saves
+ * (DoctorSearchIndexListener) and user saves (DoctorSearchIndexUserListener). Like DoctorGeoIndex it
+ * is loaded at startup and reloaded by the scheduler; search returns empty until the first load.
+ */
+@Slf4j
+@Service
+public class DoctorNameIndex {
+
+    private static final double COVERAGE_WEIGHT = 1.0;
+    private static final double SIMILARITY_WEIGHT = 0.2;
+    private static final double CONTAINS_BONUS = 0.2;
+    private static final double SPECIALIZATION_WEIGHT = 0.8;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final UserSummaryResolver userSummaryResolver;
+    private final boolean enabled;
+    private final double minScore;
+
+    private volatile NameGrams index = new NameGrams();
+    private volatile boolean ready;
+
+    // Changes applied while a reload runs, replayed onto the reloaded index; null when no reload runs
+    private List<Consumer<NameGrams>> changedDuringReload;
+
+    public DoctorNameIndex(MongoTemplate mongoTemplate,
+                           UserRepository userRepository,
+                           UserSummaryResolver userSummaryResolver,
+                           @Value("${doctor-search.name-index.enabled:true}") boolean enabled,
+                           @Value("${doctor-search.name-index.min-score:0.45}") double minScore) {
+        this.mongoTemplate = mongoTemplate;
+        this.userRepository = userRepository;
+        this.userSummaryResolver = userSummaryResolver;
+        this.enabled = enabled;
+        this.minScore = minScore;
+    }
+
+    /**
+     * Verified doctors whose name or specialization matches the text and who pass the filter, best
+     * match first, or empty while the index is not loaded
+     */
+    public Optional<Page<DoctorProfile>> search(String text, String specialization, Integer minExperience,
+                                                Predicate<DoctorProfile> filter, Pageable pageable) {
+        if (!ready) {
+            return Optional.empty();
+        }
+
+        List<Match> matches = index.search(normalize(text), specialization, minExperience, filter, minScore);
+        matches.sort(Comparator.comparingDouble(Match::score).reversed()
+                .thenComparing(match -> match.entry().normalizedName()));
+
+        List<DoctorProfile> content = new ArrayList<>();
+        if (pageable.isPaged()) {
+            long offset = pageable.getOffset();
+            for (int i = (int) Math.min(offset, matches.size()); i < matches.size() && content.size() < pageable.getPageSize(); i++) {
+                content.add(matches.get(i).entry().profile());
+            }
+        } else {
+            matches.forEach(match -> content.add(match.entry().profile()));
+        }
+        return Optional.of(new PageImpl<>(content, pageable, matches.size()));
+    }
+
+    /**
+     * Applies a saved profile: indexed under its user's name when verified, removed otherwise
+     */
+    public void updateProfile(DoctorProfile profile) {
+        if (profile == null || profile.getId() == null) {
+            return;
+        }
+        if (profile.getVerificationStatus() != VerificationStatus.VERIFIED || profile.getUserId() == null) {
+            removeProfile(profile.getId());
+            return;
+        }
+        String fullName = userSummaryResolver.resolve(profile.getUserId()).map(UserSummary::getFullName).orElse(null);
+        DoctorProfile copy = profile.copySearchFields();
+        apply(grams -> grams.put(copy, fullName));
+    }
+
+    public void removeProfile(String profileId) {
+        apply(grams -> grams.remove(profileId));
+    }
+
+    /**
+     * Re-indexes the doctor of a saved user under the new name, if the user is an indexed doctor
+     */
+    public void updateUserName(String userId, String fullName) {
+        if (userId == null) {
+            return;
+        }
+        apply(grams -> grams.rename(userId, fullName));
+    }
+
+    private void apply(Consumer<NameGrams> change) {
+        synchronized (this) {
+            change.accept(index);
+            if (changedDuringReload != null) {
+                changedDuringReload.add(change);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from Mongo and swaps it in; the first run ends the warm-up
+     */
+    @Scheduled(initialDelayString = "${doctor-search.name-index.refresh-ms:300000}",
+            fixedDelayString = "${doctor-search.name-index.refresh-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            changedDuringReload = new ArrayList<>();
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            Query query = new Query(Criteria.where("verificationStatus").is(VerificationStatus.VERIFIED));
+            query.fields().include(DoctorProfile.SEARCH_FIELDS);
+            List<DoctorProfile> profiles = mongoTemplate.find(query, DoctorProfile.class);
+
+            Set<String> userIds = profiles.stream()
+                    .map(DoctorProfile::getUserId)
+                    .filter(userId -> userId != null)
+                    .collect(Collectors.toSet());
+            Map<String, String> names = new HashMap<>();
+            for (UserSummary user : userRepository.findSummariesByIdIn(userIds)) {
+                names.put(user.getId(), user.getFullName());
+            }
+
+            NameGrams reloaded = new NameGrams();
+            for (DoctorProfile profile : profiles) {
+                if (profile.getUserId() != null) {
+                    reloaded.put(profile.copySearchFields(), names.get(profile.getUserId()));
+                }
+            }
+
+            synchronized (this) {
+                changedDuringReload.forEach(change -> change.accept(reloaded));
+                index = reloaded;
+                ready = true;
+            }
+            log.info("Doctor name index loaded {} doctors in {} ms", reloaded.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Error loading doctor name index", e);
+        } finally {
+            synchronized (this) {
+                changedDuringReload = null;
+            }
+        }
+    }
+
+    /**
+     * Lower case, accents removed, anything but letters and digits turned into single spaces
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        return normalized.toString().trim();
+    }
+
+    /**
+     * Trigrams of each word padded with two spaces in front and one behind
+     */
+    static Set<String> trigrams(String normalized) {
+        Set<String> grams = new HashSet<>();
+        if (normalized.isEmpty()) {
+            return grams;
+        }
+        for (String word : normalized.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    private static double score(int common, int queryGrams, int fieldGrams) {
+        double coverage = (double) common / queryGrams;
+        double similarity = (double) common / (queryGrams + fieldGrams - common);
+        return COVERAGE_WEIGHT * coverage + SIMILARITY_WEIGHT * similarity;
+    }
+
+    private record Entry(DoctorProfile profile, String normalizedName, Set<String> nameGrams,
+                         String normalizedSpecialization, Set<String> specializationGrams) {
+    }
+
+    private record Match(Entry entry, double score) {
+    }
+
+    /**
+     * Entries and posting lists; readers need no lock, writers are serialized by the index
+     */
+    private static final class NameGrams {
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final Map<String, String> profileIdByUserId = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> namePostings = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> specializationPostings = new ConcurrentHashMap<>();
+
+        int size() {
+            return entries.size();
+        }
+
+        void put(DoctorProfile profile, String fullName) {
+            remove(profile.getId());
+
+            String normalizedName = normalize(fullName);
+            String normalizedSpecialization = normalize(profile.getSpecialization());
+            Entry entry = new Entry(profile, normalizedName, trigrams(normalizedName),
+                    normalizedSpecialization, trigrams(normalizedSpecialization));
+
+            entries.put(profile.getId(), entry);
+            profileIdByUserId.put(profile.getUserId(), profile.getId());
+            entry.nameGrams().forEach(gram ->
+                    namePostings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(profile.getId()));
+            entry.specializationGrams().forEach(gram ->
+                    specializationPostings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(profile.getId()));
+        }
+
+        void remove(String profileId) {
+            Entry entry = entries.remove(profileId);
+            if (entry == null) {
+                return;
+            }
+            profileIdByUserId.remove(entry.profile().getUserId(), profileId);
+            entry.nameGrams().forEach(gram -> removePosting(namePostings, gram, profileId));
+            entry.specializationGrams().forEach(gram -> removePosting(specializationPostings, gram, profileId));
+        }
+
+        void rename(String userId, String fullName) {
+            String profileId = profileIdByUserId.get(userId);
+            Entry entry = profileId != null ? entries.get(profileId) : null;
+            if (entry != null && !entry.normalizedName().equals(normalize(fullName))) {
+                put(entry.profile(), fullName);
+            }
+        }
+
+        List<Match> search(String query, String specialization, Integer minExperience,
+                           Predicate<DoctorProfile> filter, double minScore) {
+            List<Match> matches = new ArrayList<>();
+            Set<String> queryGrams = trigrams(query);
+            if (queryGrams.isEmpty()) {
+                return matches;
+            }
+
+            Map<String, int[]> nameCommon = countCommon(namePostings, queryGrams);
+            Map<String, int[]> specializationCommon = countCommon(specializationPostings, queryGrams);
+            Set<String> candidates = new HashSet<>(nameCommon.keySet());
+            candidates.addAll(specializationCommon.keySet());
+
+            for (String profileId : candidates) {
+                Entry entry = entries.get(profileId);
+                if (entry == null) {
+                    continue;
+                }
+                DoctorProfile profile = entry.profile();
+                if (specialization != null && !specialization.isBlank() && !specialization.equals(profile.getSpecialization())) {
+                    continue;
+                }
+                if (minExperience != null && (profile.getYearsOfExperience() == null || profile.getYearsOfExperience() < minExperience)) {
+                    continue;
+                }
+                if (!filter.test(profile)) {
+                    continue;
+                }
+
+                double nameScore = 0;
+                int[] common = nameCommon.get(profileId);
+                if (common != null) {
+                    nameScore = score(common[0], queryGrams.size(), entry.nameGrams().size());
+                    if (entry.normalizedName().contains(query)) {
+                        nameScore += CONTAINS_BONUS;
+                    }
+                }
+                double specializationScore = 0;
+                common = specializationCommon.get(profileId);
+                if (common != null) {
+                    specializationScore = score(common[0], queryGrams.size(), entry.specializationGrams().size());
+                    if (entry.normalizedSpecialization().contains(query)) {
+                        specializationScore += CONTAINS_BONUS;
+                    }
+                    specializationScore *= SPECIALIZATION_WEIGHT;
+                }
+
+                double score = Math.max(nameScore, specializationScore);
+                if (score >= minScore) {
+                    matches.add(new Match(entry, score));
+                }
+            }
+            return matches;
+        }
+
+        private static Map<String, int[]> countCommon(Map<String, Set<String>> postings, Set<String> queryGrams) {
+            Map<String, int[]> common = new HashMap<>();
+            for (String gram : queryGrams) {
+                Set<String> profileIds = postings.get(gram);
+                if (profileIds != null) {
+                    profileIds.forEach(profileId -> common.computeIfAbsent(profileId, key -> new int[1])[0]++);
+                }
+            }
+            return common;
+        }
+
+        private static void removePosting(Map<String, Set<String>> postings, String gram, String profileId) {
+            postings.computeIfPresent(gram, (key, profileIds) -> {
+                profileIds.remove(profileId);
+                return profileIds.isEmpty() ? null : profileIds;
+            });
+        }
+    }
+}
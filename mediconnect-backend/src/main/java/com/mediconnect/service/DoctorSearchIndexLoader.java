@@ -0,0 +1,39 @@
+package com.mediconnect.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the first load of the in-memory doctor search indexes once the application is ready, each on
+ * its own thread, so a slow load neither holds up startup nor the shared scheduler. The scheduler
+ * only runs the periodic reloads after that.
+ */
+@Component
+@RequiredArgsConstructor
+public class DoctorSearchIndexLoader {
+
+    private final DoctorGeoIndex doctorGeoIndex;
+    private final DoctorNameIndex doctorNameIndex;
+    private final DoctorSuggestionIndex doctorSuggestionIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, task -> {
+            Thread thread = new Thread(task, "doctor-search-index-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(doctorGeoIndex::reload);
+        executor.execute(doctorNameIndex::reload);
+        executor.execute(doctorSuggestionIndex::reload);
+        // The threads exit once the three loads are done
+        executor.shutdown();
+    }
+}
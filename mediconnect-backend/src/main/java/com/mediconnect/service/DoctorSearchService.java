@@ -1,12 +1,16 @@
 package com.mediconnect.service;
 
 import com.mediconnect.dto.doctor.DoctorSearchResponse;
+import com.mediconnect.dto.doctor.DoctorSuggestionResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface DoctorSearchService {
     /**
      * Search for doctors based on various criteria
+     * @param name Doctor's name or specialization, matched fuzzily; takes precedence over the location criteria
      * @param specialization Doctor's specialization
      * @param minExperience Minimum years of experience
      * @param city City name
@@ -30,4 +34,12 @@ public interface DoctorSearchService {
         Pageable pageable
     );
 
+    /**
+     * Typeahead suggestions for the search box, served from memory
+     * @param text Text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Doctors and specializations with a word starting with the text, most popular first
+     */
+    List<DoctorSuggestionResponse> suggest(String text, int limit);
+
 }
\ No newline at end of file
@@ -0,0 +1,541 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.doctor.DoctorSuggestionResponse;
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.enums.AppointmentStatus;
+import com.mediconnect.enums.SuggestionType;
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.mediconnect.service.DoctorNameIndex.normalize;
+
+/**
+ * In-memory prefix index of verified doctors' names and specializations for the search box typeahead.
+ *
+ * Every word-start suffix of a normalized name or specialization ("john smith", "smith") is a key in
+ * a radix trie, so typing any word of a name finds it. Each trie node caches the best suggestions of
+ * its subtree. A change clears only the caches on the paths of the keys it touches, and a cleared
+ * node is rebuilt from its children's caches on the next lookup, so a keystroke costs a walk down the
+ * typed prefix and at most a merge of a few short lists.
+ *
+ * Suggestions are ranked by popularity: for a doctor, their non-cancelled appointments as counted by
+ * the last reload; for a specialization, the sum over its doctors. Like DoctorNameIndex the index follows profile and user saves and is loaded at startup
+ * and reloaded by the scheduler; suggest returns nothing until the first load.
+ */
+@Slf4j
+@Service
+public class DoctorSuggestionIndex {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final UserSummaryResolver userSummaryResolver;
+    private final boolean enabled;
+    private final int maxLimit;
+
+    // Lookups fill node caches, so reads take the lock as well as writes
+    private SuggestionTrie trie;
+    private volatile boolean ready;
+
+    // Changes applied while a reload runs, replayed onto the reloaded trie; null when no reload runs
+    private List<Consumer<SuggestionTrie>> changedDuringReload;
+
+    public DoctorSuggestionIndex(MongoTemplate mongoTemplate,
+                                 UserRepository userRepository,
+                                 UserSummaryResolver userSummaryResolver,
+                                 @Value("${doctor-search.suggest.enabled:true}") boolean enabled,
+                                 @Value("${doctor-search.suggest.max-limit:10}") int maxLimit) {
+        this.mongoTemplate = mongoTemplate;
+        this.userRepository = userRepository;
+        this.userSummaryResolver = userSummaryResolver;
+        this.enabled = enabled;
+        this.maxLimit = maxLimit;
+        this.trie = new SuggestionTrie(maxLimit, Map.of());
+    }
+
+    /**
+     * Most popular doctors and specializations with a word starting with the text
+     */
+    public List<DoctorSuggestionResponse> suggest(String text, int limit) {
+        String prefix = normalize(text);
+        if (!ready || prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        synchronized (this) {
+            return trie.top(prefix).stream()
+                    .limit(Math.min(limit, maxLimit))
+                    .map(suggestion -> new DoctorSuggestionResponse(suggestion.type, suggestion.id,
+                            suggestion.text, suggestion.specialization))
+                    .toList();
+        }
+    }
+
+    /**
+     * Applies a saved profile: suggested under its user's name when verified, removed otherwise
+     */
+    public void updateProfile(DoctorProfile profile) {
+        if (profile == null || profile.getId() == null) {
+            return;
+        }
+        if (profile.getVerificationStatus() != VerificationStatus.VERIFIED || profile.getUserId() == null) {
+            removeProfile(profile.getId());
+            return;
+        }
+        String fullName = userSummaryResolver.resolve(profile.getUserId()).map(UserSummary::getFullName).orElse(null);
+        String profileId = profile.getId();
+        String userId = profile.getUserId();
+        String specialization = profile.getSpecialization();
+        apply(suggestions -> suggestions.put(profileId, userId, fullName, specialization));
+    }
+
+    public void removeProfile(String profileId) {
+        apply(suggestions -> suggestions.removeProfile(profileId));
+    }
+
+    /**
+     * Re-keys the doctor of a saved user under the new name, if the user is a suggested doctor
+     */
+    public void updateUserName(String userId, String fullName) {
+        if (userId == null) {
+            return;
+        }
+        apply(suggestions -> suggestions.rename(userId, fullName));
+    }
+
+    private void apply(Consumer<SuggestionTrie> change) {
+        synchronized (this) {
+            change.accept(trie);
+            if (changedDuringReload != null) {
+                changedDuringReload.add(change);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the trie and the appointment counts from Mongo and swaps them in; the first run ends the warm-up
+     */
+    @Scheduled(initialDelayString = "${doctor-search.suggest.refresh-ms:300000}",
+            fixedDelayString = "${doctor-search.suggest.refresh-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            changedDuringReload = new ArrayList<>();
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            Query query = new Query(Criteria.where("verificationStatus").is(VerificationStatus.VERIFIED));
+            query.fields().include("userId", "specialization");
+            List<DoctorProfile> profiles = mongoTemplate.find(query, DoctorProfile.class);
+
+            Set<String> userIds = profiles.stream()
+                    .map(DoctorProfile::getUserId)
+                    .filter(userId -> userId != null)
+                    .collect(Collectors.toSet());
+            Map<String, String> names = new HashMap<>();
+            for (UserSummary user : userRepository.findSummariesByIdIn(userIds)) {
+                names.put(user.getId(), user.getFullName());
+            }
+
+            SuggestionTrie reloaded = new SuggestionTrie(maxLimit, countAppointments());
+            for (DoctorProfile profile : profiles) {
+                if (profile.getUserId() != null) {
+                    reloaded.put(profile.getId(), profile.getUserId(), names.get(profile.getUserId()), profile.getSpecialization());
+                }
+            }
+            // Fill every node cache here rather than on the first keystrokes
+            reloaded.top("");
+
+            synchronized (this) {
+                changedDuringReload.forEach(change -> change.accept(reloaded));
+                trie = reloaded;
+                ready = true;
+            }
+            log.info("Doctor suggestion index loaded {} doctors in {} ms", reloaded.doctorCount(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Error loading doctor suggestion index", e);
+        } finally {
+            synchronized (this) {
+                changedDuringReload = null;
+            }
+        }
+    }
+
+    /**
+     * Non-cancelled appointments per doctor user id
+     */
+    private Map<String, Long> countAppointments() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("status").ne(AppointmentStatus.CANCELLED)),
+                Aggregation.group("doctorId").count().as("count"));
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Appointment.class, Document.class)) {
+            Object doctorId = row.get("_id");
+            Number count = row.get("count", Number.class);
+            if (doctorId != null && count != null) {
+                counts.put(doctorId.toString(), count.longValue());
+            }
+        }
+        return counts;
+    }
+
+    private static String doctorKey(String userId) {
+        return "D:" + userId;
+    }
+
+    private static String specializationKey(String normalizedSpecialization) {
+        return "S:" + normalizedSpecialization;
+    }
+
+    /**
+     * The normalized text and each of its suffixes that starts a word
+     */
+    private static Set<String> wordStarts(String normalized) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    private static final class Suggestion {
+        private final String key;
+        private final SuggestionType type;
+        private final String id;
+        private String text;
+        private String normalized;
+        private final String specialization;
+        private long popularity;
+
+        // Doctors only: profile and the specialization suggestion they count towards
+        private final String profileId;
+        private final String specializationKey;
+
+        // Specializations only: their doctors and the sum of their popularity
+        private int doctors;
+        private long doctorsPopularity;
+
+        Suggestion(String key, SuggestionType type, String id, String text, String normalized,
+                   String specialization, String profileId, String specializationKey) {
+            this.key = key;
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.normalized = normalized;
+            this.specialization = specialization;
+            this.profileId = profileId;
+            this.specializationKey = specializationKey;
+        }
+    }
+
+    private static final class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Suggestion> terminals = new ArrayList<>(1);
+
+        // Best suggestions of the subtree, null when a change below made it stale
+        private List<Suggestion> top;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Radix trie over suggestion keys; not thread safe, the index serializes all access
+     */
+    private static final class SuggestionTrie {
+
+        private static final Comparator<Suggestion> RANKING = Comparator.<Suggestion>comparingLong(s -> s.popularity).reversed()
+                .thenComparing(s -> s.normalized)
+                .thenComparing(s -> s.key);
+
+        private final int capacity;
+        private final Map<String, Long> appointmentCounts;
+        private final Node root = new Node("");
+        private final Map<String, Suggestion> suggestions = new HashMap<>();
+        private final Map<String, String> userIdByProfileId = new HashMap<>();
+
+        SuggestionTrie(int capacity, Map<String, Long> appointmentCounts) {
+            this.capacity = capacity;
+            this.appointmentCounts = appointmentCounts;
+        }
+
+        int doctorCount() {
+            return userIdByProfileId.size();
+        }
+
+        void put(String profileId, String userId, String fullName, String specialization) {
+            removeProfile(profileId);
+            Suggestion existing = suggestions.get(doctorKey(userId));
+            if (existing != null) {
+                removeProfile(existing.profileId);
+            }
+
+            String name = normalize(fullName);
+            if (name.isEmpty()) {
+                return;
+            }
+            String normalizedSpecialization = normalize(specialization);
+            Suggestion specializationSuggestion = null;
+            if (!normalizedSpecialization.isEmpty()) {
+                String key = specializationKey(normalizedSpecialization);
+                specializationSuggestion = suggestions.get(key);
+                if (specializationSuggestion == null) {
+                    specializationSuggestion = new Suggestion(key, SuggestionType.SPECIALIZATION, specialization.trim(),
+                            specialization.trim(), normalizedSpecialization, null, null, null);
+                    add(specializationSuggestion);
+                }
+            }
+
+            Suggestion doctor = new Suggestion(doctorKey(userId), SuggestionType.DOCTOR, userId, fullName.trim(), name,
+                    specialization, profileId, specializationSuggestion != null ? specializationSuggestion.key : null);
+            userIdByProfileId.put(profileId, userId);
+            add(doctor);
+            if (specializationSuggestion != null) {
+                specializationSuggestion.doctors++;
+            }
+            refresh(doctor);
+        }
+
+        void removeProfile(String profileId) {
+            String userId = userIdByProfileId.remove(profileId);
+            Suggestion doctor = userId != null ? suggestions.get(doctorKey(userId)) : null;
+            if (doctor == null || !profileId.equals(doctor.profileId)) {
+                return;
+            }
+            remove(doctor);
+
+            if (doctor.specializationKey != null) {
+                Suggestion specialization = suggestions.get(doctor.specializationKey);
+                if (--specialization.doctors == 0) {
+                    remove(specialization);
+                } else {
+                    specialization.doctorsPopularity -= doctor.popularity;
+                    refresh(specialization);
+                }
+            }
+        }
+
+        void rename(String userId, String fullName) {
+            Suggestion doctor = suggestions.get(doctorKey(userId));
+            if (doctor == null) {
+                return;
+            }
+            String name = normalize(fullName);
+            if (name.isEmpty()) {
+                removeProfile(doctor.profileId);
+            } else if (!name.equals(doctor.normalized)) {
+                removeKeys(doctor);
+                doctor.text = fullName.trim();
+                doctor.normalized = name;
+                addKeys(doctor);
+            } else {
+                // Same keys; cached lists hold the suggestion itself and show the new spelling
+                doctor.text = fullName.trim();
+            }
+        }
+
+        /**
+         * Suggestions under the prefix, best first, at most capacity of them
+         */
+        List<Suggestion> top(String prefix) {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    return List.of();
+                }
+                int matched = commonPrefix(child.label, prefix, i);
+                if (matched < child.label.length() && i + matched < prefix.length()) {
+                    return List.of();
+                }
+                node = child;
+                i += matched;
+            }
+            return top(node);
+        }
+
+        private List<Suggestion> top(Node node) {
+            if (node.top == null) {
+                List<Suggestion> candidates = new ArrayList<>(node.terminals);
+                for (Node child : node.children.values()) {
+                    candidates.addAll(top(child));
+                }
+                candidates.sort(RANKING);
+
+                // A name with a repeated word is under a prefix twice; the copies sort next to each
+                // other and are dropped, which may leave the list a little short
+                List<Suggestion> top = new ArrayList<>(Math.min(capacity, candidates.size()));
+                Suggestion previous = null;
+                for (Suggestion candidate : candidates) {
+                    if (top.size() == capacity) {
+                        break;
+                    }
+                    if (candidate != previous) {
+                        top.add(candidate);
+                    }
+                    previous = candidate;
+                }
+                node.top = top;
+            }
+            return node.top;
+        }
+
+        /**
+         * Recomputes the popularity from the counters, passing a doctor's change on to their specialization
+         */
+        private void refresh(Suggestion suggestion) {
+            long popularity = suggestion.type == SuggestionType.DOCTOR
+                    ? appointmentCounts.getOrDefault(suggestion.id, 0L)
+                    : suggestion.doctorsPopularity;
+            long change = popularity - suggestion.popularity;
+            if (change == 0) {
+                return;
+            }
+            suggestion.popularity = popularity;
+            wordStarts(suggestion.normalized).forEach(this::invalidate);
+            if (suggestion.specializationKey != null) {
+                Suggestion specialization = suggestions.get(suggestion.specializationKey);
+                specialization.doctorsPopularity += change;
+                refresh(specialization);
+            }
+        }
+
+        private void add(Suggestion suggestion) {
+            suggestions.put(suggestion.key, suggestion);
+            addKeys(suggestion);
+        }
+
+        private void remove(Suggestion suggestion) {
+            suggestions.remove(suggestion.key);
+            removeKeys(suggestion);
+        }
+
+        private void addKeys(Suggestion suggestion) {
+            wordStarts(suggestion.normalized).forEach(key -> insert(key, suggestion));
+        }
+
+        private void removeKeys(Suggestion suggestion) {
+            wordStarts(suggestion.normalized).forEach(key -> delete(key, suggestion));
+        }
+
+        private void insert(String key, Suggestion suggestion) {
+            Node node = root;
+            node.top = null;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new Node(key.substring(i));
+                    node.children.put(key.charAt(i), child);
+                    node = child;
+                    break;
+                }
+                int matched = commonPrefix(child.label, key, i);
+                if (matched < child.label.length()) {
+                    // Split the edge where the key leaves it
+                    Node middle = new Node(child.label.substring(0, matched));
+                    child.label = child.label.substring(matched);
+                    middle.children.put(child.label.charAt(0), child);
+                    node.children.put(middle.label.charAt(0), middle);
+                    child = middle;
+                }
+                child.top = null;
+                node = child;
+                i += matched;
+            }
+            node.terminals.add(suggestion);
+        }
+
+        private void delete(String key, Suggestion suggestion) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null || !key.startsWith(child.label, i)) {
+                    return;
+                }
+                node = child;
+                path.add(node);
+                i += child.label.length();
+            }
+            if (!node.terminals.remove(suggestion)) {
+                return;
+            }
+            path.forEach(visited -> visited.top = null);
+
+            // Drop emptied leaves, then fold a pass-through node into its only child
+            for (int depth = path.size() - 1; depth > 0; depth--) {
+                Node current = path.get(depth);
+                Node parent = path.get(depth - 1);
+                if (!current.terminals.isEmpty()) {
+                    break;
+                }
+                if (current.children.isEmpty()) {
+                    parent.children.remove(current.label.charAt(0));
+                } else {
+                    if (current.children.size() == 1) {
+                        Node only = current.children.values().iterator().next();
+                        only.label = current.label + only.label;
+                        parent.children.put(only.label.charAt(0), only);
+                    }
+                    break;
+                }
+            }
+        }
+
+        private void invalidate(String key) {
+            Node node = root;
+            node.top = null;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    return;
+                }
+                child.top = null;
+                node = child;
+                i += child.label.length();
+            }
+        }
+
+        private static int commonPrefix(String label, String key, int offset) {
+            int max = Math.min(label.length(), key.length() - offset);
+            int matched = 0;
+            while (matched < max && label.charAt(matched) == key.charAt(offset + matched)) {
+                matched++;
+            }
+            return matched;
+        }
+    }
+}
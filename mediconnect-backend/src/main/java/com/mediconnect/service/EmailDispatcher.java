@@ -0,0 +1,147 @@
+package com.mediconnect.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers emails off the request thread.
+ *
+ * Sends are queued on a bounded queue drained by a small dedicated worker pool. A failed send is
+ * retried with exponential backoff - the retry waits on a scheduler rather than on a worker, so a
+ * slow mail server cannot pin the pool. When the queue is full the email is dropped and counted
+ * instead of blocking the caller.
+ *
+ * Metrics: email.dispatch.queue.depth, email.dispatch.latency (enqueue to delivery) and
+ * email.dispatch.{sent,retried,failed,rejected}.
+ */
+@Slf4j
+@Service
+public class EmailDispatcher {
+
+    @FunctionalInterface
+    public interface MailTask {
+        void send() throws MessagingException;
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+
+    private final Timer latency;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public EmailDispatcher(MeterRegistry meterRegistry,
+                           @Value("${email.dispatch.workers:2}") int workerCount,
+                           @Value("${email.dispatch.queue-capacity:1000}") int queueCapacity,
+                           @Value("${email.dispatch.max-attempts:3}") int maxAttempts,
+                           @Value("${email.dispatch.initial-backoff-ms:1000}") long initialBackoffMs) {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                queue, namedThreads("email-dispatch-"), new ThreadPoolExecutor.AbortPolicy());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("email-retry-"));
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+
+        Gauge.builder("email.dispatch.queue.depth", queue, BlockingQueue::size)
+                .description("Emails waiting for a dispatch worker")
+                .register(meterRegistry);
+        this.latency = Timer.builder("email.dispatch.latency")
+                .description("Time from enqueue to successful delivery")
+                .register(meterRegistry);
+        this.sent = meterRegistry.counter("email.dispatch.sent");
+        this.retried = meterRegistry.counter("email.dispatch.retried");
+        this.failed = meterRegistry.counter("email.dispatch.failed");
+        this.rejected = meterRegistry.counter("email.dispatch.rejected");
+    }
+
+    /**
+     * Queues an email for delivery; returns false if the queue is full and the email was dropped
+     */
+    public boolean dispatch(String description, MailTask task) {
+        return !submit(description, task).isCompletedExceptionally();
+    }
+
+    /**
+     * Queues an email for delivery. The future completes once the email is sent, or exceptionally
+     * when the queue is full or every attempt failed; it never completes if the dispatcher shuts
+     * down with the email still waiting for a retry.
+     */
+    public CompletableFuture<Void> submit(String description, MailTask task) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        submit(description, task, 1, System.nanoTime(), result);
+        return result;
+    }
+
+    private void submit(String description, MailTask task, int attempt, long enqueuedAt, CompletableFuture<Void> result) {
+        try {
+            workers.execute(() -> deliver(description, task, attempt, enqueuedAt, result));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Email queue full, dropping {}", description);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void deliver(String description, MailTask task, int attempt, long enqueuedAt, CompletableFuture<Void> result) {
+        try {
+            task.send();
+            sent.increment();
+            latency.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            result.complete(null);
+        } catch (Exception e) {
+            if (attempt >= maxAttempts || retryScheduler.isShutdown()) {
+                failed.increment();
+                log.error("Failed to send {} after {} attempts", description, attempt, e);
+                result.completeExceptionally(e);
+                return;
+            }
+
+            long backoffMs = initialBackoffMs << (attempt - 1);
+            retried.increment();
+            log.warn("Failed to send {} (attempt {}), retrying in {} ms: {}", description, attempt, backoffMs, e.getMessage());
+            retryScheduler.schedule(() -> submit(description, task, attempt + 1, enqueuedAt, result),
+                    backoffMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Pending retries are abandoned; emails already queued still get their current attempt
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Email dispatch did not drain in time, {} emails dropped", workers.shutdownNow().size());
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
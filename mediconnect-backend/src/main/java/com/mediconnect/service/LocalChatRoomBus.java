@@ -0,0 +1,65 @@
+package com.mediconnect.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Single-node bus: frames go straight to the listener of the room in this JVM
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatRoomBus implements ChatRoomBus {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Consumer<Frame>> listeners = new ConcurrentHashMap<>();
+    private final Map<Kind, Consumer<Frame>> nodeListeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String appointmentId, Kind kind, byte[] payload, String excludeUserId) {
+        deliver(new Frame(appointmentId, kind, payload, excludeUserId, nodeId));
+    }
+
+    @Override
+    public void subscribe(String appointmentId, Consumer<Frame> listener) {
+        listeners.put(appointmentId, listener);
+    }
+
+    @Override
+    public void unsubscribe(String appointmentId) {
+        listeners.remove(appointmentId);
+    }
+
+    @Override
+    public void subscribeNode(Kind kind, Consumer<Frame> listener) {
+        nodeListeners.put(kind, listener);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    protected Map<String, Consumer<Frame>> getListeners() {
+        return listeners;
+    }
+
+    protected void deliver(Frame frame) {
+        Consumer<Frame> nodeListener = nodeListeners.get(frame.kind());
+        Consumer<Frame> listener = nodeListener != null ? nodeListener : listeners.get(frame.appointmentId());
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.accept(frame);
+        } catch (RuntimeException e) {
+            log.error("Error delivering {} frame for appointment: {}", frame.kind(), frame.appointmentId(), e);
+        }
+    }
+}
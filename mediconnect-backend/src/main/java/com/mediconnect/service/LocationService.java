@@ -4,24 +4,162 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.mediconnect.dto.AddressResponse;
 import com.mediconnect.model.Address;
+import com.mediconnect.model.PincodeLocation;
+import com.mediconnect.repository.PincodeLocationRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
+/**
+ * Pincode and address lookups.
+ *
+ * Pincodes resolve from a bounded in-process LRU, then from the pincode_locations collection
+ * (filled by PincodeDatasetImporter and by earlier lookups), and only then from the postal and
+ * geocoding APIs. Concurrent misses of the same pincode share one lookup, and the HTTP calls are
+ * bounded by connect and read timeouts.
+ */
+@Slf4j
 @Service
 public class LocationService {
 
     @Value("${google.maps.api.key}")
     private String googleMapsApiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
     private static final String PINCODE_API_URL = "https://api.postalpincode.in/postoffice/";
+    private static final Pattern PINCODE_PATTERN = Pattern.compile("\\d{6}");
+
+    private final PincodeLocationRepository pincodeLocationRepository;
+    private final long lookupTimeoutMs;
+    private final Map<String, PincodeLocation> pincodeCache;
+
+    // Lookups in progress, joined by concurrent requests for the same pincode
+    private final Map<String, CompletableFuture<PincodeLocation>> pendingLookups = new ConcurrentHashMap<>();
+
+    public LocationService(PincodeLocationRepository pincodeLocationRepository,
+                           @Value("${location.pincode.cache.max-size:50000}") int maxCachedPincodes,
+                           @Value("${location.pincode.lookup-timeout-ms:5000}") long lookupTimeoutMs,
+                           @Value("${location.http.connect-timeout-ms:2000}") int connectTimeoutMs,
+                           @Value("${location.http.read-timeout-ms:3000}") int readTimeoutMs) {
+        this.pincodeLocationRepository = pincodeLocationRepository;
+        this.lookupTimeoutMs = lookupTimeoutMs;
+        this.pincodeCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PincodeLocation> eldest) {
+                return size() > maxCachedPincodes;
+            }
+        };
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
 
     public AddressResponse getLocationDetailsFromPincode(String pincode) {
+        if (pincode == null || !PINCODE_PATTERN.matcher(pincode).matches()) {
+            throw new RuntimeException("Invalid pincode or service unavailable");
+        }
+
+        PincodeLocation location;
+        synchronized (pincodeCache) {
+            location = pincodeCache.get(pincode);
+        }
+        if (location == null) {
+            location = lookupPincode(pincode);
+        }
+
+        AddressResponse address = new AddressResponse();
+        address.setPincode(pincode);
+        address.setCity(location.getCity());
+        address.setState(location.getState());
+        address.setLocation(location.getLocation());
+        return address;
+    }
+
+    /**
+     * Drops the in-process copies, e.g. after the collection was re-imported
+     */
+    public void evictCachedPincodes() {
+        synchronized (pincodeCache) {
+            pincodeCache.clear();
+        }
+    }
+
+    private PincodeLocation lookupPincode(String pincode) {
+        CompletableFuture<PincodeLocation> lookup = new CompletableFuture<>();
+        CompletableFuture<PincodeLocation> inProgress = pendingLookups.putIfAbsent(pincode, lookup);
+        if (inProgress != null) {
+            return awaitLookup(pincode, inProgress);
+        }
+
+        try {
+            PincodeLocation location = loadPincode(pincode);
+            lookup.complete(location);
+            return location;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLookups.remove(pincode, lookup);
+        }
+    }
+
+    private PincodeLocation awaitLookup(String pincode, CompletableFuture<PincodeLocation> lookup) {
+        try {
+            return lookup.get(lookupTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Pincode lookup timed out: " + pincode);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Pincode lookup failed: " + pincode, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Pincode lookup interrupted: " + pincode);
+        }
+    }
+
+    private PincodeLocation loadPincode(String pincode) {
+        PincodeLocation location = pincodeLocationRepository.findById(pincode).orElse(null);
+        if (location == null) {
+            AddressResponse address = fetchLocationDetailsFromPincode(pincode);
+            location = new PincodeLocation(pincode, address.getCity(), address.getState(), address.getLocation(),
+                    PincodeLocation.SOURCE_API, LocalDateTime.now());
+            if (location.getLocation() == null) {
+                // Not kept, so that the next lookup can still geocode it
+                return location;
+            }
+            try {
+                pincodeLocationRepository.save(location);
+            } catch (Exception e) {
+                log.warn("Could not store location of pincode {}: {}", pincode, e.getMessage());
+            }
+        }
+
+        synchronized (pincodeCache) {
+            pincodeCache.put(pincode, location);
+        }
+        return location;
+    }
+
+    private AddressResponse fetchLocationDetailsFromPincode(String pincode) {
         // Using PostPincode API for Indian pincodes
         String url = "https://api.postalpincode.in/pincode/" + pincode;
         ResponseEntity<Map[]> response = restTemplate.getForEntity(url, Map[].class);
@@ -0,0 +1,208 @@
+package com.mediconnect.service;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-node bus over a capped MongoDB collection.
+ *
+ * Frames for local sessions are delivered directly, as in LocalChatRoomBus, and also appended to
+ * the collection. One thread per node tails the whole collection and drops its own frames and
+ * those of rooms it does not host in memory. The cursor is deliberately unfiltered by room: the
+ * server closes a tailable cursor whose filter matches nothing, and every reopen scans the capped
+ * collection again. It stays open across subscription changes and is only reopened after an
+ * error, resuming a few seconds before the last frame it read - ObjectIds of different nodes are
+ * only roughly ordered - with frames already delivered skipped by id.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "mongo")
+public class MongoChatRoomBus extends LocalChatRoomBus {
+
+    static final String COLLECTION = "chat_bus";
+
+    private static final int RESUME_OVERLAP_SECONDS = 5;
+    private static final int MAX_REMEMBERED_FRAMES = 10000;
+
+    private final MongoTemplate mongoTemplate;
+    private final long cappedSizeBytes;
+    private final long maxAwaitMs;
+
+    private volatile boolean running = true;
+    private Thread tailer;
+
+    // Tailer state: frames older than this second were handled by an earlier cursor or predate the node
+    private long resumeSecond = nowSecond() - RESUME_OVERLAP_SECONDS;
+    // Last frame read, where a reopened cursor resumes; the filter always matches it or a newer frame
+    private ObjectId lastRead;
+
+    // Ids of recently delivered frames, to drop the overlap after a cursor is reopened
+    private final Map<ObjectId, Boolean> delivered = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjectId, Boolean> eldest) {
+            return size() > MAX_REMEMBERED_FRAMES;
+        }
+    };
+
+    public MongoChatRoomBus(MongoTemplate mongoTemplate,
+                            @Value("${chat.bus.mongo.capped-size-bytes:67108864}") long cappedSizeBytes,
+                            @Value("${chat.bus.mongo.max-await-ms:200}") long maxAwaitMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.cappedSizeBytes = cappedSizeBytes;
+        this.maxAwaitMs = maxAwaitMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!mongoTemplate.collectionExists(COLLECTION)) {
+            try {
+                mongoTemplate.createCollection(COLLECTION, CollectionOptions.empty().capped().size(cappedSizeBytes));
+                // A tailable cursor on an empty capped collection is closed immediately
+                mongoTemplate.getCollection(COLLECTION).insertOne(new Document("kind", "INIT").append("createdAt", new Date()));
+            } catch (Exception e) {
+                // Created by another node in the meantime
+                log.debug("Chat bus collection not created: {}", e.getMessage());
+            }
+        }
+
+        tailer = new Thread(this::runTailer, "chat-bus-tailer");
+        tailer.setDaemon(true);
+        tailer.start();
+        log.info("Chat room bus on capped collection {} as node {}", COLLECTION, getNodeId());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        tailer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void publish(String appointmentId, Kind kind, byte[] payload, String excludeUserId) {
+        super.publish(appointmentId, kind, payload, excludeUserId);
+
+        Document frame = new Document("appointmentId", appointmentId)
+                .append("kind", kind.name())
+                .append("payload", payload)
+                .append("excludeUserId", excludeUserId)
+                .append("origin", getNodeId())
+                .append("createdAt", new Date());
+        try {
+            mongoTemplate.getCollection(COLLECTION).insertOne(frame);
+        } catch (Exception e) {
+            log.error("Error publishing {} frame for appointment: {}", kind, appointmentId, e);
+        }
+    }
+
+    private void runTailer() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(COLLECTION);
+
+        while (running) {
+            try (MongoCursor<Document> cursor = collection.find(resumeFilter())
+                    .cursorType(CursorType.TailableAwait)
+                    .maxAwaitTime(maxAwaitMs, TimeUnit.MILLISECONDS)
+                    .iterator()) {
+                while (running) {
+                    Document document = cursor.tryNext();
+                    if (document != null) {
+                        onDocument(document);
+                    } else if (cursor.getServerCursor() == null) {
+                        // Dead cursor, e.g. the collection was dropped: reopen unfiltered after a pause
+                        lastRead = null;
+                        sleepQuietly(maxAwaitMs);
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Chat bus cursor failed, reopening: {}", e.getMessage());
+                    sleepQuietly(1000);
+                }
+            }
+        }
+    }
+
+    /**
+     * Where a new cursor starts: a few seconds before the last frame read, or the whole collection
+     * before the first one - a filter that matches nothing would kill the cursor
+     */
+    Bson resumeFilter() {
+        if (lastRead == null) {
+            return new Document();
+        }
+        resumeSecond = lastRead.getTimestamp() - RESUME_OVERLAP_SECONDS;
+        return Filters.gte("_id", idAt(resumeSecond));
+    }
+
+    /**
+     * Delivers a tailed frame unless it is old, already delivered, this node's own or not a frame
+     */
+    void onDocument(Document document) {
+        ObjectId id = document.getObjectId("_id");
+        lastRead = id;
+        if (id.getTimestamp() < resumeSecond || delivered.put(id, Boolean.TRUE) != null) {
+            return;
+        }
+        if (getNodeId().equals(document.getString("origin")) || document.getString("appointmentId") == null) {
+            return;
+        }
+
+        Frame frame;
+        try {
+            frame = toFrame(document);
+        } catch (IllegalArgumentException e) {
+            // A kind this node does not know, published by a newer one
+            log.debug("Skipping chat bus frame {} of kind {}", id, document.getString("kind"));
+            return;
+        }
+        // Rooms without a local listener are dropped by deliver
+        deliver(frame);
+    }
+
+    private static Frame toFrame(Document document) {
+        return new Frame(document.getString("appointmentId"),
+                Kind.valueOf(document.getString("kind")),
+                Optional.ofNullable(document.get("payload", Binary.class)).map(Binary::getData).orElse(null),
+                document.getString("excludeUserId"),
+                document.getString("origin"));
+    }
+
+    private static long nowSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Smallest ObjectId of the given second
+     */
+    private static ObjectId idAt(long epochSecond) {
+        return new ObjectId(String.format("%08x0000000000000000", epochSecond));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.mediconnect.repository.AppointmentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -34,6 +35,8 @@ public class NotificationService {
         notification.setMessage(message);
         notification.setType(type);
         notification.setRelatedId(relatedId);
+        notification.setStatus("UNREAD");
+        notification.setCreatedAt(LocalDateTime.now());
         notificationRepository.save(notification);
 
         WebSocketNotification wsNotification = new WebSocketNotification();
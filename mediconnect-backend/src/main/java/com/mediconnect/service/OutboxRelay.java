@@ -0,0 +1,209 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.OutboxEvent;
+import com.mediconnect.repository.AppointmentRepository;
+import com.mediconnect.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drains the outbox in batches and performs the side effects: email, stored notification and its
+ * WebSocket push (NotificationService.createNotification does both).
+ *
+ * Notifications are created on the scheduler thread; emails are handed to the EmailDispatcher pool
+ * and the event stays claimed, with its lease renewed on every run, until they are all sent.
+ * Delivery is tracked per recipient, so a retried event only serves the recipients that were missed,
+ * with exponential backoff until outbox.relay.max-attempts is reached.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final UserSummaryResolver userSummaryResolver;
+    private final EmailService emailService;
+    private final EmailDispatcher emailDispatcher;
+    private final NotificationService notificationService;
+
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration initialBackoff;
+
+    // Claimed events whose emails are still with the dispatcher, by id
+    private final Map<String, OutboxEvent> inFlight = new ConcurrentHashMap<>();
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       AppointmentRepository appointmentRepository,
+                       UserSummaryResolver userSummaryResolver,
+                       EmailService emailService,
+                       EmailDispatcher emailDispatcher,
+                       NotificationService notificationService,
+                       @Value("${outbox.relay.batch-size:20}") int batchSize,
+                       @Value("${outbox.relay.max-in-flight:200}") int maxInFlight,
+                       @Value("${outbox.relay.max-attempts:8}") int maxAttempts,
+                       @Value("${outbox.relay.lease-ms:60000}") long leaseMs,
+                       @Value("${outbox.relay.initial-backoff-ms:1000}") long initialBackoffMs) {
+        this.outboxRepository = outboxRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.userSummaryResolver = userSummaryResolver;
+        this.emailService = emailService;
+        this.emailDispatcher = emailDispatcher;
+        this.notificationService = notificationService;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.initialBackoff = Duration.ofMillis(initialBackoffMs);
+    }
+
+    /**
+     * Renews the leases of the events still in flight and claims at most one batch - the scheduler
+     * thread never waits on SMTP and never stays here for more than a batch
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
+    public void drain() {
+        if (!inFlight.isEmpty()) {
+            Set<String> claimTokens = new HashSet<>();
+            inFlight.values().forEach(event -> claimTokens.add(event.getClaimToken()));
+            outboxRepository.renewLeases(new ArrayList<>(inFlight.keySet()), claimTokens, lease);
+        }
+
+        int limit = Math.min(batchSize, maxInFlight - inFlight.size());
+        if (limit <= 0) {
+            return;
+        }
+        List<OutboxEvent> batch = outboxRepository.claimBatch(limit, lease);
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<OutboxEvent> batch) {
+        // Resolve everything the batch refers to up front - one query for appointments, one for users
+        Set<String> appointmentIds = new HashSet<>();
+        Set<String> userIds = new HashSet<>();
+        for (OutboxEvent event : batch) {
+            appointmentIds.add(event.getAppointmentId());
+            userIds.addAll(event.getRecipientIds());
+        }
+        Map<String, Appointment> appointments = new HashMap<>();
+        appointmentRepository.findAllById(appointmentIds).forEach(a -> appointments.put(a.getId(), a));
+        Map<String, UserSummary> users = userSummaryResolver.resolve(userIds);
+
+        for (OutboxEvent event : batch) {
+            CompletableFuture<Void> emails;
+            try {
+                if (OutboxEvent.TYPE_APPOINTMENT_STATUS.equals(event.getType())) {
+                    emails = deliverAppointmentStatus(event, appointments.get(event.getAppointmentId()), users);
+                } else {
+                    log.warn("Dropping outbox event {} of unknown type {}", event.getId(), event.getType());
+                    emails = CompletableFuture.completedFuture(null);
+                }
+            } catch (Exception e) {
+                emails = CompletableFuture.failedFuture(e);
+            }
+
+            inFlight.put(event.getId(), event);
+            emails.whenComplete((ignored, error) -> complete(event, error));
+        }
+    }
+
+    private void complete(OutboxEvent event, Throwable error) {
+        try {
+            if (error == null) {
+                outboxRepository.deleteClaimed(event);
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            int attempt = event.getAttempts() + 1;
+            boolean giveUp = attempt >= maxAttempts;
+            LocalDateTime nextAttemptAt = LocalDateTime.now().plus(initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 16)));
+            log.warn("Outbox event {} failed (attempt {}){}: {}", event.getId(), attempt,
+                    giveUp ? ", giving up" : "", cause.getMessage());
+            outboxRepository.markFailed(event, String.valueOf(cause.getMessage()), nextAttemptAt, giveUp);
+        } catch (Exception e) {
+            // The lease runs out and the event is claimed again
+            log.error("Failed to record the outcome of outbox event {}", event.getId(), e);
+        } finally {
+            inFlight.remove(event.getId());
+        }
+    }
+
+    /**
+     * Creates the notifications and queues the emails of the recipients not served yet; the future
+     * completes once every queued email was sent
+     */
+    private CompletableFuture<Void> deliverAppointmentStatus(OutboxEvent event, Appointment appointment, Map<String, UserSummary> users) {
+        if (appointment == null) {
+            log.warn("Appointment {} of outbox event {} no longer exists", event.getAppointmentId(), event.getId());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<Void>> emails = new ArrayList<>();
+        for (String recipientId : event.getRecipientIds()) {
+            UserSummary recipient = users.get(recipientId);
+            if (recipient == null) {
+                log.warn("Skipping {} notification for appointment {} - user {} not found",
+                        event.getStatus(), appointment.getId(), recipientId);
+                continue;
+            }
+
+            if (!contains(event.getNotifiedRecipientIds(), recipientId)) {
+                try {
+                    notificationService.createNotification(
+                            recipientId,
+                            "Appointment " + event.getStatus().toLowerCase(),
+                            "Your appointment is now " + event.getStatus().toLowerCase(),
+                            "APPOINTMENT_" + event.getStatus(),
+                            appointment.getId()
+                    );
+                    outboxRepository.markRecipientDone(event.getId(), "notifiedRecipientIds", recipientId);
+                } catch (Exception e) {
+                    // Still queue the email; the event fails once the queued emails settled
+                    emails.add(CompletableFuture.failedFuture(e));
+                }
+            }
+
+            if (!contains(event.getEmailedRecipientIds(), recipientId)) {
+                emails.add(emailDispatcher.submit(
+                        event.getStatus() + " email for appointment " + appointment.getId() + " to " + recipientId,
+                        () -> emailService.sendAppointmentStatusEmail(
+                                recipient.getEmail(),
+                                recipient.getFullName(),
+                                event.getStatus(),
+                                appointment.getSlotStartTime(),
+                                appointment.getSlotStartTime(),
+                                appointment.getSlotEndTime(),
+                                appointment.getType(),
+                                event.getReason()
+                        )
+                ).thenRun(() -> outboxRepository.markRecipientDone(event.getId(), "emailedRecipientIds", recipientId)));
+            }
+        }
+        return CompletableFuture.allOf(emails.toArray(CompletableFuture[]::new));
+    }
+
+    private static boolean contains(List<String> ids, String id) {
+        return ids != null && ids.contains(id);
+    }
+}
@@ -0,0 +1,131 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.OutboxEvent;
+import com.mediconnect.repository.AppointmentRepository;
+import com.mediconnect.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Writes an appointment change and its outbox events as one unit.
+ *
+ * With mongodb.transactions.enabled (needs a replica set) both go into a single Mongo transaction.
+ * Without it the events are stored in the appointment's pendingEvents by the same single-document
+ * write, then moved to the outbox right away. Whatever a failure or crash leaves pending is moved by
+ * sweepPendingEvents. Events get their ids before the write, so moving one twice stores it once; a
+ * stale save of the appointment can bring a moved event back, and it is then delivered again, which
+ * the relay's at-least-once delivery allows.
+ */
+@Slf4j
+@Service
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration sweepGrace;
+    private final int sweepBatchSize;
+
+    public OutboxService(OutboxRepository outboxRepository,
+                         AppointmentRepository appointmentRepository,
+                         MongoTemplate mongoTemplate,
+                         ObjectProvider<MongoTransactionManager> transactionManager,
+                         @Value("${outbox.pending-sweep.grace-ms:60000}") long sweepGraceMs,
+                         @Value("${outbox.pending-sweep.batch-size:100}") int sweepBatchSize) {
+        this.outboxRepository = outboxRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.mongoTemplate = mongoTemplate;
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        this.transactionTemplate = manager != null ? new TransactionTemplate(manager) : null;
+        this.sweepGrace = Duration.ofMillis(sweepGraceMs);
+        this.sweepBatchSize = sweepBatchSize;
+        log.info("Outbox writes {}", manager != null ? "use Mongo transactions" : "go through the appointments' pending events");
+    }
+
+    /**
+     * Inserts or saves the appointment together with its events
+     */
+    public Appointment saveWithEvents(Appointment appointment, boolean insert, List<OutboxEvent> events) {
+        Supplier<Appointment> save = () -> insert ? appointmentRepository.insert(appointment) : appointmentRepository.save(appointment);
+
+        if (transactionTemplate != null) {
+            return transactionTemplate.execute(status -> {
+                Appointment saved = save.get();
+                outboxRepository.insert(events);
+                return saved;
+            });
+        }
+
+        events.forEach(event -> event.setId(new ObjectId().toHexString()));
+        List<OutboxEvent> pending = appointment.getPendingEvents() != null
+                ? new ArrayList<>(appointment.getPendingEvents())
+                : new ArrayList<>();
+        pending.addAll(events);
+        appointment.setPendingEvents(pending);
+        Appointment saved = save.get();
+
+        try {
+            movePendingEvents(saved.getId(), pending);
+            saved.setPendingEvents(new ArrayList<>());
+        } catch (RuntimeException e) {
+            log.warn("Outbox events of appointment {} left for the pending sweep: {}", saved.getId(), e.getMessage());
+        }
+        return saved;
+    }
+
+    public Appointment saveWithEvent(Appointment appointment, boolean insert, OutboxEvent event) {
+        return saveWithEvents(appointment, insert, List.of(event));
+    }
+
+    /**
+     * Moves the events a failed or interrupted move left in their appointments to the outbox
+     */
+    @Scheduled(fixedDelayString = "${outbox.pending-sweep.interval-ms:30000}")
+    public void sweepPendingEvents() {
+        if (transactionTemplate != null) {
+            return;
+        }
+
+        try {
+            // Younger events are still being moved by the write that stored them
+            Query query = Query.query(Criteria.where("pendingEvents.createdAt").lt(LocalDateTime.now().minus(sweepGrace)))
+                    .limit(sweepBatchSize);
+            query.fields().include("pendingEvents");
+            for (Appointment appointment : mongoTemplate.find(query, Appointment.class)) {
+                movePendingEvents(appointment.getId(), appointment.getPendingEvents());
+            }
+        } catch (Exception e) {
+            log.error("Error sweeping pending outbox events", e);
+        }
+    }
+
+    private void movePendingEvents(String appointmentId, List<OutboxEvent> events) {
+        outboxRepository.insertIfAbsent(events);
+
+        // Only the moved ones: a change saved in the meantime may have added more. Embedded ids are
+        // stored as ObjectIds and not converted inside a $pull condition
+        List<ObjectId> ids = events.stream().map(event -> new ObjectId(event.getId())).toList();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(appointmentId)),
+                new Update().pull("pendingEvents", new Document("_id", new Document("$in", ids))),
+                Appointment.class);
+    }
+}
@@ -0,0 +1,209 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.PincodeLocation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loads an offline pincode dataset into the pincode_locations collection, so pincode searches do
+ * not depend on the postal and geocoding APIs.
+ *
+ * The file is a CSV with a header row, such as the India Post "all India pincode directory":
+ * columns pincode, district (or city), statename (or state), latitude and longitude are picked by
+ * name, other columns are ignored. A pincode usually has several post offices; the first row with
+ * usable coordinates wins. Rows are upserted in unordered bulk batches, so re-importing a newer
+ * file is safe.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PincodeDatasetImporter {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final LocationService locationService;
+
+    // Imported once at startup when set; leave empty to skip
+    @Value("${location.pincode.import-file:}")
+    private String importFile;
+
+    /**
+     * Imports the configured file on its own thread once the application is ready, so a large dataset
+     * does not hold up startup; until it is done, pincodes resolve as before the import
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (importFile == null || importFile.isBlank()) {
+            return;
+        }
+        Thread importer = new Thread(() -> {
+            try {
+                importFile(Path.of(importFile));
+            } catch (Exception e) {
+                log.error("Pincode dataset import from {} failed", importFile, e);
+            }
+        }, "pincode-dataset-import");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    /**
+     * Imports the file and returns the number of pincodes written
+     */
+    public int importFile(Path file) throws IOException {
+        Map<String, PincodeLocation> locations = new LinkedHashMap<>();
+        int skippedRows = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new RuntimeException("Pincode dataset is empty: " + file);
+            }
+            List<String> header = splitCsvLine(headerLine.replace("\uFEFF", ""));
+            int pincodeColumn = column(header, "pincode");
+            int cityColumn = column(header, "district", "city");
+            int stateColumn = column(header, "statename", "state");
+            int latitudeColumn = column(header, "latitude", "lat");
+            int longitudeColumn = column(header, "longitude", "lng", "lon");
+
+            LocalDateTime now = LocalDateTime.now();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> row = splitCsvLine(line);
+                if (row.size() < header.size()) {
+                    skippedRows++;
+                    continue;
+                }
+                String pincode = row.get(pincodeColumn).trim();
+                if (locations.containsKey(pincode)) {
+                    continue;
+                }
+                GeoJsonPoint point = parsePoint(row.get(latitudeColumn), row.get(longitudeColumn));
+                if (!pincode.matches("\\d{6}") || point == null) {
+                    skippedRows++;
+                    continue;
+                }
+                locations.put(pincode, new PincodeLocation(pincode, titleCase(row.get(cityColumn)),
+                        titleCase(row.get(stateColumn)), point, PincodeLocation.SOURCE_IMPORT, now));
+            }
+        }
+
+        List<PincodeLocation> batch = new ArrayList<>(BATCH_SIZE);
+        for (PincodeLocation location : locations.values()) {
+            batch.add(location);
+            if (batch.size() == BATCH_SIZE) {
+                upsert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsert(batch);
+        }
+
+        locationService.evictCachedPincodes();
+        log.info("Imported {} pincodes from {} ({} rows skipped)", locations.size(), file, skippedRows);
+        return locations.size();
+    }
+
+    private void upsert(List<PincodeLocation> batch) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PincodeLocation.class);
+        for (PincodeLocation location : batch) {
+            bulkOps.upsert(Query.query(Criteria.where("_id").is(location.getPincode())), new Update()
+                    .set("city", location.getCity())
+                    .set("state", location.getState())
+                    .set("location", location.getLocation())
+                    .set("source", location.getSource())
+                    .set("updatedAt", location.getUpdatedAt()));
+        }
+        bulkOps.execute();
+    }
+
+    private static int column(List<String> header, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        throw new RuntimeException("Pincode dataset has no column " + String.join("/", names));
+    }
+
+    private static GeoJsonPoint parsePoint(String latitudeText, String longitudeText) {
+        try {
+            double latitude = Double.parseDouble(latitudeText.trim());
+            double longitude = Double.parseDouble(longitudeText.trim());
+            if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180 || (latitude == 0 && longitude == 0)) {
+                return null;
+            }
+            return new GeoJsonPoint(longitude, latitude);
+        } catch (NumberFormatException e) {
+            // "NA" in the dataset
+            return null;
+        }
+    }
+
+    /**
+     * The dataset spells districts and states in capitals; the postal API, and the rest of the data, does not
+     */
+    private static String titleCase(String text) {
+        String trimmed = text.trim();
+        if (!trimmed.equals(trimmed.toUpperCase(Locale.ROOT))) {
+            return trimmed;
+        }
+        StringBuilder result = new StringBuilder(trimmed.length());
+        boolean startOfWord = true;
+        for (char c : trimmed.toLowerCase(Locale.ROOT).toCharArray()) {
+            result.append(startOfWord ? Character.toUpperCase(c) : c);
+            startOfWord = !Character.isLetter(c);
+        }
+        return result.toString();
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
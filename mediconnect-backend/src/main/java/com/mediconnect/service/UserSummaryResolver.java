@@ -0,0 +1,93 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Resolves user display fields for list responses.
+ *
+ * Hits are served from a bounded LRU cache; all misses of one call are loaded together with a
+ * single projection query. Entries are dropped whenever the user is saved (see UserSummaryCacheListener).
+ */
+@Slf4j
+@Service
+public class UserSummaryResolver {
+
+    private final UserRepository userRepository;
+    private final Map<String, UserSummary> cache;
+
+    // Bumped on every invalidation so a load racing with a save does not cache the old values
+    private long invalidations;
+
+    public UserSummaryResolver(UserRepository userRepository,
+                               @Value("${user-summary.cache.max-size:10000}") int maxSize) {
+        this.userRepository = userRepository;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserSummary> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Summaries of the given users keyed by id; unknown ids are absent from the result
+     */
+    public Map<String, UserSummary> resolve(Collection<String> userIds) {
+        Map<String, UserSummary> result = new HashMap<>();
+        Set<String> misses = new HashSet<>();
+        long generation;
+
+        synchronized (cache) {
+            generation = invalidations;
+            for (String userId : userIds) {
+                UserSummary summary = cache.get(userId);
+                if (summary != null) {
+                    result.put(userId, summary);
+                } else if (userId != null) {
+                    misses.add(userId);
+                }
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        List<UserSummary> loaded = userRepository.findSummariesByIdIn(misses);
+        log.debug("Loaded {} of {} missing user summaries", loaded.size(), misses.size());
+
+        synchronized (cache) {
+            for (UserSummary summary : loaded) {
+                result.put(summary.getId(), summary);
+                if (generation == invalidations) {
+                    cache.put(summary.getId(), summary);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Optional<UserSummary> resolve(String userId) {
+        return Optional.ofNullable(resolve(List.of(userId)).get(userId));
+    }
+
+    public void invalidate(String userId) {
+        synchronized (cache) {
+            invalidations++;
+            cache.remove(userId);
+        }
+    }
+}
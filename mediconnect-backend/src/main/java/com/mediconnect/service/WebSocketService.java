@@ -1,8 +1,8 @@
 package com.mediconnect.service;
 
 import com.mediconnect.dto.websocket.WebSocketNotification;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -10,10 +10,14 @@ import org.springframework.stereotype.Service;
 public class WebSocketService {
 
     @Autowired
-    @Lazy
-    private SimpMessagingTemplate messagingTemplate;
+    private ObjectProvider<SimpMessagingTemplate> messagingTemplateProvider;
 
     public void sendNotificationToUser(String userId, WebSocketNotification notification) {
+        // No STOMP broker is configured yet - the stored notification is still picked up by polling
+        SimpMessagingTemplate messagingTemplate = messagingTemplateProvider.getIfAvailable();
+        if (messagingTemplate == null) {
+            return;
+        }
         messagingTemplate.convertAndSendToUser(
             userId,
             "/queue/notifications",
@@ -22,6 +26,10 @@ public class WebSocketService {
     }
 
     public void sendNotificationToTopic(String topic, WebSocketNotification notification) {
+        SimpMessagingTemplate messagingTemplate = messagingTemplateProvider.getIfAvailable();
+        if (messagingTemplate == null) {
+            return;
+        }
         messagingTemplate.convertAndSend("/topic/" + topic, notification);
     }
 
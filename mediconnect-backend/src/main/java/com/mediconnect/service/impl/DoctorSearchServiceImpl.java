@@ -1,27 +1,35 @@
 package com.mediconnect.service.impl;
 
 import com.mediconnect.dto.doctor.DoctorSearchResponse;
+import com.mediconnect.dto.doctor.DoctorSuggestionResponse;
+import com.mediconnect.dto.user.UserSummary;
 import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
 import com.mediconnect.model.DoctorProfile;
-import com.mediconnect.model.User;
 import com.mediconnect.repository.CalendarRepository;
 import com.mediconnect.repository.DoctorSearchRepository;
-import com.mediconnect.repository.UserRepository;
+import com.mediconnect.service.DoctorGeoIndex;
+import com.mediconnect.service.DoctorNameIndex;
 import com.mediconnect.service.DoctorSearchService;
+import com.mediconnect.service.DoctorSuggestionIndex;
 import com.mediconnect.service.LocationService;
+import com.mediconnect.service.UserSummaryResolver;
 import io.micrometer.common.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,15 +39,22 @@ public class DoctorSearchServiceImpl implements DoctorSearchService {
     private DoctorSearchRepository doctorSearchRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserSummaryResolver userSummaryResolver;
 
     @Autowired
     private LocationService locationService;
+
     @Autowired
-    private CalendarRepository calendarRepository;
+    private DoctorGeoIndex doctorGeoIndex;
+
+    @Autowired
+    private DoctorNameIndex doctorNameIndex;
 
     @Autowired
-    private MongoTemplate mongoTemplate;
+    private DoctorSuggestionIndex doctorSuggestionIndex;
+
+    @Autowired
+    private CalendarRepository calendarRepository;
 
     @Override
     public Page<DoctorSearchResponse> searchDoctors(
@@ -54,6 +69,15 @@ public class DoctorSearchServiceImpl implements DoctorSearchService {
             Double radius,
             Pageable pageable) {
         
+        // If a name is provided, rank doctors by name and specialization match within the location
+        if (StringUtils.isNotBlank(name)) {
+            Optional<Page<DoctorProfile>> matches = doctorNameIndex.search(name, specialization, minExperience,
+                    locationFilter(city, state, pincode, latitude, longitude, radius), pageable);
+            if (matches.isPresent()) {
+                return convertToSearchResponse(matches.get());
+            }
+        }
+        
         // If coordinates are provided, search by location
         if (latitude != null && longitude != null) {
             // Convert radius from km to meters for MongoDB query
@@ -100,25 +124,73 @@ public class DoctorSearchServiceImpl implements DoctorSearchService {
         return convertToSearchResponse(new PageImpl<>(new ArrayList<>()));
     }
 
+    @Override
+    public List<DoctorSuggestionResponse> suggest(String text, int limit) {
+        return doctorSuggestionIndex.suggest(text, limit);
+    }
+
+    /**
+     * The location the search is narrowed to without a name, in the same order: the coordinates, then
+     * the pincode's, then city and state; accepts every doctor when none is given
+     */
+    private Predicate<DoctorProfile> locationFilter(String city, String state, String pincode,
+                                                    Double latitude, Double longitude, Double radius) {
+        if (latitude != null && longitude != null) {
+            return DoctorGeoIndex.within(longitude, latitude, radius * 1000);
+        }
+
+        if (StringUtils.isNotBlank(pincode)) {
+            try {
+                var address = locationService.getLocationDetailsFromPincode(pincode);
+                if (address.getLocation() != null) {
+                    return DoctorGeoIndex.within(address.getLocation().getX(), address.getLocation().getY(),
+                            (radius != null ? radius : 10.0) * 1000);
+                }
+            } catch (Exception e) {
+                // If geocoding fails, fall back to city and state
+            }
+        }
+
+        if (StringUtils.isNotBlank(city) && StringUtils.isNotBlank(state)) {
+            return doctor -> city.equals(doctor.getCity()) && state.equals(doctor.getState());
+        }
+        return doctor -> true;
+    }
+
     private Page<DoctorSearchResponse> getDoctorSearchResponses(String specialization, Integer minExperience, Double latitude, Double longitude, Pageable pageable, Double maxDistanceInMeters) {
+        // Served from memory once the geo index is loaded
+        Optional<Page<DoctorProfile>> indexed = doctorGeoIndex.findNear(
+                specialization, minExperience, longitude, latitude, maxDistanceInMeters, pageable);
+        if (indexed.isPresent()) {
+            return convertToSearchResponse(indexed.get());
+        }
+
         Page<DoctorProfile> doctors;
         if (StringUtils.isNotBlank(specialization)) {
             doctors = doctorSearchRepository.findBySpecializationNearLocation(
                     specialization, minExperience, longitude, latitude, maxDistanceInMeters, pageable);
         } else {
             doctors = doctorSearchRepository.findByLocationNear(
-                    longitude, latitude, maxDistanceInMeters, pageable);
+                    minExperience, longitude, latitude, maxDistanceInMeters, pageable);
         }
         return convertToSearchResponse(doctors);
     }
 
     private Page<DoctorSearchResponse> convertToSearchResponse(Page<DoctorProfile> doctors) {
+        Set<String> doctorIds = doctors.getContent().stream()
+            .map(DoctorProfile::getUserId)
+            .collect(Collectors.toSet());
+
+        // One $in query each for the users and today's calendars, whatever the page size
+        Map<String, UserSummary> users = userSummaryResolver.resolve(doctorIds);
+        Map<String, Integer> todaySlots = calculateTodaySlots(doctorIds);
+
         List<DoctorSearchResponse> responses = doctors.getContent().stream()
             .map(doctor -> {
-                User user = userRepository.findById(doctor.getUserId())
+                UserSummary user = Optional.ofNullable(users.get(doctor.getUserId()))
                     .orElseThrow(() -> new RuntimeException("User not found"));
                 return DoctorSearchResponse.fromDoctorProfile(user,
-                    doctor, calculateTodaySlots(doctor.getUserId())
+                    doctor, todaySlots.getOrDefault(doctor.getUserId(), 0)
                 );
             })
             .collect(Collectors.toList());
@@ -126,19 +198,32 @@ public class DoctorSearchServiceImpl implements DoctorSearchService {
         return new PageImpl<>(responses, doctors.getPageable(), doctors.getTotalElements());
     }
 
-    private int calculateTodaySlots(String doctorId) {
-        LocalDate today = LocalDate.now();
-        Optional<Calendar> calendarOpt = calendarRepository.findByDoctorIdAndDate(doctorId, today);
-
-        if (calendarOpt.isEmpty()) {
-            return 0;
+    /**
+     * Available slots left today per doctor; doctors without a calendar today are absent
+     */
+    private Map<String, Integer> calculateTodaySlots(Set<String> doctorIds) {
+        Map<String, Integer> todaySlots = new HashMap<>();
+        if (doctorIds.isEmpty()) {
+            return todaySlots;
         }
 
+        LocalDate today = LocalDate.now();
         LocalDateTime now = LocalDateTime.now();
+        int nowMinute = CompactDaySlots.minuteOfDay(today, now);
 
-        Calendar calendar = calendarOpt.get();
-        return (int) calendar.getSlots().stream()
-                .filter(slot  -> slot.isAvailable() && slot.getStartTime().isAfter(now))
-                .count();
+        List<String> legacyCalendarIds = new ArrayList<>();
+        for (Calendar calendar : calendarRepository.findCompactByDoctorIdInAndDate(doctorIds, today)) {
+            if (calendar.getCompact() != null) {
+                todaySlots.put(calendar.getDoctorId(), calendar.getCompact().countAvailableAfter(nowMinute));
+            } else {
+                legacyCalendarIds.add(calendar.getId());
+            }
+        }
+
+        // Calendars saved before the compact encoding existed are counted by the database
+        if (!legacyCalendarIds.isEmpty()) {
+            todaySlots.putAll(calendarRepository.countAvailableSlotsAfter(legacyCalendarIds, now));
+        }
+        return todaySlots;
     }
-} 
\ No newline at end of file
+}
@@ -11,7 +11,9 @@ import com.mediconnect.model.Appointment;
 import com.mediconnect.enums.AppointmentStatus;
 import com.mediconnect.repository.CalendarRepository;
 import com.mediconnect.repository.AppointmentRepository;
+import com.mediconnect.repository.MonthlyAvailabilityRepository;
 import com.mediconnect.service.ScheduleService;
+import com.mediconnect.util.SlotIntervalIndex;
 import com.mediconnect.util.SlotMergeUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -32,7 +34,11 @@ public class ScheduleServiceImpl implements ScheduleService {
     @Autowired
     private AppointmentRepository appointmentRepository;
 
+    @Autowired
+    private MonthlyAvailabilityRepository monthlyAvailabilityRepository;
+
     private static final int MIN_SLOT_DURATION = 15; // Minimum slot duration in minutes
+    private static final int MERGE_ATTEMPTS = 3; // Merge-and-write rounds before giving up on a busy schedule
 
     @Override
     public List<Calendar> getDailySchedule(String doctorId, List<LocalDate> dates) {
@@ -136,7 +142,7 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
 
         // Check for overlaps with existing slots
-        SlotValidationResponse validation = validateSlotExtension(doctorId, calendar.getDate(),
+        SlotValidationResponse validation = validateSlotExtension(calendar,
                 newStartTime, newEndTime, request.getSlotId());
 
         if (validation.isValid() || request.isForceExtension()) {
@@ -150,6 +156,7 @@ public class ScheduleServiceImpl implements ScheduleService {
             targetSlot.setEndTime(newEndTime);
 
             calendarRepository.save(calendar);
+            syncAppointmentSlot(calendar.getId(), targetSlot);
             validation.setValid(true);
             validation.setMessage("Slot extended successfully");
         }
@@ -188,7 +195,9 @@ public class ScheduleServiceImpl implements ScheduleService {
         targetSlot.setStartTime(newStartTime);
         targetSlot.setEndTime(newEndTime);
 
-        return calendarRepository.save(calendar);
+        Calendar saved = calendarRepository.save(calendar);
+        syncAppointmentSlot(calendar.getId(), targetSlot);
+        return saved;
     }
 
     private void validateSlotRequest(ScheduleSlotRequest request) {
@@ -296,36 +305,28 @@ public class ScheduleServiceImpl implements ScheduleService {
         return slots;
     }
 
-    private SlotValidationResponse validateSlotExtension(String doctorId, LocalDate date,
+    private SlotValidationResponse validateSlotExtension(Calendar calendar,
                                                          LocalDateTime newStartTime, LocalDateTime newEndTime,
                                                          String currentSlotId) {
         SlotValidationResponse response = new SlotValidationResponse();
         response.setValid(true);
 
-        Calendar existingCalendar = calendarRepository.findByDoctorIdAndDate(
-                doctorId, date).orElse(null);
-
         List<Calendar.Slot> conflictingAvailableSlots = new ArrayList<>();
         List<Calendar.Slot> conflictingBookedSlots = new ArrayList<>();
 
-
-        assert existingCalendar != null;
-        for (Calendar.Slot slot : existingCalendar.getSlots()) {
+        for (Calendar.Slot slot : SlotIntervalIndex.of(calendar).findOverlapping(newStartTime, newEndTime)) {
             // Skip the current slot being extended
             if (slot.getId().equals(currentSlotId)) {
                 continue;
             }
 
-            if (isOverlapping(newStartTime, newEndTime, slot.getStartTime(), slot.getEndTime())) {
-                if (slot.isAvailable()) {
-                    conflictingAvailableSlots.add(slot);
-                } else {
-                    conflictingBookedSlots.add(slot);
-                }
+            if (slot.isAvailable()) {
+                conflictingAvailableSlots.add(slot);
+            } else {
+                conflictingBookedSlots.add(slot);
             }
         }
 
-
         response.setConflictingAvailableSlots(conflictingAvailableSlots);
         response.setConflictingBookedSlots(conflictingBookedSlots);
 
@@ -356,39 +357,66 @@ public class ScheduleServiceImpl implements ScheduleService {
         calendar.getSlots().removeIf(slot -> conflictingSlotIds.contains(slot.getId()));
     }
 
-    private boolean isOverlapping(LocalDateTime newSlotStart, LocalDateTime newSlotEnd,
-                                  LocalDateTime existingSlotStart, LocalDateTime existingSlotEnd) {
-        return newSlotStart.isBefore(existingSlotEnd) && newSlotEnd.isAfter(existingSlotStart);
-    }
-
     private List<Calendar> saveAndMergeSlots(String doctorId, List<Calendar> newCalendars, int gapDurationMinutes) {
+        if (newCalendars.isEmpty()) {
+            return new ArrayList<>();
+        }
+
         List<Calendar> savedCalendars = new ArrayList<>();
+        List<Calendar> pending = newCalendars;
+        for (int attempt = 0; attempt < MERGE_ATTEMPTS; attempt++) {
+            List<Calendar> mergedCalendars = mergeWithExisting(doctorId, pending, gapDurationMinutes);
+
+            // Write all of them back in a single bulk request; days booked or edited since the
+            // read come back and are merged again from a fresh read
+            Set<LocalDate> changedDates = calendarRepository.bulkUpsertSlots(mergedCalendars).stream()
+                    .map(Calendar::getDate)
+                    .collect(Collectors.toSet());
+            mergedCalendars.stream()
+                    .filter(calendar -> !changedDates.contains(calendar.getDate()))
+                    .forEach(savedCalendars::add);
+            if (changedDates.isEmpty()) {
+                savedCalendars.sort(Comparator.comparing(Calendar::getDate));
+                return savedCalendars;
+            }
 
-        for (Calendar newCalendar : newCalendars) {
-            LocalDate date = newCalendar.getDate();
+            pending = newCalendars.stream()
+                    .filter(calendar -> changedDates.contains(calendar.getDate()))
+                    .collect(Collectors.toList());
+        }
 
-            Optional<Calendar> existingCalendarOpt = calendarRepository.findByDoctorIdAndDate(
-                        doctorId, date);
-            Calendar updatedCalendar;
-            if (existingCalendarOpt.isEmpty()) {
-                updatedCalendar = calendarRepository.save(newCalendar);
-            } else {
-                Calendar calendar = existingCalendarOpt.get();
+        throw new SlotException(SlotException.ErrorCodes.CONCURRENT_UPDATE,
+                "The schedule changed while slots were being added. Please try again.");
+    }
 
-                if(null == calendar.getSlots() || calendar.getSlots().isEmpty()) {
-                    calendar.setSlots(newCalendar.getSlots());
-                    calendarRepository.save(calendar);
-                }
+    private List<Calendar> mergeWithExisting(String doctorId, List<Calendar> newCalendars, int gapDurationMinutes) {
+        // One range read covering every generated date (createSlots emits them in date order)
+        LocalDate firstDate = newCalendars.get(0).getDate();
+        LocalDate lastDate = newCalendars.get(newCalendars.size() - 1).getDate();
+
+        Map<LocalDate, Calendar> existingCalendars = calendarRepository
+                .findByDoctorIdAndDateBetween(doctorId, firstDate, lastDate)
+                .stream()
+                .collect(Collectors.toMap(Calendar::getDate, calendar -> calendar, (first, second) -> first));
+
+        // Merge every day in memory
+        List<Calendar> mergedCalendars = new ArrayList<>();
+        for (Calendar newCalendar : newCalendars) {
+            Calendar calendar = existingCalendars.get(newCalendar.getDate());
 
-                List<Calendar.Slot> mergedSlots = SlotMergeUtil.merge(calendar.getSlots(), newCalendar.getSlots(),  gapDurationMinutes);
-                calendar.setSlots(mergedSlots);
-                updatedCalendar = calendarRepository.save(calendar);
+            if (calendar == null) {
+                mergedCalendars.add(newCalendar);
+                continue;
             }
 
-            savedCalendars.add(updatedCalendar);
+            if (null == calendar.getSlots() || calendar.getSlots().isEmpty()) {
+                calendar.setSlots(newCalendar.getSlots());
+            } else {
+                calendar.setSlots(SlotMergeUtil.merge(calendar.getSlots(), newCalendar.getSlots(), gapDurationMinutes));
+            }
+            mergedCalendars.add(calendar);
         }
-
-        return savedCalendars;
+        return mergedCalendars;
     }
 
     @Override
@@ -426,6 +454,7 @@ public class ScheduleServiceImpl implements ScheduleService {
             // If no slots left, delete the calendar
             if (calendar.getSlots().isEmpty()) {
                 calendarRepository.delete(calendar);
+                monthlyAvailabilityRepository.removeDay(calendar);
             } else {
                 calendarRepository.save(calendar);
             }
@@ -465,17 +494,17 @@ public class ScheduleServiceImpl implements ScheduleService {
 
         // For each calendar, delete slots that fall within the time range
         for (Calendar calendar : calendars) {
-            calendar.getSlots().removeIf(slot -> {
-                LocalTime slotStartTime = slot.getStartTime().toLocalTime();
-                LocalTime slotEndTime = slot.getEndTime().toLocalTime();
-                
-                // Check if slot overlaps with the requested time range
-                boolean overlaps = !(slotEndTime.isBefore(request.getStartTime()) || 
-                                  slotStartTime.isAfter(request.getEndTime()));
-                
-                // Only delete if slot is available (not booked)
-                return overlaps && slot.isAvailable();
-            });
+            // Only delete slots that are available (not booked)
+            Set<Calendar.Slot> slotsToDelete = SlotIntervalIndex.of(calendar)
+                    .findIntersecting(calendar.getDate().atTime(request.getStartTime()),
+                            calendar.getDate().atTime(request.getEndTime()))
+                    .stream()
+                    .filter(Calendar.Slot::isAvailable)
+                    .collect(Collectors.toCollection(() -> Collections.newSetFromMap(new IdentityHashMap<>())));
+
+            if (!slotsToDelete.isEmpty()) {
+                calendar.getSlots().removeIf(slotsToDelete::contains);
+            }
         }
 
         // Save the updated calendars
@@ -534,5 +563,25 @@ public class ScheduleServiceImpl implements ScheduleService {
             calendarRepository.save(oldCalendar);
             calendarRepository.save(newCalendar);
         }
+
+        syncAppointmentSlot(newCalendar.getId(), newSlot);
+    }
+
+    /**
+     * Copies the calendar, slot id and times of a booked slot onto its appointment
+     */
+    private void syncAppointmentSlot(String calendarId, Calendar.Slot slot) {
+        if (slot.getAppointmentId() == null) {
+            return;
+        }
+
+        appointmentRepository.findById(slot.getAppointmentId()).ifPresent(appointment -> {
+            appointment.setCalendarId(calendarId);
+            appointment.setSlotId(slot.getId());
+            appointment.setSlotStartTime(slot.getStartTime());
+            appointment.setSlotEndTime(slot.getEndTime());
+            appointment.setUpdatedAt(System.currentTimeMillis());
+            appointmentRepository.save(appointment);
+        });
     }
 }
\ No newline at end of file
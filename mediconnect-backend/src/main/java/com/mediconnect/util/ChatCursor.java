@@ -0,0 +1,51 @@
+package com.mediconnect.util;
+
+import com.mediconnect.model.ChatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in a room's history: the (timestamp, id) of a message, encoded as an opaque string
+ */
+public final class ChatCursor {
+
+    private final LocalDateTime timestamp;
+    private final String messageId;
+
+    private ChatCursor(LocalDateTime timestamp, String messageId) {
+        this.timestamp = timestamp;
+        this.messageId = messageId;
+    }
+
+    public static String encode(ChatMessage message) {
+        String raw = message.getTimestamp() + "|" + message.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor produced by encode; null or blank input yields null
+     */
+    public static ChatCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new ChatCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid chat cursor: " + cursor, e);
+        }
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+}
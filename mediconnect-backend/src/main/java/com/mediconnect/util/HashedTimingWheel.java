@@ -0,0 +1,95 @@
+package com.mediconnect.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel over string keys, driven by a single thread.
+ *
+ * Each key hashes to one of wheelSize buckets and one bucket is swept per tick, so every key is
+ * visited once per rotation and each tick only touches its share of the keys. Keys marked dirty
+ * are additionally visited on the next tick; any number of marks between two ticks collapse into
+ * one visit.
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    private final List<Set<String>> buckets;
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final long tickMillis;
+    private final Consumer<String> visitor;
+    private final ScheduledExecutorService ticker;
+    private int cursor;
+
+    public HashedTimingWheel(String name, int wheelSize, long tickMillis, Consumer<String> visitor) {
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+        this.tickMillis = tickMillis;
+        this.visitor = visitor;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Registers a key for periodic visits; adding a registered key is a no-op
+     */
+    public void add(String key) {
+        bucketFor(key).add(key);
+    }
+
+    public void remove(String key) {
+        bucketFor(key).remove(key);
+    }
+
+    /**
+     * Schedules a visit of the key on the next tick
+     */
+    public void markDirty(String key) {
+        dirty.add(key);
+    }
+
+    private void tick() {
+        Set<String> due = new LinkedHashSet<>();
+        for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+            due.add(it.next());
+            it.remove();
+        }
+        due.addAll(buckets.get(cursor));
+        cursor = (cursor + 1) % buckets.size();
+
+        for (String key : due) {
+            try {
+                visitor.accept(key);
+            } catch (RuntimeException e) {
+                log.error("Error visiting timing wheel key: {}", key, e);
+            }
+        }
+    }
+
+    private Set<String> bucketFor(String key) {
+        return buckets.get(Math.floorMod(key.hashCode(), buckets.size()));
+    }
+}
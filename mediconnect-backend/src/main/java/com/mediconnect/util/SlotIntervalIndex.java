@@ -0,0 +1,137 @@
+package com.mediconnect.util;
+
+import com.mediconnect.model.Calendar;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only interval index over the slots of one calendar day.
+ *
+ * Slots are kept as second offsets from the start of the day in arrays sorted by start time,
+ * together with a running maximum of the end offsets. An overlap query binary searches the
+ * last slot starting before the query end and walks backwards only while some earlier slot
+ * can still reach the query start, so it costs O(log n + k) for the usual non-overlapping day.
+ *
+ * The index is a snapshot - rebuild it after changing the slot list.
+ */
+public class SlotIntervalIndex {
+
+    private final LocalDateTime dayStart;
+    private final Calendar.Slot[] slots;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnds;
+
+    private SlotIntervalIndex(LocalDate date, Collection<Calendar.Slot> source) {
+        this.dayStart = date.atStartOfDay();
+
+        List<Calendar.Slot> sorted = new ArrayList<>(source);
+        sorted.sort(Comparator.comparing(Calendar.Slot::getStartTime));
+
+        int size = sorted.size();
+        this.slots = sorted.toArray(new Calendar.Slot[0]);
+        this.starts = new int[size];
+        this.ends = new int[size];
+        this.maxEnds = new int[size];
+
+        int maxEnd = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            starts[i] = offset(slots[i].getStartTime());
+            ends[i] = offset(slots[i].getEndTime());
+            maxEnd = Math.max(maxEnd, ends[i]);
+            maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * Builds an index over all slots of a calendar
+     */
+    public static SlotIntervalIndex of(Calendar calendar) {
+        return of(calendar.getDate(), calendar.getSlots() != null ? calendar.getSlots() : Collections.emptyList());
+    }
+
+    /**
+     * Builds an index over the given slots, using the date as the origin for offsets
+     */
+    public static SlotIntervalIndex of(LocalDate date, Collection<Calendar.Slot> slots) {
+        return new SlotIntervalIndex(date, slots);
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * Slots strictly overlapping [start, end) - touching slots are not returned
+     */
+    public List<Calendar.Slot> findOverlapping(LocalDateTime start, LocalDateTime end) {
+        return collect(offset(start), offset(end), false);
+    }
+
+    /**
+     * Slots intersecting the closed range [start, end] - slots touching either bound are returned too
+     */
+    public List<Calendar.Slot> findIntersecting(LocalDateTime start, LocalDateTime end) {
+        return collect(offset(start), offset(end), true);
+    }
+
+    /**
+     * Whether any slot comes closer than gapMinutes to [start, end), overlaps included
+     */
+    public boolean hasConflict(LocalDateTime start, LocalDateTime end, int gapMinutes) {
+        int from = offset(start) - gapMinutes * 60;
+        int to = offset(end) + gapMinutes * 60;
+
+        for (int i = lastStartingBefore(to, false); i >= 0 && maxEnds[i] > from; i--) {
+            if (ends[i] > from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Calendar.Slot> collect(int from, int to, boolean closed) {
+        List<Calendar.Slot> result = new ArrayList<>();
+
+        for (int i = lastStartingBefore(to, closed); i >= 0; i--) {
+            // No earlier slot ends late enough to reach the range
+            if (closed ? maxEnds[i] < from : maxEnds[i] <= from) {
+                break;
+            }
+            if (closed ? ends[i] >= from : ends[i] > from) {
+                result.add(slots[i]);
+            }
+        }
+
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Index of the last slot whose start is before (or, if closed, at) the given offset; -1 if none
+     */
+    private int lastStartingBefore(int offset, boolean closed) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (closed ? starts[mid] <= offset : starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private int offset(LocalDateTime time) {
+        return (int) ChronoUnit.SECONDS.between(dayStart, time);
+    }
+}
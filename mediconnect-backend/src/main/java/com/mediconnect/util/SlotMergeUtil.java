@@ -7,12 +7,15 @@ import java.util.*;
 public class SlotMergeUtil {
 
     /**
-     * Simple merge of two sorted lists
+     * Merge new slots into the existing slots of a day
      * Rules:
      * 1. Skip new slot if it overlaps with existing slot
      * 2. Skip new slot if gap is insufficient with existing slot
      *
-     * @param existingSlots Already sorted list of existing slots
+     * Existing slots are looked up through a {@link SlotIntervalIndex}, so each new slot
+     * costs O(log n) instead of a scan over the day.
+     *
+     * @param existingSlots Existing slots of the day
      * @param newSlots Already sorted list of new slots to add
      * @param gapMinutes Required gap between slots
      * @return Merged sorted list
@@ -21,101 +24,33 @@ public class SlotMergeUtil {
                                             List<Calendar.Slot> newSlots,
                                             int gapMinutes) {
 
-        List<Calendar.Slot> result = new ArrayList<>();
-        int i = 0, j = 0;
-
-        while (i < existingSlots.size() && j < newSlots.size()) {
-            Calendar.Slot existing = existingSlots.get(i);
-            Calendar.Slot newSlot = newSlots.get(j);
-
-            if (existing.getStartTime().isBefore(newSlot.getStartTime())) {
-                // Add existing slot first
-                result.add(existing);
-                i++;
-            } else {
-                // Check overlap with current existing slot
-                if (isOverlapping(newSlot, existing)) {
-                    // Skip new slot due to overlap
-                    j++;
-                    continue;
-                }
-
-                // Check overlap with previous existing slot (if exists)
-                Calendar.Slot previousExisting = (i > 0) ? existingSlots.get(i - 1) : null;
-                if (previousExisting != null && isOverlapping(newSlot, previousExisting)) {
-                    // Skip new slot due to overlap with previous existing
-                    j++;
-                    continue;
-                }
-
-                // Check if new slot can be added (only gap checking now)
-                if (canAddSlot(newSlot, result, existing, previousExisting, gapMinutes)) {
-                    result.add(newSlot);
-                }
-                j++;
-            }
+        List<Calendar.Slot> result = new ArrayList<>(existingSlots);
+        if (newSlots.isEmpty()) {
+            return result;
         }
 
-        // Add remaining existing slots
-        while (i < existingSlots.size()) {
-            result.add(existingSlots.get(i));
-            i++;
-        }
+        SlotIntervalIndex existingIndex = SlotIntervalIndex.of(
+                newSlots.get(0).getStartTime().toLocalDate(), existingSlots);
+        Calendar.Slot lastAdded = null;
 
-        // Add remaining new slots (if valid)
-        while (j < newSlots.size()) {
-            Calendar.Slot newSlot = newSlots.get(j);
-            // Check overlap with last slot in result
-            if (!result.isEmpty() && isOverlapping(newSlot, result.get(result.size() - 1))) {
-                j++;
+        for (Calendar.Slot newSlot : newSlots) {
+            // Overlap or insufficient gap with any existing slot
+            if (existingIndex.hasConflict(newSlot.getStartTime(), newSlot.getEndTime(), gapMinutes)) {
                 continue;
             }
 
-            if (canAddSlot(newSlot, result, null, null, gapMinutes)) {
-                result.add(newSlot);
-            }
-            j++;
-        }
-
-        return result;
-    }
-
-    /**
-     * Check if new slot can be added without violating gap rules
-     * (Overlap checking is done in merge method)
-     * @param newSlot The new slot to check
-     * @param addedSlots Already added slots in result
-     * @param currentExisting Current existing slot being compared (can be null)
-     * @param previousExisting Previous existing slot (existing[i-1]) (can be null)
-     * @param gapMinutes Required gap
-     */
-    private static boolean canAddSlot(Calendar.Slot newSlot, List<Calendar.Slot> addedSlots,
-                                      Calendar.Slot currentExisting, Calendar.Slot previousExisting,
-                                      int gapMinutes) {
-
-        // Check gap with current existing slot (if provided)
-        if (currentExisting != null) {
-            if (hasInsufficientGap(newSlot, currentExisting, gapMinutes)) {
-                return false;
-            }
-        }
-
-        // Check gap with previous existing slot (existing[i-1])
-        if (previousExisting != null) {
-            if (hasInsufficientGap(newSlot, previousExisting, gapMinutes)) {
-                return false;
+            // Overlap or insufficient gap with the previously accepted new slot
+            if (lastAdded != null
+                    && (isOverlapping(newSlot, lastAdded) || hasInsufficientGap(newSlot, lastAdded, gapMinutes))) {
+                continue;
             }
-        }
 
-        // Check gap with last added slot in result
-        if (!addedSlots.isEmpty()) {
-            Calendar.Slot lastAddedSlot = addedSlots.get(addedSlots.size() - 1);
-            if (hasInsufficientGap(newSlot, lastAddedSlot, gapMinutes)) {
-                return false;
-            }
+            result.add(newSlot);
+            lastAdded = newSlot;
         }
 
-        return true;
+        result.sort(Comparator.comparing(Calendar.Slot::getStartTime));
+        return result;
     }
 
     /**
@@ -0,0 +1,26 @@
+package com.mediconnect.controller;
+
+import com.mediconnect.handler.ChatWebSocketHandler;
+import com.mediconnect.service.ChatService;
+import com.mediconnect.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ChatControllerTest {
+
+    private final ChatService chatService = mock(ChatService.class);
+    private final UserService userService = mock(UserService.class);
+    private final ChatController controller = new ChatController(chatService, userService, mock(ChatWebSocketHandler.class));
+
+    @Test
+    void rejectsHistoryPagedInBothDirections() {
+        var response = controller.getChatHistory("appt-1", "older-cursor", "newer-cursor", 50);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(userService, chatService);
+    }
+}
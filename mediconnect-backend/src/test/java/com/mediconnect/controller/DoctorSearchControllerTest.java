@@ -0,0 +1,26 @@
+package com.mediconnect.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DoctorSearchControllerTest {
+
+    @Test
+    void exposesNoWritesSinceSearchIsAnonymous() {
+        // JwtAuthenticationFilter skips /api/doctors/search, so nothing here may change state
+        assertThat(Arrays.stream(DoctorSearchController.class.getDeclaredMethods()).filter(this::writes)).isEmpty();
+    }
+
+    private boolean writes(Method method) {
+        return method.isAnnotationPresent(PostMapping.class) || method.isAnnotationPresent(PutMapping.class)
+                || method.isAnnotationPresent(PatchMapping.class) || method.isAnnotationPresent(DeleteMapping.class);
+    }
+}
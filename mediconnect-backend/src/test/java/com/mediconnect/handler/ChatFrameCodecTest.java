@@ -0,0 +1,58 @@
+package com.mediconnect.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatFrameCodecTest {
+
+    private final ChatFrameCodec codec = new ChatFrameCodec(new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void everyCborSessionGetsItsOwnBufferOverTheSameBytes() throws Exception {
+        ChatFrameCodec.EncodedFrame frame = codec.encode(Map.of("type", "message", "content", "hello"));
+        WebSocketSession first = session(ChatFrameCodec.CBOR_SUBPROTOCOL);
+        WebSocketSession second = session(ChatFrameCodec.CBOR_SUBPROTOCOL);
+
+        BinaryMessage toFirst = (BinaryMessage) frame.messageFor(first);
+        BinaryMessage toSecond = (BinaryMessage) frame.messageFor(second);
+        int length = toFirst.getPayloadLength();
+
+        // Sending drains the buffer; the other session's message must not notice
+        ByteBuffer sent = toFirst.getPayload();
+        sent.get(new byte[sent.remaining()]);
+
+        assertThat(toSecond).isNotSameAs(toFirst);
+        assertThat(toSecond.getPayloadLength()).isEqualTo(length).isPositive();
+        Map<String, Object> decoded = codec.fromCbor(toSecond.getPayload(), Map.class);
+        assertThat(decoded).containsEntry("type", "message").containsEntry("content", "hello");
+    }
+
+    @Test
+    void jsonSessionsShareOneTextMessage() throws Exception {
+        ChatFrameCodec.EncodedFrame frame = codec.encode(Map.of("type", "message"));
+
+        TextMessage toFirst = (TextMessage) frame.messageFor(session(null));
+        TextMessage toSecond = (TextMessage) frame.messageFor(session(ChatFrameCodec.JSON_SUBPROTOCOL));
+
+        assertThat(toSecond).isSameAs(toFirst);
+        assertThat(toFirst.getPayload()).isEqualTo("{\"type\":\"message\"}");
+    }
+
+    private static WebSocketSession session(String subprotocol) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAcceptedProtocol()).thenReturn(subprotocol);
+        return session;
+    }
+}
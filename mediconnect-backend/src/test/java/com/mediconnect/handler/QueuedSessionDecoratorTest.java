@@ -0,0 +1,133 @@
+package com.mediconnect.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueuedSessionDecoratorTest {
+
+    private ExecutorService executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writesEachSessionInOrderOneMessageAtATime() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger writing = new AtomicInteger();
+        AtomicInteger maxWriting = new AtomicInteger();
+        WebSocketSession delegate = session(message -> {
+            maxWriting.accumulateAndGet(writing.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            written.add(((TextMessage) message).getPayload());
+            writing.decrementAndGet();
+        });
+        QueuedSessionDecorator session = new QueuedSessionDecorator(delegate, executor, 5000, 1 << 20);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add("message-" + i);
+            session.sendMessage(new TextMessage("message-" + i));
+        }
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> written.size() == 100);
+        synchronized (written) {
+            assertThat(written).containsExactlyElementsOf(expected);
+        }
+        assertThat(maxWriting.get()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesTheBufferedLengthOfBinaryMessagesTheSendConsumed() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        AtomicInteger sent = new AtomicInteger();
+        QueuedSessionDecorator session = new QueuedSessionDecorator(session(message -> {
+            // Like the container, sending reads the buffer to the end
+            ByteBuffer payload = ((BinaryMessage) message).getPayload();
+            payload.get(new byte[payload.remaining()]);
+            sent.incrementAndGet();
+        }), executor, 5000, 100);
+
+        // Far more than the limit in total, but never more than one message queued at a time
+        for (int i = 0; i < 20; i++) {
+            session.sendMessage(new BinaryMessage(new byte[60]));
+            int expected = i + 1;
+            await().atMost(5, TimeUnit.SECONDS).until(() -> sent.get() == expected);
+        }
+    }
+
+    @Test
+    void evictsASessionWhoseBacklogExceedsTheBufferLimit() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        QueuedSessionDecorator session = new QueuedSessionDecorator(session(message -> release.await()), executor, 5000, 10);
+
+        session.sendMessage(new TextMessage("12345"));
+        session.sendMessage(new TextMessage("12345"));
+
+        assertThatThrownBy(() -> session.sendMessage(new TextMessage("12345")))
+                .isInstanceOf(SessionLimitExceededException.class)
+                .hasMessageContaining("Buffer size limit");
+        release.countDown();
+    }
+
+    @Test
+    void evictsASessionTheSaturatedExecutorCannotTake() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        // One session holds the only thread, a second one fills the queue
+        new QueuedSessionDecorator(session(message -> release.await()), executor, 5000, 1 << 20)
+                .sendMessage(new TextMessage("busy"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> ((ThreadPoolExecutor) executor).getActiveCount() == 1);
+        new QueuedSessionDecorator(session(message -> { }), executor, 5000, 1 << 20)
+                .sendMessage(new TextMessage("queued"));
+
+        QueuedSessionDecorator rejected = new QueuedSessionDecorator(session(message -> { }), executor, 5000, 1 << 20);
+        assertThatThrownBy(() -> rejected.sendMessage(new TextMessage("rejected")))
+                .isInstanceOf(SessionLimitExceededException.class)
+                .hasMessageContaining("saturated");
+        release.countDown();
+    }
+
+    private interface Writer {
+        void write(WebSocketMessage<?> message) throws Exception;
+    }
+
+    private static WebSocketSession session(Writer writer) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("session");
+        doAnswer(invocation -> {
+            writer.write(invocation.getArgument(0));
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
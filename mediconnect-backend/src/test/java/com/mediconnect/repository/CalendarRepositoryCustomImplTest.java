@@ -0,0 +1,254 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mapping.callback.EntityCallbacks;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the slot writes against an in-memory MongoDB wire server
+ */
+class CalendarRepositoryCustomImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    private final MonthlyAvailabilityRepository monthlyAvailabilityRepository = mock(MonthlyAvailabilityRepository.class);
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private CalendarRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "mediconnect");
+        mongoTemplate.setEntityCallbacks(EntityCallbacks.create(new CalendarCompactCallback()));
+        repository = new CalendarRepositoryCustomImpl(mongoTemplate, monthlyAvailabilityRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void bulkWriteAppliesOnTopOfTheRevisionItRead() {
+        Calendar stored = mongoTemplate.save(calendar(slot(9, 0), slot(9, 30)));
+
+        Calendar merged = mongoTemplate.findById(stored.getId(), Calendar.class);
+        merged.getSlots().add(slot(11, 0));
+        List<Calendar> changed = repository.bulkUpsertSlots(List.of(merged));
+
+        assertThat(changed).isEmpty();
+        Calendar reread = mongoTemplate.findById(stored.getId(), Calendar.class);
+        assertThat(reread.getSlots()).hasSize(3);
+        assertThat(reread.getRevision()).isEqualTo(stored.getRevision() + 1).isEqualTo(merged.getRevision());
+        assertThat(reread.getCompact().size()).isEqualTo(3);
+    }
+
+    @Test
+    void saveBetweenTheRangeReadAndTheBulkWriteIsNotOverwritten() {
+        Calendar stored = mongoTemplate.save(calendar(slot(9, 0), slot(9, 30)));
+
+        // The recurring merge reads the day...
+        Calendar merged = mongoTemplate.findById(stored.getId(), Calendar.class);
+        merged.getSlots().add(slot(11, 0));
+
+        // ...while the doctor extends a slot, which saves the whole calendar...
+        Calendar extended = mongoTemplate.findById(stored.getId(), Calendar.class);
+        extended.getSlots().get(1).setEndTime(DAY.atTime(9, 50));
+        mongoTemplate.save(extended);
+
+        // ...so the merge must come back for a fresh read instead of undoing the extension
+        List<Calendar> changed = repository.bulkUpsertSlots(List.of(merged));
+
+        assertThat(changed).containsExactly(merged);
+        Calendar reread = mongoTemplate.findById(stored.getId(), Calendar.class);
+        assertThat(reread.getSlots()).hasSize(2);
+        assertThat(reread.getSlots().get(1).getEndTime()).isEqualTo(DAY.atTime(9, 50));
+    }
+
+    @Test
+    void insertsNewDaysButLeavesADayCreatedConcurrentlyAlone() {
+        Calendar created = calendar(slot(9, 0));
+        Calendar concurrent = mongoTemplate.save(calendar(slot(14, 0)));
+        Calendar sameDay = calendar(slot(10, 0));
+        sameDay.setDate(concurrent.getDate());
+        created.setDate(DAY.plusDays(1));
+        created.getSlots().forEach(slot -> {
+            slot.setStartTime(slot.getStartTime().plusDays(1));
+            slot.setEndTime(slot.getEndTime().plusDays(1));
+        });
+
+        List<Calendar> changed = repository.bulkUpsertSlots(new ArrayList<>(List.of(created, sameDay)));
+
+        assertThat(changed).containsExactly(sameDay);
+        assertThat(created.getId()).isNotNull();
+        assertThat(mongoTemplate.findById(created.getId(), Calendar.class).getRevision()).isEqualTo(0L);
+        assertThat(mongoTemplate.findById(concurrent.getId(), Calendar.class).getSlots())
+                .extracting(Calendar.Slot::getStartTime).containsExactly(DAY.atTime(14, 0));
+    }
+
+    @Test
+    void saveOverASlotChangeIsRejectedSoRevisionsNeverRepeat() {
+        Calendar stored = mongoTemplate.save(calendar(slot(9, 0), slot(9, 30)));
+        assertThat(stored.getRevision()).isEqualTo(0L);
+        Calendar edited = mongoTemplate.findById(stored.getId(), Calendar.class);
+
+        // A booking lands between the doctor's read and save
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(stored.getId())),
+                new Update().set("slots.0.isAvailable", false).inc("revision", 1), Calendar.class);
+
+        edited.getSlots().get(1).setEndTime(DAY.atTime(9, 50));
+        assertThatThrownBy(() -> mongoTemplate.save(edited)).isInstanceOf(OptimisticLockingFailureException.class);
+
+        Calendar reread = mongoTemplate.findById(stored.getId(), Calendar.class);
+        assertThat(reread.getRevision()).isEqualTo(1L);
+        assertThat(reread.getSlots().get(0).isAvailable()).isFalse();
+        reread.getSlots().get(1).setEndTime(DAY.atTime(9, 50));
+        assertThat(mongoTemplate.save(reread).getRevision()).isEqualTo(2L);
+        assertThat(mongoTemplate.findById(stored.getId(), Calendar.class).getRevision()).isEqualTo(2L);
+    }
+
+    @Test
+    void countsAvailableSlotsAfterTheGivenTimeWithoutLoadingThem() {
+        Calendar morning = calendar(slot(9, 0), slot(9, 30), slot(10, 0), slot(10, 30));
+        morning.getSlots().get(2).setAvailable(false);
+        Calendar stored = mongoTemplate.save(morning);
+        Calendar other = calendar(slot(11, 0));
+        other.setDoctorId("other");
+        Calendar otherStored = mongoTemplate.save(other);
+        Calendar empty = calendar();
+        empty.setDoctorId("empty");
+        empty.setSlots(null);
+        Calendar emptyStored = mongoTemplate.save(empty);
+
+        Map<String, Integer> counts = repository.countAvailableSlotsAfter(
+                List.of(stored.getId(), otherStored.getId(), emptyStored.getId()), DAY.atTime(9, 0));
+
+        // 9:00 is not after 9:00 and 10:00 is taken
+        assertThat(counts).containsOnly(Map.entry("doctor", 2), Map.entry("other", 1));
+    }
+
+    // The in-memory server has no $bit, so the booking tests check the commands sent instead
+
+    @Test
+    void bookingAtTheListedPositionIsASingleFindAndModify() {
+        MongoTemplate template = mock(MongoTemplate.class);
+        CalendarRepositoryCustomImpl booking = new CalendarRepositoryCustomImpl(template, monthlyAvailabilityRepository);
+        Calendar changed = calendar(slot(9, 30));
+        changed.setCompact(CompactDaySlots.from(changed));
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Calendar.class)))
+                .thenReturn(changed);
+
+        Optional<Calendar> booked = booking.bookSlot("calendar", "slot", 65, "appointment");
+
+        assertThat(booked).contains(changed);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(template).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(Calendar.class));
+        verify(template, never()).findOne(any(Query.class), eq(Calendar.class));
+        verify(monthlyAvailabilityRepository).updateDays(List.of(changed));
+
+        Document filter = query.getValue().getQueryObject();
+        assertThat(filter.get("slots.65.id")).isEqualTo("slot");
+        assertThat(filter.get("slots.65.isAvailable")).isEqualTo(true);
+        assertThat(filter.get("compact", Document.class)).containsEntry("$exists", true);
+        Document modifiers = update.getValue().getUpdateObject();
+        assertThat(modifiers.get("$set", Document.class))
+                .containsEntry("slots.65.isAvailable", false)
+                .containsEntry("slots.65.appointmentId", "appointment");
+        assertThat(modifiers.get("$inc", Document.class)).containsEntry("revision", 1);
+        // Slot 65 is bit 1 of the second availability word
+        assertThat(modifiers.get("$bit", Document.class).get("compact.availability.1", Document.class))
+                .containsEntry("and", ~2L);
+    }
+
+    @Test
+    void bookingAtAStalePositionLooksUpWhereTheSlotMovedTo() {
+        MongoTemplate template = mock(MongoTemplate.class);
+        CalendarRepositoryCustomImpl booking = new CalendarRepositoryCustomImpl(template, monthlyAvailabilityRepository);
+        Calendar current = calendar(slot(8, 0), slot(9, 0), slot(9, 30));
+        current.getSlots().get(2).setId("slot");
+        current.setCompact(CompactDaySlots.from(current));
+        Calendar changed = calendar(slot(9, 30));
+        changed.setCompact(current.getCompact());
+        when(template.findOne(any(Query.class), eq(Calendar.class))).thenReturn(current);
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Calendar.class)))
+                .thenReturn(null, changed);
+
+        Optional<Calendar> booked = booking.bookSlot("calendar", "slot", 1, "appointment");
+
+        assertThat(booked).contains(changed);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(template, times(2)).findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Calendar.class));
+        assertThat(query.getAllValues().get(0).getQueryObject().get("slots.1.id")).isEqualTo("slot");
+        assertThat(query.getAllValues().get(1).getQueryObject().get("slots.2.id")).isEqualTo("slot");
+    }
+
+    @Test
+    void takenSlotIsNotBooked() {
+        MongoTemplate template = mock(MongoTemplate.class);
+        CalendarRepositoryCustomImpl booking = new CalendarRepositoryCustomImpl(template, monthlyAvailabilityRepository);
+        Calendar current = calendar(slot(9, 0));
+        current.getSlots().get(0).setId("slot");
+        current.getSlots().get(0).setAvailable(false);
+        when(template.findOne(any(Query.class), eq(Calendar.class))).thenReturn(current);
+
+        assertThat(booking.bookSlot("calendar", "slot", 0, "appointment")).isEmpty();
+
+        verify(template, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Calendar.class));
+        verify(monthlyAvailabilityRepository, never()).updateDays(any());
+    }
+
+    private static Calendar calendar(Calendar.Slot... slots) {
+        Calendar calendar = new Calendar();
+        calendar.setDoctorId("doctor");
+        calendar.setDate(DAY);
+        calendar.setSlots(new ArrayList<>(List.of(slots)));
+        return calendar;
+    }
+
+    private static Calendar.Slot slot(int hour, int minute) {
+        Calendar.Slot slot = new Calendar.Slot();
+        slot.setId(UUID.randomUUID().toString());
+        slot.setStartTime(DAY.atTime(LocalTime.of(hour, minute)));
+        slot.setEndTime(DAY.atTime(LocalTime.of(hour, minute)).plusMinutes(20));
+        slot.setAvailable(true);
+        return slot;
+    }
+}
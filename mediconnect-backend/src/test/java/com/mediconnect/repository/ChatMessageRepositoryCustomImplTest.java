@@ -0,0 +1,67 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.ChatMessage;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatMessageRepositoryCustomImplTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ChatMessageRepositoryCustomImpl repository = new ChatMessageRepositoryCustomImpl(mongoTemplate);
+
+    @Test
+    void firstMarkReadAlsoCoversMessagesStoredBeforeSequencing() {
+        ChatMessage legacy = new ChatMessage();
+        legacy.setId("legacy");
+        when(mongoTemplate.find(any(Query.class), eq(ChatMessage.class))).thenReturn(List.of(legacy));
+
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ChatMessage.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        ChatMessageRepositoryCustom.MarkedRead marked = repository.markReadUpTo("appt-1", "doctor", null, 42);
+
+        assertThat(marked.messageIds()).containsExactly("legacy");
+        assertThat(marked.count()).isEqualTo(1);
+
+        ArgumentCaptor<Query> update = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(update.capture(), any(Update.class), eq(ChatMessage.class));
+        Document filter = update.getValue().getQueryObject();
+        assertThat(filter.get("isRead")).isEqualTo(false);
+        assertThat(filter.getList("$or", Document.class)).containsExactly(
+                new Document("seq", new Document("$lte", 42L)),
+                new Document("seq", new Document("$exists", false)));
+    }
+
+    @Test
+    void laterMarkReadOnlyCoversTheNewSeqRange() {
+        ChatMessage message = new ChatMessage();
+        message.setId("m-43");
+        when(mongoTemplate.find(any(Query.class), eq(ChatMessage.class))).thenReturn(List.of(message));
+
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ChatMessage.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        repository.markReadUpTo("appt-1", "doctor", 42L, 50);
+
+        ArgumentCaptor<Query> update = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(update.capture(), any(Update.class), eq(ChatMessage.class));
+        Document filter = update.getValue().getQueryObject();
+        assertThat(filter.get("seq")).isEqualTo(new Document("$gt", 42L).append("$lte", 50L));
+        assertThat(filter.get("isRead")).isEqualTo(false);
+        assertThat(filter).doesNotContainKey("$or");
+    }
+}
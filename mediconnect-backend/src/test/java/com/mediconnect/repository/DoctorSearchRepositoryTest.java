@@ -0,0 +1,55 @@
+package com.mediconnect.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.util.json.ParameterBindingContext;
+import org.springframework.data.mongodb.util.json.ParameterBindingDocumentCodec;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Binds the declared queries the way Spring Data does, since there is no Mongo to run them against here
+ */
+class DoctorSearchRepositoryTest {
+
+    @Test
+    void nearLocationQueriesKeepTheMinimumExperience() throws NoSuchMethodException {
+        Document bySpecialization = bind(method("findBySpecializationNearLocation", String.class),
+                "Cardiology", 5, 77.59, 12.97, 10000.0);
+        assertThat(bySpecialization.get("yearsOfExperience")).isEqualTo(Map.of("$gte", 5));
+        assertThat(bySpecialization.get("specialization")).isEqualTo("Cardiology");
+
+        Document byLocation = bind(method("findByLocationNear", Integer.class), 5, 77.59, 12.97, 10000.0);
+        assertThat(byLocation.get("yearsOfExperience")).isEqualTo(Map.of("$gte", 5));
+        assertThat(byLocation.toJson()).contains("\"$maxDistance\": 10000.0");
+    }
+
+    @Test
+    void nearLocationQueriesMatchAnyExperienceWithoutAMinimum() throws NoSuchMethodException {
+        Document byLocation = bind(method("findByLocationNear", Integer.class), null, 77.59, 12.97, 10000.0);
+
+        // Matches every document, including those without yearsOfExperience
+        assertThat(byLocation.get("yearsOfExperience"))
+                .isEqualTo(Map.of("$not", Map.of("$type", "minKey")));
+    }
+
+    private static Method method(String name, Class<?> firstParameter) throws NoSuchMethodException {
+        return firstParameter == String.class
+                ? DoctorSearchRepository.class.getMethod(name, String.class, Integer.class, Double.class, Double.class, Double.class, Pageable.class)
+                : DoctorSearchRepository.class.getMethod(name, Integer.class, Double.class, Double.class, Double.class, Pageable.class);
+    }
+
+    private static Document bind(Method method, Object... args) {
+        String json = method.getAnnotation(Query.class).value();
+        ParameterBindingContext context = new ParameterBindingContext(index -> args[index], new SpelExpressionParser(),
+                () -> new StandardEvaluationContext(args));
+        return new ParameterBindingDocumentCodec().decode(json, context);
+    }
+}
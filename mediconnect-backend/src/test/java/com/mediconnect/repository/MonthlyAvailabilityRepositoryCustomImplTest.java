@@ -0,0 +1,137 @@
+package com.mediconnect.repository;
+
+import com.mediconnect.model.Calendar;
+import com.mediconnect.model.CompactDaySlots;
+import com.mediconnect.model.MonthlyAvailability;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mapping.callback.EntityCallbacks;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Runs the summary rebuild against an in-memory MongoDB wire server
+ */
+class MonthlyAvailabilityRepositoryCustomImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+    private static final YearMonth MONTH = YearMonth.from(DAY);
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private MonthlyAvailabilityRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = spy(new MongoTemplate(client, "mediconnect"));
+        mongoTemplate.setEntityCallbacks(EntityCallbacks.create(new CalendarCompactCallback()));
+        repository = new MonthlyAvailabilityRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void rebuildCreatesTheSummaryFromTheCalendars() {
+        Calendar calendar = mongoTemplate.save(calendar(2));
+
+        MonthlyAvailability summary = repository.rebuild("doctor", MONTH);
+
+        assertThat(summary.getDoctorId()).isEqualTo("doctor");
+        assertThat(summary.getMonth()).isEqualTo(MONTH.toString());
+        MonthlyAvailability.DaySummary day = summary.getDays().get(DAY.toString());
+        assertThat(day.getCalendarId()).isEqualTo(calendar.getId());
+        assertThat(day.getAvailableCount()).isEqualTo(2);
+    }
+
+    @Test
+    void bookingBetweenTheReadAndTheInsertIsNotLost() {
+        Calendar calendar = mongoTemplate.save(calendar(2));
+        // The booking finds no summary to update yet, as it lands just before the rebuild writes one
+        doAnswer(invocation -> {
+            book(calendar.getId());
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(MonthlyAvailability.class));
+
+        MonthlyAvailability summary = repository.rebuild("doctor", MONTH);
+
+        MonthlyAvailability.DaySummary day = summary.getDays().get(DAY.toString());
+        assertThat(day.getAvailableCount()).isEqualTo(1);
+        assertThat(day.getRevision()).isEqualTo(1L);
+    }
+
+    @Test
+    void summaryWrittenInTheMeantimeIsNotReplacedWithAnOlderOne() {
+        Calendar calendar = mongoTemplate.save(calendar(2));
+        // Another rebuild reads the calendar after a booking and stores its summary first
+        doAnswer(invocation -> {
+            book(calendar.getId());
+            MonthlyAvailability concurrent = new MonthlyAvailability();
+            concurrent.setId(MonthlyAvailability.idOf("doctor", MONTH));
+            concurrent.setDoctorId("doctor");
+            concurrent.setMonth(MONTH.toString());
+            concurrent.getDays().put(DAY.toString(),
+                    MonthlyAvailability.DaySummary.from(mongoTemplate.findById(calendar.getId(), Calendar.class)));
+            mongoTemplate.insert(concurrent);
+            return invocation.callRealMethod();
+        }).when(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(MonthlyAvailability.class));
+
+        MonthlyAvailability summary = repository.rebuild("doctor", MONTH);
+
+        MonthlyAvailability.DaySummary day = summary.getDays().get(DAY.toString());
+        assertThat(day.getAvailableCount()).isEqualTo(1);
+        assertThat(day.getRevision()).isEqualTo(1L);
+    }
+
+    /**
+     * What bookSlot stores, minus the $bit the in-memory server lacks
+     */
+    private void book(String calendarId) {
+        Calendar booked = mongoTemplate.findById(calendarId, Calendar.class);
+        booked.getSlots().get(0).setAvailable(false);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(calendarId)), new Update()
+                .set("slots.0.isAvailable", false)
+                .set("compact", CompactDaySlots.from(booked))
+                .inc("revision", 1), Calendar.class);
+    }
+
+    private static Calendar calendar(int slots) {
+        Calendar calendar = new Calendar();
+        calendar.setDoctorId("doctor");
+        calendar.setDate(DAY);
+        calendar.setSlots(new ArrayList<>());
+        for (int i = 0; i < slots; i++) {
+            Calendar.Slot slot = new Calendar.Slot();
+            slot.setId(UUID.randomUUID().toString());
+            slot.setStartTime(DAY.atTime(9, 0).plusMinutes(30L * i));
+            slot.setEndTime(slot.getStartTime().plusMinutes(20));
+            slot.setAvailable(true);
+            calendar.getSlots().add(slot);
+        }
+        return calendar;
+    }
+}
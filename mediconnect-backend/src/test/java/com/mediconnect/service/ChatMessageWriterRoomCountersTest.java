@@ -0,0 +1,151 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.repository.ChatRoomRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the room counter updates against an in-memory MongoDB wire server, failing the first one
+ */
+class ChatMessageWriterRoomCountersTest {
+
+    private final ChatRoomRepository chatRoomRepository = mock(ChatRoomRepository.class);
+    private final AtomicInteger roomUpdates = new AtomicInteger();
+    private final List<Integer> roomOpsPerUpdate = new ArrayList<>();
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = spy(new MongoTemplate(client, "mediconnect"));
+        when(chatRoomRepository.findById(any())).thenReturn(Optional.empty());
+        mongoTemplate.insert(room("room-1"));
+        mongoTemplate.insert(room("room-2"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void counterUpdateThatAppliedButReportedFailureIsNotCountedTwice() {
+        failFirstRoomUpdate(() -> { }, () -> {
+            throw new DataAccessResourceFailureException("Connection reset after the write");
+        });
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.SYNC, 100, 50, 10, 1000);
+
+        writer.accept(message("room-1"));
+        writer.accept(message("room-1"));
+
+        ChatRoom room = mongoTemplate.findById("room-1", ChatRoom.class);
+        assertThat(roomUpdates).hasValue(3);
+        assertThat(room.getMessageCount()).isEqualTo(2);
+        assertThat(room.getUnreadCounts()).containsEntry("doctor", 2L);
+        assertThat(room.getLastSeq()).isEqualTo(2L);
+    }
+
+    @Test
+    void onlyTheRoomWhoseUpdateFailedIsRetried() {
+        // The first update of room-2 fails on a counter that is not a number, room-1's goes through
+        failFirstRoomUpdate(() -> setUnreadCounts("room-2", "corrupt"), () -> setUnreadCounts("room-2", new HashMap<>()));
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.WRITE_BEHIND, 3, 1000, 10, 1000);
+
+        writer.accept(message("room-1"));
+        writer.accept(message("room-2"));
+        writer.accept(message("room-1"));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> roomUpdates.get() == 2);
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(mongoTemplate.findById("room-1", ChatRoom.class).getUnreadCounts()).containsEntry("doctor", 2L);
+            assertThat(mongoTemplate.findById("room-2", ChatRoom.class).getUnreadCounts()).containsEntry("doctor", 1L);
+        });
+        assertThat(roomOpsPerUpdate).containsExactly(2, 1);
+        assertThat(mongoTemplate.findById("room-1", ChatRoom.class).getMessageCount()).isEqualTo(2);
+        assertThat(mongoTemplate.findById("room-2", ChatRoom.class).getMessageCount()).isEqualTo(1);
+    }
+
+    /**
+     * Wraps the first room counter update: before runs ahead of the write, after once it is done
+     */
+    private void failFirstRoomUpdate(Runnable before, Runnable after) {
+        doAnswer(invocation -> {
+            BulkOperations roomOps = spy((BulkOperations) invocation.callRealMethod());
+            AtomicInteger ops = new AtomicInteger();
+            doAnswer(update -> {
+                ops.incrementAndGet();
+                return update.callRealMethod();
+            }).when(roomOps).updateOne(any(Query.class), any(Update.class));
+            doAnswer(execute -> {
+                roomOpsPerUpdate.add(ops.get());
+                if (roomUpdates.incrementAndGet() > 1) {
+                    return execute.callRealMethod();
+                }
+                before.run();
+                try {
+                    return execute.callRealMethod();
+                } finally {
+                    after.run();
+                }
+            }).when(roomOps).execute();
+            return roomOps;
+        }).when(mongoTemplate).bulkOps(any(BulkOperations.BulkMode.class), eq(ChatRoom.class));
+    }
+
+    private void setUnreadCounts(String appointmentId, Object unreadCounts) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("appointmentId").is(appointmentId)),
+                new Update().set("unreadCounts", unreadCounts), ChatRoom.class);
+    }
+
+    private static ChatRoom room(String appointmentId) {
+        ChatRoom room = new ChatRoom();
+        room.setAppointmentId(appointmentId);
+        room.setPatientId("patient");
+        room.setDoctorId("doctor");
+        return room;
+    }
+
+    private static ChatMessage message(String appointmentId) {
+        ChatMessage message = new ChatMessage();
+        message.setAppointmentId(appointmentId);
+        message.setSenderId("patient");
+        message.setRecipientId("doctor");
+        message.setContent("hello");
+        return message;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.repository.ChatRoomRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatMessageWriterTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ChatRoomRepository chatRoomRepository = mock(ChatRoomRepository.class);
+    private final BulkOperations messageOps = mock(BulkOperations.class);
+    private final BulkOperations roomOps = mock(BulkOperations.class);
+    private final List<Long> insertedSeqs = new ArrayList<>();
+    private final AtomicLong reservedSeq = new AtomicLong();
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        // The room counter, shared by every writer like the chat room document
+        when(chatRoomRepository.findById(any())).thenReturn(Optional.empty());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ChatRoom.class)))
+                .thenAnswer(invocation -> {
+                    ChatRoom room = new ChatRoom();
+                    room.setReservedSeq(reservedSeq.incrementAndGet());
+                    return room;
+                });
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ChatMessage.class))).thenReturn(messageOps);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ChatRoom.class))).thenReturn(roomOps);
+        when(messageOps.insert(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> batch = invocation.getArgument(0);
+            synchronized (insertedSeqs) {
+                batch.forEach(message -> insertedSeqs.add(message.getSeq()));
+            }
+            return messageOps;
+        });
+        when(roomOps.updateOne(any(Query.class), any(Update.class))).thenReturn(roomOps);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void syncModeFailsTheSendWhenTheMessageCannotBeStored() {
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.SYNC, 100, 50, 10, 1000);
+        when(messageOps.execute()).thenThrow(new DataAccessResourceFailureException("Mongo unavailable"));
+
+        assertThatThrownBy(() -> writer.accept(message("room-1")))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void syncModeStoresTheMessageBeforeReturning() {
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.SYNC, 100, 50, 10, 1000);
+
+        ChatMessage stored = writer.accept(message("room-1"));
+
+        assertThat(stored.getId()).isNotNull();
+        assertThat(insertedSeqs).containsExactly(stored.getSeq());
+    }
+
+    @Test
+    void seqsFollowSendOrderAcrossWriters() throws InterruptedException {
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.SYNC, 100, 50, 10, 1000);
+        ChatMessageWriter otherNode = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.SYNC, 100, 50, 10, 1000);
+
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            seqs.add(writer.accept(message("room-1")).getSeq());
+            seqs.add(otherNode.accept(message("room-1")).getSeq());
+        }
+
+        assertThat(seqs).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        otherNode.shutdown();
+    }
+
+    @Test
+    void fullQueueWaitsInsteadOfWritingAheadOfQueuedMessages() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageOps.execute()).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.WRITE_BEHIND, 1, 1, 1, 5000);
+
+        // The first message holds the flusher, the second fills the queue, the third waits for room
+        writer.accept(message("room-1"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !insertedSeqs.isEmpty());
+        writer.accept(message("room-1"));
+        Thread sender = new Thread(() -> writer.accept(message("room-1")));
+        sender.start();
+        Thread.sleep(200);
+        assertThat(sender.isAlive()).isTrue();
+
+        release.countDown();
+        sender.join(5000);
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertThat(insertedSeqs).containsExactly(1L, 2L, 3L));
+    }
+
+    @Test
+    void fullQueueRejectsTheSendOnceTheTimeoutPasses() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageOps.execute()).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+        writer = new ChatMessageWriter(mongoTemplate, chatRoomRepository, ChatMessageWriter.Mode.WRITE_BEHIND, 1, 1, 1, 50);
+
+        writer.accept(message("room-1"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !insertedSeqs.isEmpty());
+        writer.accept(message("room-1"));
+
+        assertThatThrownBy(() -> writer.accept(message("room-1")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("queue is full");
+        release.countDown();
+    }
+
+    private static ChatMessage message(String appointmentId) {
+        ChatMessage message = new ChatMessage();
+        message.setAppointmentId(appointmentId);
+        message.setSenderId("patient");
+        message.setRecipientId("doctor");
+        message.setContent("hello");
+        return message;
+    }
+}
@@ -0,0 +1,63 @@
+package com.mediconnect.service;
+
+import com.mediconnect.enums.AppointmentStatus;
+import com.mediconnect.enums.UserRole;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatSecurityServiceTest {
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final LocalChatRoomBus bus = new LocalChatRoomBus();
+    private final ChatSecurityService chatSecurityService = new ChatSecurityService(appointmentRepository, bus, 60000);
+    private final Appointment appointment = new Appointment();
+
+    @BeforeEach
+    void setUp() {
+        appointment.setId("appt-1");
+        appointment.setPatientId("patient");
+        appointment.setDoctorId("doctor");
+        appointment.setStatus(AppointmentStatus.CONFIRMED);
+        when(appointmentRepository.findById("appt-1")).thenReturn(Optional.of(appointment));
+    }
+
+    @Test
+    void cachesDecisionsUntilTheAppointmentChanges() {
+        assertThat(chatSecurityService.validateChatAccess("appt-1", "patient", UserRole.PATIENT)).isTrue();
+        assertThat(chatSecurityService.validateChatAccess("appt-1", "patient", UserRole.PATIENT)).isTrue();
+        verify(appointmentRepository, times(1)).findById("appt-1");
+
+        appointment.setStatus(AppointmentStatus.CANCELLED);
+        chatSecurityService.invalidate("appt-1");
+
+        assertThat(chatSecurityService.validateChatAccess("appt-1", "patient", UserRole.PATIENT)).isFalse();
+    }
+
+    @Test
+    void dropsDecisionsWhenAnotherNodeReportsTheChange() {
+        assertThat(chatSecurityService.validateChatAccess("appt-1", "patient", UserRole.PATIENT)).isTrue();
+
+        appointment.setStatus(AppointmentStatus.CANCELLED);
+        bus.deliver(new ChatRoomBus.Frame("appt-1", ChatRoomBus.Kind.ACCESS_CHANGED, null, null, "other-node"));
+
+        assertThat(chatSecurityService.validateChatAccess("appt-1", "patient", UserRole.PATIENT)).isFalse();
+    }
+
+    @Test
+    void invalidationIsPublishedForTheOtherNodes() {
+        ChatRoomBus publishing = mock(ChatRoomBus.class);
+        new ChatSecurityService(appointmentRepository, publishing, 60000).invalidate("appt-1");
+
+        verify(publishing).publish("appt-1", ChatRoomBus.Kind.ACCESS_CHANGED, null, null);
+    }
+}
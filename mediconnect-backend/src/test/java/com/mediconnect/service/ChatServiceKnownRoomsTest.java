@@ -0,0 +1,74 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.chat.ChatMessageRequest;
+import com.mediconnect.enums.UserRole;
+import com.mediconnect.model.ChatMessage;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.repository.ChatMessageRepository;
+import com.mediconnect.repository.ChatRoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatServiceKnownRoomsTest {
+
+    private final ChatRoomRepository chatRoomRepository = mock(ChatRoomRepository.class);
+    private final ChatSecurityService chatSecurityService = mock(ChatSecurityService.class);
+    private final ChatMessageWriter chatMessageWriter = mock(ChatMessageWriter.class);
+    private final ChatService chatService = new ChatService(mock(ChatMessageRepository.class), chatRoomRepository,
+            chatSecurityService, chatMessageWriter, mock(ChatReplayBuffer.class), 2);
+
+    @BeforeEach
+    void setUp() {
+        when(chatSecurityService.validateChatAccess(anyString(), anyString(), any(UserRole.class))).thenReturn(true);
+        when(chatRoomRepository.findByAppointmentId(anyString())).thenAnswer(invocation -> Optional.of(ChatRoom.builder()
+                .appointmentId(invocation.getArgument(0))
+                .patientId("patient")
+                .doctorId("doctor")
+                .build()));
+        when(chatMessageWriter.accept(any(ChatMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void knownRoomIsNotLookedUpAgain() {
+        send("appt-1", "patient", UserRole.PATIENT);
+        send("appt-1", "doctor", UserRole.DOCTOR);
+
+        verify(chatRoomRepository, times(1)).findByAppointmentId("appt-1");
+        ArgumentCaptor<ChatMessage> messages = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(chatMessageWriter, times(2)).accept(messages.capture());
+        assertThat(messages.getAllValues()).extracting(ChatMessage::getRecipientId).containsExactly("doctor", "patient");
+    }
+
+    @Test
+    void leastRecentlyUsedRoomIsForgottenPastTheLimit() {
+        send("appt-1", "patient", UserRole.PATIENT);
+        send("appt-2", "patient", UserRole.PATIENT);
+        send("appt-1", "patient", UserRole.PATIENT);
+        send("appt-3", "patient", UserRole.PATIENT);
+
+        // appt-2 was used least recently when appt-3 came in, appt-1 is still known
+        send("appt-1", "patient", UserRole.PATIENT);
+        send("appt-2", "patient", UserRole.PATIENT);
+
+        verify(chatRoomRepository, times(1)).findByAppointmentId("appt-1");
+        verify(chatRoomRepository, times(2)).findByAppointmentId("appt-2");
+    }
+
+    private void send(String appointmentId, String senderId, UserRole role) {
+        ChatMessageRequest request = new ChatMessageRequest();
+        request.setAppointmentId(appointmentId);
+        request.setContent("hello");
+        chatService.sendMessage(request, senderId, role);
+    }
+}
@@ -0,0 +1,122 @@
+package com.mediconnect.service;
+
+import com.mediconnect.enums.UserRole;
+import com.mediconnect.model.ChatRoom;
+import com.mediconnect.repository.ChatMessageRepository;
+import com.mediconnect.repository.ChatMessageRepositoryCustom.MarkedRead;
+import com.mediconnect.repository.ChatRoomRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatServiceUnreadCountTest {
+
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatRoomRepository chatRoomRepository = mock(ChatRoomRepository.class);
+    private final ChatSecurityService chatSecurityService = mock(ChatSecurityService.class);
+    private final ChatService chatService = new ChatService(chatMessageRepository, chatRoomRepository, chatSecurityService,
+            mock(ChatMessageWriter.class), mock(ChatReplayBuffer.class), 10000);
+
+    @Test
+    void countsDownByTheMessagesActuallyMarked() {
+        // Seq 12 was flushed late, after the reader's watermark had already passed it
+        ChatRoom room = room(20, 10L, 11L);
+        when(chatRoomRepository.findByAppointmentId("appt-1")).thenReturn(Optional.of(room));
+        when(chatMessageRepository.markReadUpTo("appt-1", "doctor", null, 20))
+                .thenReturn(new MarkedRead(List.of("m-12", "m-15"), 2));
+
+        assertThat(chatService.markMessagesAsReadAndGetIds("appt-1", "doctor")).containsExactly("m-12", "m-15");
+
+        // Eleven unread cannot fit above watermark 10 with last seq 20, so the unread messages are scanned
+        verify(chatMessageRepository).markReadUpTo("appt-1", "doctor", null, 20);
+        verify(chatRoomRepository).markRead("appt-1", "doctor", 20, 2);
+    }
+
+    @Test
+    void readsOnlyAboveTheWatermarkWhenTheCounterFitsThere() {
+        ChatRoom room = room(20, 15L, 3L);
+        when(chatRoomRepository.findByAppointmentId("appt-1")).thenReturn(Optional.of(room));
+        when(chatMessageRepository.markReadUpTo("appt-1", "doctor", 15L, 20))
+                .thenReturn(new MarkedRead(List.of("m-16", "m-18", "m-20"), 3));
+
+        chatService.markMessagesAsReadAndGetIds("appt-1", "doctor");
+
+        verify(chatRoomRepository).markRead("appt-1", "doctor", 20, 3);
+    }
+
+    @Test
+    void doesNothingWhenCaughtUpWithNothingUnread() {
+        when(chatRoomRepository.findByAppointmentId("appt-1")).thenReturn(Optional.of(room(20, 20L, 0L)));
+
+        assertThat(chatService.markMessagesAsReadAndGetIds("appt-1", "doctor")).isEmpty();
+
+        verifyNoInteractions(chatMessageRepository);
+        verify(chatRoomRepository, never()).markRead(anyString(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void backfillsALegacyRoomBeforeCountingDown() {
+        ChatRoom legacy = room(0, null, null);
+        legacy.setUnreadCountsBackfilled(false);
+        ChatRoom backfilled = room(0, null, 4L);
+        when(chatRoomRepository.findByAppointmentId("appt-1")).thenReturn(Optional.of(legacy), Optional.of(backfilled));
+        when(chatMessageRepository.countUnsequencedUnread("appt-1", "doctor")).thenReturn(4L);
+        when(chatMessageRepository.countUnsequencedUnread("appt-1", "patient")).thenReturn(1L);
+        when(chatMessageRepository.markReadUpTo(eq("appt-1"), eq("doctor"), isNull(), eq(0L)))
+                .thenReturn(new MarkedRead(List.of("a", "b", "c", "d"), 4));
+
+        chatService.markMessagesAsReadAndGetIds("appt-1", "doctor");
+
+        InOrder order = inOrder(chatRoomRepository, chatMessageRepository);
+        order.verify(chatRoomRepository).backfillUnreadCounts("appt-1", Map.of("doctor", 4L, "patient", 1L));
+        order.verify(chatMessageRepository).markReadUpTo(eq("appt-1"), eq("doctor"), isNull(), eq(0L));
+        order.verify(chatRoomRepository).markRead("appt-1", "doctor", 0, 4);
+    }
+
+    @Test
+    void unreadCountsComeFromTheCountersAlone() {
+        ChatRoom counted = room(20, 15L, 5L);
+        ChatRoom untouched = room(3, null, null);
+        untouched.setAppointmentId("appt-2");
+        when(chatRoomRepository.findActiveRoomsByDoctorId("doctor")).thenReturn(List.of(counted, untouched));
+
+        assertThat(chatService.getUnreadMessageCounts("doctor", UserRole.DOCTOR))
+                .containsEntry("appt-1", 5L)
+                .containsEntry("appt-2", 0L);
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    private static ChatRoom room(long lastSeq, Long doctorWatermark, Long doctorUnread) {
+        ChatRoom room = new ChatRoom();
+        room.setAppointmentId("appt-1");
+        room.setPatientId("patient");
+        room.setDoctorId("doctor");
+        room.setLastSeq(lastSeq);
+        room.setUnreadCountsBackfilled(true);
+        room.setReadWatermarks(new HashMap<>());
+        room.setUnreadCounts(new HashMap<>());
+        if (doctorWatermark != null) {
+            room.getReadWatermarks().put("doctor", doctorWatermark);
+        }
+        if (doctorUnread != null) {
+            room.getUnreadCounts().put("doctor", doctorUnread);
+        }
+        return room;
+    }
+}
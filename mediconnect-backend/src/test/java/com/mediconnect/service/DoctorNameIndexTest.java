@@ -0,0 +1,78 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DoctorNameIndexTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final DoctorNameIndex index = new DoctorNameIndex(mongoTemplate, userRepository,
+            mock(UserSummaryResolver.class), true, 0.45);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.find(any(Query.class), eq(DoctorProfile.class))).thenReturn(List.of(
+                doctor("p-1", "u-1", 77.59, 12.97, "Bengaluru"),
+                doctor("p-2", "u-2", 72.88, 19.08, "Mumbai"),
+                doctor("p-3", "u-3", 77.60, 12.98, "Bengaluru")));
+        when(userRepository.findSummariesByIdIn(anyCollection())).thenReturn(List.of(
+                user("u-1", "Asha Rao"), user("u-2", "Asha Rao"), user("u-3", "Vikram Shah")));
+        index.reload();
+    }
+
+    @Test
+    void keepsOnlyTheNameMatchesThatPassTheFilter() {
+        Page<DoctorProfile> nearby = index.search("asha", null, null,
+                DoctorGeoIndex.within(77.59, 12.97, 10000), PageRequest.of(0, 10)).orElseThrow();
+
+        assertThat(nearby.getContent()).extracting(DoctorProfile::getId).containsExactly("p-1");
+        assertThat(nearby.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void filtersBeforePagingSoTotalsCountOnlyFilteredMatches() {
+        Page<DoctorProfile> inMumbai = index.search("asha", null, null,
+                doctor -> "Mumbai".equals(doctor.getCity()), PageRequest.of(0, 1)).orElseThrow();
+
+        assertThat(inMumbai.getContent()).extracting(DoctorProfile::getId).containsExactly("p-2");
+        assertThat(inMumbai.getTotalElements()).isEqualTo(1);
+    }
+
+    private static DoctorProfile doctor(String id, String userId, double longitude, double latitude, String city) {
+        DoctorProfile doctor = new DoctorProfile();
+        doctor.setId(id);
+        doctor.setUserId(userId);
+        doctor.setSpecialization("Cardiology");
+        doctor.setVerificationStatus(VerificationStatus.VERIFIED);
+        doctor.setLocation(new GeoJsonPoint(longitude, latitude));
+        doctor.setCity(city);
+        doctor.setState("Karnataka");
+        return doctor;
+    }
+
+    private static UserSummary user(String id, String fullName) {
+        UserSummary user = new UserSummary();
+        user.setId(id);
+        user.setFullName(fullName);
+        return user;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mediconnect.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class DoctorSearchIndexLoaderTest {
+
+    private final DoctorGeoIndex doctorGeoIndex = mock(DoctorGeoIndex.class);
+    private final DoctorNameIndex doctorNameIndex = mock(DoctorNameIndex.class);
+    private final DoctorSuggestionIndex doctorSuggestionIndex = mock(DoctorSuggestionIndex.class);
+    private final DoctorSearchIndexLoader loader = new DoctorSearchIndexLoader(doctorGeoIndex, doctorNameIndex, doctorSuggestionIndex);
+
+    @Test
+    void loadsEachIndexOnItsOwnThreadWithoutHoldingUpTheEvent() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> loadThreads = new CopyOnWriteArrayList<>();
+        // A slow geo load blocks neither the event thread nor the other two loads
+        doAnswer(invocation -> {
+            loadThreads.add(Thread.currentThread().getName());
+            release.await();
+            return null;
+        }).when(doctorGeoIndex).reload();
+        doAnswer(invocation -> loadThreads.add(Thread.currentThread().getName())).when(doctorNameIndex).reload();
+        doAnswer(invocation -> loadThreads.add(Thread.currentThread().getName())).when(doctorSuggestionIndex).reload();
+
+        loader.loadOnStartup();
+
+        verify(doctorNameIndex, timeout(5000)).reload();
+        verify(doctorSuggestionIndex, timeout(5000)).reload();
+        verify(doctorGeoIndex, timeout(5000)).reload();
+        assertThat(loadThreads).hasSize(3)
+                .allSatisfy(name -> assertThat(name).startsWith("doctor-search-index-load-"))
+                .doesNotHaveDuplicates();
+        release.countDown();
+    }
+}
@@ -0,0 +1,95 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.doctor.DoctorSuggestionResponse;
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.enums.SuggestionType;
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.repository.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DoctorSuggestionIndexTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserSummaryResolver userSummaryResolver = mock(UserSummaryResolver.class);
+    private final DoctorSuggestionIndex index = new DoctorSuggestionIndex(mongoTemplate, userRepository, userSummaryResolver, true, 10);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.find(any(Query.class), eq(DoctorProfile.class))).thenReturn(List.of(
+                doctor("p-1", "u-1", "Cardiology"),
+                doctor("p-2", "u-2", "Cardiology"),
+                doctor("p-3", "u-3", "Cardiac Surgery")));
+        when(userRepository.findSummariesByIdIn(anyCollection())).thenReturn(List.of(
+                user("u-1", "Carl Adams"), user("u-2", "Cara Bell"), user("u-3", "Carmen Diaz")));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(
+                        new Document("_id", "u-1").append("count", 2),
+                        new Document("_id", "u-2").append("count", 7),
+                        new Document("_id", "u-3").append("count", 4)), new Document()));
+        index.reload();
+    }
+
+    @Test
+    void ranksDoctorsByTheirAppointments() {
+        assertThat(index.suggest("car", 10))
+                .filteredOn(suggestion -> suggestion.getType() == SuggestionType.DOCTOR)
+                .extracting(DoctorSuggestionResponse::getId)
+                .containsExactly("u-2", "u-3", "u-1");
+    }
+
+    @Test
+    void ranksSpecializationsByTheAppointmentsOfTheirDoctors() {
+        // Cardiology has 2 + 7 appointments, Cardiac Surgery 4
+        assertThat(index.suggest("card", 10))
+                .filteredOn(suggestion -> suggestion.getType() == SuggestionType.SPECIALIZATION)
+                .extracting(DoctorSuggestionResponse::getText)
+                .containsExactly("Cardiology", "Cardiac Surgery");
+    }
+
+    @Test
+    void keepsTheRankingOfASavedDoctor() {
+        when(userSummaryResolver.resolve("u-1")).thenReturn(Optional.of(user("u-1", "Carl Adams")));
+
+        index.updateProfile(doctor("p-1", "u-1", "Cardiology"));
+
+        assertThat(index.suggest("car", 10))
+                .filteredOn(suggestion -> suggestion.getType() == SuggestionType.DOCTOR)
+                .extracting(DoctorSuggestionResponse::getId)
+                .containsExactly("u-2", "u-3", "u-1");
+    }
+
+    private static DoctorProfile doctor(String id, String userId, String specialization) {
+        DoctorProfile doctor = new DoctorProfile();
+        doctor.setId(id);
+        doctor.setUserId(userId);
+        doctor.setSpecialization(specialization);
+        doctor.setVerificationStatus(VerificationStatus.VERIFIED);
+        return doctor;
+    }
+
+    private static UserSummary user(String id, String fullName) {
+        UserSummary user = new UserSummary();
+        user.setId(id);
+        user.setFullName(fullName);
+        return user;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mediconnect.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class EmailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JavaMailSenderImpl mailSender;
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void deliversThroughSmtpOffTheCallerThread() throws Exception {
+        dispatcher = new EmailDispatcher(meterRegistry, 2, 10, 3, 10);
+
+        assertThat(dispatcher.dispatch("status email", () -> send("patient@example.com", "Appointment confirmed"))).isTrue();
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        assertThat(received.getSubject()).isEqualTo("Appointment confirmed");
+        assertThat(GreenMailUtil.getAddressList(received.getAllRecipients())).isEqualTo("patient@example.com");
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(meterRegistry.counter("email.dispatch.sent").count()).isEqualTo(1);
+            assertThat(meterRegistry.timer("email.dispatch.latency").count()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void retriesWithBackoffUntilTheServerAccepts() throws Exception {
+        dispatcher = new EmailDispatcher(meterRegistry, 1, 10, 3, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        dispatcher.dispatch("status email", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new MessagingException("Connection refused");
+            }
+            send("doctor@example.com", "Appointment cancelled");
+        });
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(attempts.get()).isEqualTo(3);
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(meterRegistry.counter("email.dispatch.retried").count()).isEqualTo(2);
+            assertThat(meterRegistry.counter("email.dispatch.sent").count()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        dispatcher = new EmailDispatcher(meterRegistry, 1, 10, 2, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        dispatcher.dispatch("status email", () -> {
+            attempts.incrementAndGet();
+            throw new MessagingException("Mailbox unavailable");
+        });
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(meterRegistry.counter("email.dispatch.failed").count()).isEqualTo(1));
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    void rejectsInsteadOfBlockingWhenTheQueueIsFull() throws Exception {
+        dispatcher = new EmailDispatcher(meterRegistry, 1, 1, 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // One email holds the only worker, the next fills the queue
+        assertThat(dispatcher.dispatch("blocked", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })).isTrue();
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                meterRegistry.get("email.dispatch.queue.depth").gauge().value() == 0);
+        assertThat(dispatcher.dispatch("queued", () -> send("a@example.com", "Queued"))).isTrue();
+
+        assertThat(dispatcher.dispatch("dropped", () -> send("b@example.com", "Dropped"))).isFalse();
+        assertThat(meterRegistry.counter("email.dispatch.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(greenMail.getReceivedMessages()[0].getSubject()).isEqualTo("Queued");
+    }
+
+    private void send(String to, String subject) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom("noreply@mediconnect.test");
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText("<p>" + subject + "</p>", true);
+        mailSender.send(message);
+    }
+}
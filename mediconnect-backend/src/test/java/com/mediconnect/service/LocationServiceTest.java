@@ -0,0 +1,105 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.AddressResponse;
+import com.mediconnect.model.PincodeLocation;
+import com.mediconnect.repository.PincodeLocationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocationServiceTest {
+
+    private final PincodeLocationRepository pincodeLocationRepository = mock(PincodeLocationRepository.class);
+
+    @Test
+    void leastRecentlyUsedPincodeIsLookedUpAgainPastTheLimit() {
+        when(pincodeLocationRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.of(location(invocation.getArgument(0))));
+        LocationService locationService = locationService(2);
+
+        locationService.getLocationDetailsFromPincode("560001");
+        locationService.getLocationDetailsFromPincode("560002");
+        locationService.getLocationDetailsFromPincode("560001");
+        locationService.getLocationDetailsFromPincode("560003");
+
+        // 560002 was used least recently when 560003 came in, 560001 is still cached
+        locationService.getLocationDetailsFromPincode("560001");
+        locationService.getLocationDetailsFromPincode("560002");
+
+        verify(pincodeLocationRepository, times(1)).findById("560001");
+        verify(pincodeLocationRepository, times(2)).findById("560002");
+        verify(pincodeLocationRepository, times(1)).findById("560003");
+    }
+
+    @Test
+    void evictedPincodesAreLookedUpAgain() {
+        when(pincodeLocationRepository.findById("560001")).thenReturn(Optional.of(location("560001")));
+        LocationService locationService = locationService(10);
+
+        locationService.getLocationDetailsFromPincode("560001");
+        locationService.evictCachedPincodes();
+        locationService.getLocationDetailsFromPincode("560001");
+
+        verify(pincodeLocationRepository, times(2)).findById("560001");
+    }
+
+    @Test
+    void concurrentMissesOfAPincodeShareOneLookup() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        when(pincodeLocationRepository.findById("560001")).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            releaseLookup.await(5, TimeUnit.SECONDS);
+            return Optional.of(location("560001"));
+        });
+        LocationService locationService = locationService(10);
+
+        CompletableFuture<AddressResponse> first = new CompletableFuture<>();
+        Thread firstLookup = lookupThread(locationService, first);
+        firstLookup.start();
+        assertThat(lookupStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<AddressResponse> second = new CompletableFuture<>();
+        Thread secondLookup = lookupThread(locationService, second);
+        secondLookup.start();
+        // The second miss waits on the first lookup instead of starting its own
+        await().atMost(5, TimeUnit.SECONDS).until(() -> secondLookup.getState() == Thread.State.TIMED_WAITING);
+        releaseLookup.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getCity()).isEqualTo("Bengaluru");
+        assertThat(second.get(5, TimeUnit.SECONDS).getLocation()).isEqualTo(new GeoJsonPoint(77.59, 12.97));
+        verify(pincodeLocationRepository, times(1)).findById("560001");
+    }
+
+    private Thread lookupThread(LocationService locationService, CompletableFuture<AddressResponse> result) {
+        return new Thread(() -> {
+            try {
+                result.complete(locationService.getLocationDetailsFromPincode("560001"));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private LocationService locationService(int maxCachedPincodes) {
+        return new LocationService(pincodeLocationRepository, maxCachedPincodes, 5000, 2000, 3000);
+    }
+
+    private static PincodeLocation location(String pincode) {
+        return new PincodeLocation(pincode, "Bengaluru", "Karnataka", new GeoJsonPoint(77.59, 12.97),
+                PincodeLocation.SOURCE_IMPORT, LocalDateTime.now());
+    }
+}
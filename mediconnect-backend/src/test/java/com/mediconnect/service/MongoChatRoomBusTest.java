@@ -0,0 +1,115 @@
+package com.mediconnect.service;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The tailer's handling of the capped collection's documents; the cursor itself needs a real
+ * mongod, which tailable cursors on capped collections are not emulated without
+ */
+class MongoChatRoomBusTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MongoChatRoomBus bus = new MongoChatRoomBus(mongoTemplate, 1 << 20, 200);
+    private final List<ChatRoomBus.Frame> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        bus.subscribe("appt-1", received::add);
+    }
+
+    @Test
+    void deliversFramesOfOtherNodesForHostedRooms() {
+        bus.onDocument(frame(new ObjectId(), "appt-1", "MESSAGE", "other-node"));
+        bus.onDocument(frame(new ObjectId(), "appt-2", "MESSAGE", "other-node"));
+
+        assertThat(received).singleElement().satisfies(frame -> {
+            assertThat(frame.appointmentId()).isEqualTo("appt-1");
+            assertThat(frame.kind()).isEqualTo(ChatRoomBus.Kind.MESSAGE);
+            assertThat(frame.origin()).isEqualTo("other-node");
+            assertThat(frame.payload()).isEqualTo("{}".getBytes());
+        });
+    }
+
+    @Test
+    void skipsOwnFramesTheInitDocumentAndUnknownKinds() {
+        bus.onDocument(frame(new ObjectId(), "appt-1", "MESSAGE", bus.getNodeId()));
+        bus.onDocument(new Document("_id", new ObjectId()).append("kind", "INIT").append("createdAt", new Date()));
+        bus.onDocument(frame(new ObjectId(), "appt-1", "SOMETHING_NEWER", "other-node"));
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void skipsFramesFromBeforeTheNodeStartedAndOnesAlreadyDelivered() {
+        ObjectId old = new ObjectId(new Date(System.currentTimeMillis() - 60_000));
+        ObjectId recent = new ObjectId();
+
+        bus.onDocument(frame(old, "appt-1", "MESSAGE", "other-node"));
+        bus.onDocument(frame(recent, "appt-1", "MESSAGE", "other-node"));
+        bus.onDocument(frame(recent, "appt-1", "MESSAGE", "other-node"));
+
+        assertThat(received).hasSize(1);
+    }
+
+    @Test
+    void resumesFromShortlyBeforeTheLastFrameRead() {
+        // Nothing read yet: the first cursor must match something, so it is not filtered
+        assertThat(bus.resumeFilter().toBsonDocument()).isEmpty();
+
+        ObjectId last = new ObjectId();
+        bus.onDocument(frame(last, "appt-9", "MESSAGE", "other-node"));
+
+        Document filter = Document.parse(bus.resumeFilter().toBsonDocument().toJson());
+        ObjectId from = filter.get("_id", Document.class).getObjectId("$gte");
+        assertThat(from.getTimestamp()).isEqualTo(last.getTimestamp() - 5);
+    }
+
+    @Test
+    void nodeListenersGetTheirKindFromEveryRoom() {
+        List<ChatRoomBus.Frame> accessChanges = new ArrayList<>();
+        bus.subscribeNode(ChatRoomBus.Kind.ACCESS_CHANGED, accessChanges::add);
+
+        bus.onDocument(frame(new ObjectId(), "appt-2", "ACCESS_CHANGED", "other-node"));
+        bus.onDocument(frame(new ObjectId(), "appt-1", "ACCESS_CHANGED", "other-node"));
+
+        assertThat(accessChanges).extracting(ChatRoomBus.Frame::appointmentId).containsExactly("appt-2", "appt-1");
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishDeliversLocallyAndAppendsToTheCollection() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection(MongoChatRoomBus.COLLECTION)).thenReturn(collection);
+
+        bus.publish("appt-1", ChatRoomBus.Kind.PRESENCE, "{}".getBytes(), "user-1");
+
+        assertThat(received).singleElement().extracting(ChatRoomBus.Frame::excludeUserId).isEqualTo("user-1");
+        verify(collection).insertOne(any(Document.class));
+    }
+
+    private static Document frame(ObjectId id, String appointmentId, String kind, String origin) {
+        return new Document("_id", id)
+                .append("appointmentId", appointmentId)
+                .append("kind", kind)
+                .append("payload", new Binary("{}".getBytes()))
+                .append("origin", origin)
+                .append("createdAt", new Date());
+    }
+}
@@ -0,0 +1,164 @@
+package com.mediconnect.service;
+
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.OutboxEvent;
+import com.mediconnect.repository.AppointmentRepository;
+import com.mediconnect.repository.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final UserSummaryResolver userSummaryResolver = mock(UserSummaryResolver.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private EmailDispatcher emailDispatcher;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        emailDispatcher = new EmailDispatcher(new SimpleMeterRegistry(), 2, 10, 1, 10);
+        relay = new OutboxRelay(outboxRepository, appointmentRepository, userSummaryResolver, emailService,
+                emailDispatcher, notificationService, 20, 3, 8, 60000, 1000);
+
+        Appointment appointment = new Appointment();
+        appointment.setId("appt-1");
+        appointment.setSlotStartTime(LocalDateTime.of(2026, 1, 5, 10, 0));
+        appointment.setSlotEndTime(LocalDateTime.of(2026, 1, 5, 10, 30));
+        when(appointmentRepository.findAllById(any())).thenReturn(List.of(appointment));
+        when(userSummaryResolver.resolve(anyCollection())).thenReturn(Map.of(
+                "patient", user("patient", "patient@example.com"),
+                "doctor", user("doctor", "doctor@example.com")));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        emailDispatcher.shutdown();
+    }
+
+    @Test
+    void deletesTheEventOnceEveryEmailIsSent() throws Exception {
+        OutboxEvent event = event("evt-1");
+        when(outboxRepository.claimBatch(eq(3), any())).thenReturn(List.of(event));
+
+        relay.drain();
+
+        verify(outboxRepository, timeout(5000)).deleteClaimed(event);
+        verify(emailService).sendAppointmentStatusEmail(eq("patient@example.com"), any(), eq("CONFIRMED"), any(), any(), any(), any(), any());
+        verify(emailService).sendAppointmentStatusEmail(eq("doctor@example.com"), any(), eq("CONFIRMED"), any(), any(), any(), any(), any());
+        verify(outboxRepository).markRecipientDone("evt-1", "emailedRecipientIds", "patient");
+        verify(outboxRepository).markRecipientDone("evt-1", "emailedRecipientIds", "doctor");
+        verify(outboxRepository, never()).markFailed(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void retryOnlyServesTheRecipientsThatWereMissed() throws Exception {
+        doThrow(new MessagingException("Mailbox unavailable")).when(emailService)
+                .sendAppointmentStatusEmail(eq("doctor@example.com"), any(), any(), any(), any(), any(), any(), any());
+        OutboxEvent event = event("evt-1");
+        when(outboxRepository.claimBatch(anyInt(), any())).thenReturn(List.of(event));
+
+        relay.drain();
+
+        verify(outboxRepository, timeout(5000)).markFailed(eq(event), eq("Mailbox unavailable"), any(), eq(false));
+        verify(outboxRepository).markRecipientDone("evt-1", "emailedRecipientIds", "patient");
+        verify(outboxRepository, never()).markRecipientDone("evt-1", "emailedRecipientIds", "doctor");
+        verify(outboxRepository, never()).deleteClaimed(any());
+
+        // The retry reads back what was recorded for the first attempt
+        OutboxEvent retried = event("evt-1");
+        retried.setAttempts(1);
+        retried.setNotifiedRecipientIds(List.of("patient", "doctor"));
+        retried.setEmailedRecipientIds(List.of("patient"));
+        when(outboxRepository.claimBatch(anyInt(), any())).thenReturn(List.of(retried));
+        doAnswer(invocation -> null).when(emailService)
+                .sendAppointmentStatusEmail(eq("doctor@example.com"), any(), any(), any(), any(), any(), any(), any());
+
+        relay.drain();
+
+        verify(outboxRepository, timeout(5000)).deleteClaimed(retried);
+        verify(emailService, times(1)).sendAppointmentStatusEmail(eq("patient@example.com"), any(), any(), any(), any(), any(), any(), any());
+        verify(notificationService, times(1)).createNotification(eq("patient"), any(), any(), any(), any());
+        verify(notificationService, times(1)).createNotification(eq("doctor"), any(), any(), any(), any());
+    }
+
+    @Test
+    void keepsLeasesAliveAndStopsClaimingWhileEmailsAreInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(emailService).sendAppointmentStatusEmail(any(), any(), any(), any(), any(), any(), any(), any());
+        OutboxEvent first = event("evt-1");
+        OutboxEvent second = event("evt-2");
+        OutboxEvent third = event("evt-3");
+        when(outboxRepository.claimBatch(eq(3), any())).thenReturn(List.of(first, second, third));
+
+        relay.drain();
+        relay.drain();
+
+        // The first run claimed up to max-in-flight, the second only renewed the leases
+        verify(outboxRepository).claimBatch(eq(3), any());
+        verify(outboxRepository, never()).claimBatch(eq(0), any());
+        verify(outboxRepository).renewLeases(
+                argThat(ids -> ids.containsAll(List.of("evt-1", "evt-2", "evt-3"))),
+                eq(Set.of("token")), eq(Duration.ofMillis(60000)));
+
+        release.countDown();
+        verify(outboxRepository, timeout(5000)).deleteClaimed(third);
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            relay.drain();
+            verify(outboxRepository, atLeast(2)).claimBatch(anyInt(), any());
+        });
+    }
+
+    private static OutboxEvent event(String id) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setType(OutboxEvent.TYPE_APPOINTMENT_STATUS);
+        event.setAppointmentId("appt-1");
+        event.setStatus("CONFIRMED");
+        event.setRecipientIds(List.of("patient", "doctor"));
+        event.setClaimToken("token");
+        return event;
+    }
+
+    private static UserSummary user(String id, String email) {
+        UserSummary user = new UserSummary();
+        user.setId(id);
+        user.setFullName(id);
+        user.setEmail(email);
+        return user;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.Appointment;
+import com.mediconnect.model.OutboxEvent;
+import com.mediconnect.repository.AppointmentRepository;
+import com.mediconnect.repository.OutboxRepository;
+import com.mediconnect.repository.OutboxRepositoryCustomImpl;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the outbox writes without transactions against an in-memory MongoDB wire server
+ */
+class OutboxServiceTest {
+
+    private final AtomicBoolean outboxDown = new AtomicBoolean();
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private AppointmentRepository appointmentRepository;
+    private OutboxService outboxService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "mediconnect");
+
+        MongoRepositoryFactory factory = new MongoRepositoryFactory(mongoTemplate);
+        appointmentRepository = factory.getRepository(AppointmentRepository.class);
+        OutboxRepository outbox = factory.getRepository(OutboxRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new OutboxRepositoryCustomImpl(mongoTemplate)));
+        OutboxRepository outboxRepository = mock(OutboxRepository.class, delegatesTo(outbox));
+        doAnswer(invocation -> {
+            if (outboxDown.get()) {
+                throw new DataAccessResourceFailureException("Outbox unavailable");
+            }
+            outbox.insertIfAbsent(invocation.getArgument(0));
+            return null;
+        }).when(outboxRepository).insertIfAbsent(anyCollection());
+
+        ObjectProvider<MongoTransactionManager> noTransactions = mock(ObjectProvider.class);
+        outboxService = new OutboxService(outboxRepository, appointmentRepository, mongoTemplate, noTransactions, 0, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void eventIsMovedToTheOutboxRightAfterTheWrite() {
+        Appointment appointment = appointment();
+
+        Appointment saved = outboxService.saveWithEvent(appointment, true, event(appointment, "SCHEDULED"));
+
+        assertThat(saved.getPendingEvents()).isEmpty();
+        assertThat(mongoTemplate.findAll(OutboxEvent.class)).extracting(OutboxEvent::getStatus).containsExactly("SCHEDULED");
+        assertThat(appointmentRepository.findById("appt-1").orElseThrow().getPendingEvents()).isEmpty();
+    }
+
+    @Test
+    void eventThatCouldNotBeMovedStaysWithTheAppointmentUntilTheSweep() {
+        Appointment appointment = appointment();
+        outboxDown.set(true);
+
+        outboxService.saveWithEvent(appointment, true, event(appointment, "SCHEDULED"));
+
+        assertThat(mongoTemplate.findAll(OutboxEvent.class)).isEmpty();
+        assertThat(appointmentRepository.findById("appt-1").orElseThrow().getPendingEvents())
+                .extracting(OutboxEvent::getStatus).containsExactly("SCHEDULED");
+
+        outboxDown.set(false);
+        outboxService.sweepPendingEvents();
+        outboxService.sweepPendingEvents();
+
+        assertThat(mongoTemplate.findAll(OutboxEvent.class)).extracting(OutboxEvent::getStatus).containsExactly("SCHEDULED");
+        assertThat(appointmentRepository.findById("appt-1").orElseThrow().getPendingEvents()).isEmpty();
+    }
+
+    @Test
+    void laterChangeKeepsTheEventsStillPending() {
+        Appointment appointment = appointment();
+        outboxDown.set(true);
+        outboxService.saveWithEvent(appointment, true, event(appointment, "SCHEDULED"));
+
+        Appointment confirmed = appointmentRepository.findById("appt-1").orElseThrow();
+        outboxDown.set(false);
+        outboxService.saveWithEvent(confirmed, false, event(confirmed, "CONFIRMED"));
+
+        assertThat(mongoTemplate.findAll(OutboxEvent.class)).extracting(OutboxEvent::getStatus)
+                .containsExactlyInAnyOrder("SCHEDULED", "CONFIRMED");
+        assertThat(appointmentRepository.findById("appt-1").orElseThrow().getPendingEvents()).isEmpty();
+    }
+
+    private static Appointment appointment() {
+        Appointment appointment = new Appointment();
+        appointment.setId("appt-1");
+        appointment.setDoctorId("doctor");
+        appointment.setPatientId("patient");
+        return appointment;
+    }
+
+    private static OutboxEvent event(Appointment appointment, String status) {
+        return OutboxEvent.appointmentStatus(appointment, status, null, List.of("doctor", "patient"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.mediconnect.service;
+
+import com.mediconnect.model.PincodeLocation;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Imports small CSV files into an in-memory MongoDB wire server
+ */
+class PincodeDatasetImporterTest {
+
+    private static final String HEADER = "officename,pincode,district,statename,latitude,longitude";
+
+    @TempDir
+    Path directory;
+
+    private final LocationService locationService = mock(LocationService.class);
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private PincodeDatasetImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "mediconnect");
+        importer = new PincodeDatasetImporter(mongoTemplate, locationService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void quotedFieldsKeepTheirCommasAndQuotes() throws IOException {
+        Path file = csv(HEADER,
+                "\"Bangalore G.P.O., Main\",560001,\"BENGALURU \"\"URBAN\"\"\",KARNATAKA,12.9716,77.5946");
+
+        assertThat(importer.importFile(file)).isEqualTo(1);
+
+        PincodeLocation location = mongoTemplate.findById("560001", PincodeLocation.class);
+        assertThat(location.getCity()).isEqualTo("Bengaluru \"Urban\"");
+        assertThat(location.getState()).isEqualTo("Karnataka");
+        assertThat(location.getLocation()).isEqualTo(new GeoJsonPoint(77.5946, 12.9716));
+        assertThat(location.getSource()).isEqualTo(PincodeLocation.SOURCE_IMPORT);
+        verify(locationService).evictCachedPincodes();
+    }
+
+    @Test
+    void headerWithAByteOrderMarkIsRecognised() throws IOException {
+        // The mark sits in front of the first column name, here one the import needs
+        Path file = csv("\uFEFFpincode,officename,district,statename,latitude,longitude",
+                "400001,Fort,MUMBAI,MAHARASHTRA,18.9388,72.8354");
+
+        assertThat(importer.importFile(file)).isEqualTo(1);
+        assertThat(mongoTemplate.findById("400001", PincodeLocation.class).getCity()).isEqualTo("Mumbai");
+    }
+
+    @Test
+    void rowsWithoutUsableCoordinatesAreSkipped() throws IOException {
+        Path file = csv(HEADER,
+                "Nowhere,110001,NEW DELHI,DELHI,NA,NA",
+                "Null Island,110002,NEW DELHI,DELHI,0,0",
+                "Off The Map,110003,NEW DELHI,DELHI,95.0,77.2",
+                "Short Row,110004,NEW DELHI",
+                "Bad Pincode,11000X,NEW DELHI,DELHI,28.63,77.21",
+                "Connaught Place,110005,NEW DELHI,DELHI,28.63,77.21");
+
+        assertThat(importer.importFile(file)).isEqualTo(1);
+        assertThat(mongoTemplate.findAll(PincodeLocation.class)).extracting(PincodeLocation::getPincode)
+                .containsExactly("110005");
+    }
+
+    @Test
+    void firstPostOfficeWithCoordinatesWinsForADuplicatePincode() throws IOException {
+        Path file = csv(HEADER,
+                "Without Coordinates,600001,CHENNAI,TAMIL NADU,NA,NA",
+                "First,600001,CHENNAI,TAMIL NADU,13.0827,80.2707",
+                "Second,600001,CHENNAI,TAMIL NADU,13.1000,80.3000");
+
+        assertThat(importer.importFile(file)).isEqualTo(1);
+        assertThat(mongoTemplate.findById("600001", PincodeLocation.class).getLocation())
+                .isEqualTo(new GeoJsonPoint(80.2707, 13.0827));
+    }
+
+    @Test
+    void reimportOverwritesTheStoredPincode() throws IOException {
+        importer.importFile(csv(HEADER, "Old,700001,KOLKATA,WEST BENGAL,22.50,88.30"));
+        importer.importFile(csv(HEADER, "New,700001,KOLKATA,WEST BENGAL,22.57,88.36"));
+
+        assertThat(mongoTemplate.findAll(PincodeLocation.class)).singleElement()
+                .extracting(PincodeLocation::getLocation).isEqualTo(new GeoJsonPoint(88.36, 22.57));
+    }
+
+    private Path csv(String... lines) throws IOException {
+        return Files.write(Files.createTempFile(directory, "pincodes", ".csv"),
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,155 @@
+package com.mediconnect.service.impl;
+
+import com.mediconnect.dto.AddressResponse;
+import com.mediconnect.dto.user.UserSummary;
+import com.mediconnect.enums.VerificationStatus;
+import com.mediconnect.model.DoctorProfile;
+import com.mediconnect.repository.CalendarRepository;
+import com.mediconnect.repository.DoctorSearchRepository;
+import com.mediconnect.service.DoctorGeoIndex;
+import com.mediconnect.service.DoctorNameIndex;
+import com.mediconnect.service.DoctorSuggestionIndex;
+import com.mediconnect.service.LocationService;
+import com.mediconnect.service.UserSummaryResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DoctorSearchServiceImplTest {
+
+    private static final Pageable PAGE = PageRequest.of(0, 10);
+
+    @Mock
+    private DoctorSearchRepository doctorSearchRepository;
+    @Mock
+    private UserSummaryResolver userSummaryResolver;
+    @Mock
+    private LocationService locationService;
+    @Mock
+    private DoctorGeoIndex doctorGeoIndex;
+    @Mock
+    private DoctorNameIndex doctorNameIndex;
+    @Mock
+    private DoctorSuggestionIndex doctorSuggestionIndex;
+    @Mock
+    private CalendarRepository calendarRepository;
+
+    @InjectMocks
+    private DoctorSearchServiceImpl doctorSearchService;
+
+    @BeforeEach
+    void setUp() {
+        when(userSummaryResolver.resolve(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> userIds = invocation.getArgument(0);
+            return userIds.stream().collect(Collectors.toMap(id -> id, DoctorSearchServiceImplTest::user));
+        });
+        when(doctorGeoIndex.findNear(any(), any(), anyDouble(), anyDouble(), anyDouble(), any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void mongoFallbackKeepsTheMinimumExperienceWhileTheGeoIndexLoads() {
+        when(doctorSearchRepository.findByLocationNear(eq(5), any(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of(doctor("d-1", 77.59, 12.97, 8))));
+        when(doctorSearchRepository.findBySpecializationNearLocation(eq("Cardiology"), eq(5), any(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        doctorSearchService.searchDoctors(null, null, 5, null, null, null, 12.97, 77.59, 10.0, PAGE);
+        doctorSearchService.searchDoctors(null, "Cardiology", 5, null, null, null, 12.97, 77.59, 10.0, PAGE);
+
+        verify(doctorSearchRepository).findByLocationNear(5, 77.59, 12.97, 10000.0, PAGE);
+        verify(doctorSearchRepository).findBySpecializationNearLocation("Cardiology", 5, 77.59, 12.97, 10000.0, PAGE);
+    }
+
+    @Test
+    void nameMatchesAreNarrowedToTheCoordinates() {
+        Predicate<DoctorProfile> filter = nameSearchFilter(null, null, null, 12.97, 77.59, 10.0);
+
+        assertThat(filter).accepts(doctor("near", 77.60, 12.98, 5)).rejects(doctor("far", 72.88, 19.08, 5));
+        verify(doctorSearchRepository, never()).findByLocationNear(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void nameMatchesAreNarrowedToThePincodeArea() {
+        AddressResponse address = new AddressResponse();
+        address.setLocation(new GeoJsonPoint(77.59, 12.97));
+        when(locationService.getLocationDetailsFromPincode("560001")).thenReturn(address);
+
+        Predicate<DoctorProfile> filter = nameSearchFilter(null, null, "560001", null, null, null);
+
+        // Ten kilometres by default, as for the pincode search without a name
+        assertThat(filter).accepts(doctor("near", 77.65, 12.97, 5)).rejects(doctor("far", 77.75, 12.97, 5));
+    }
+
+    @Test
+    void nameMatchesAreNarrowedToTheCityAndState() {
+        DoctorProfile inCity = doctor("d-1", 77.59, 12.97, 5);
+        inCity.setCity("Bengaluru");
+        inCity.setState("Karnataka");
+        DoctorProfile elsewhere = doctor("d-2", 72.88, 19.08, 5);
+        elsewhere.setCity("Mumbai");
+        elsewhere.setState("Maharashtra");
+
+        Predicate<DoctorProfile> filter = nameSearchFilter("Bengaluru", "Karnataka", null, null, null, null);
+
+        assertThat(filter).accepts(inCity).rejects(elsewhere);
+    }
+
+    /**
+     * Runs a name search and returns the filter it handed the name index
+     */
+    @SuppressWarnings("unchecked")
+    private Predicate<DoctorProfile> nameSearchFilter(String city, String state, String pincode,
+                                                      Double latitude, Double longitude, Double radius) {
+        ArgumentCaptor<Predicate<DoctorProfile>> filter = ArgumentCaptor.forClass(Predicate.class);
+        when(doctorNameIndex.search(eq("asha"), any(), any(), filter.capture(), eq(PAGE)))
+                .thenReturn(Optional.of(new PageImpl<>(List.of())));
+
+        doctorSearchService.searchDoctors("asha", null, null, city, state, pincode, latitude, longitude, radius, PAGE);
+
+        return filter.getValue();
+    }
+
+    static DoctorProfile doctor(String id, double longitude, double latitude, Integer yearsOfExperience) {
+        DoctorProfile doctor = new DoctorProfile();
+        doctor.setId(id);
+        doctor.setUserId("user-" + id);
+        doctor.setVerificationStatus(VerificationStatus.VERIFIED);
+        doctor.setLocation(new GeoJsonPoint(longitude, latitude));
+        doctor.setYearsOfExperience(yearsOfExperience);
+        return doctor;
+    }
+
+    private static UserSummary user(String id) {
+        UserSummary user = new UserSummary();
+        user.setId(id);
+        user.setFullName(id);
+        return user;
+    }
+}
@@ -0,0 +1,127 @@
+package com.mediconnect.util;
+
+import com.mediconnect.model.Calendar;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pins the index to the comparisons it replaced: the strict overlap of slot extension, the gap check
+ * of the slot merge and the closed range of the bulk delete
+ */
+class SlotIntervalIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    @Test
+    void adjacentSlotsDoNotOverlap() {
+        Calendar.Slot before = slot("before", at(9, 0, 0), at(9, 30, 0));
+        Calendar.Slot after = slot("after", at(10, 0, 0), at(10, 30, 0));
+        SlotIntervalIndex index = SlotIntervalIndex.of(DAY, List.of(after, before));
+
+        assertThat(index.findOverlapping(at(9, 30, 0), at(10, 0, 0))).isEmpty();
+        assertThat(index.findOverlapping(at(9, 29, 59), at(10, 0, 1))).containsExactly(before, after);
+        assertThat(index.hasConflict(at(9, 30, 0), at(10, 0, 0), 0)).isFalse();
+    }
+
+    @Test
+    void gapIsMeasuredInSeconds() {
+        SlotIntervalIndex index = SlotIntervalIndex.of(DAY, List.of(slot("existing", at(9, 0, 0), at(9, 30, 0))));
+
+        // Ten minutes after the end, to the second, is enough; a second less is not
+        assertThat(index.hasConflict(at(9, 40, 0), at(10, 0, 0), 10)).isFalse();
+        assertThat(index.hasConflict(at(9, 39, 59), at(10, 0, 0), 10)).isTrue();
+        // The same on the other side
+        assertThat(index.hasConflict(at(8, 30, 0), at(8, 50, 0), 10)).isFalse();
+        assertThat(index.hasConflict(at(8, 30, 0), at(8, 50, 1), 10)).isTrue();
+        // Overlaps conflict whatever the gap
+        assertThat(index.hasConflict(at(9, 10, 0), at(9, 20, 0), 0)).isTrue();
+    }
+
+    @Test
+    void rangeDeleteIncludesSlotsTouchingEitherBound() {
+        Calendar.Slot endsAtStart = slot("endsAtStart", at(9, 0, 0), at(10, 0, 0));
+        Calendar.Slot inside = slot("inside", at(10, 15, 0), at(10, 45, 0));
+        Calendar.Slot startsAtEnd = slot("startsAtEnd", at(11, 0, 0), at(11, 30, 0));
+        Calendar.Slot endsJustBefore = slot("endsJustBefore", at(8, 0, 0), at(9, 59, 59));
+        Calendar.Slot startsJustAfter = slot("startsJustAfter", at(11, 0, 1), at(11, 30, 0));
+        SlotIntervalIndex index = SlotIntervalIndex.of(DAY,
+                List.of(startsJustAfter, inside, endsJustBefore, startsAtEnd, endsAtStart));
+
+        assertThat(index.findIntersecting(at(10, 0, 0), at(11, 0, 0)))
+                .containsExactlyInAnyOrder(endsAtStart, inside, startsAtEnd);
+        assertThat(index.findOverlapping(at(10, 0, 0), at(11, 0, 0))).containsExactly(inside);
+    }
+
+    @Test
+    void longSlotIsFoundBehindShorterOnesStartingLater() {
+        Calendar.Slot longSlot = slot("long", at(8, 0, 0), at(12, 0, 0));
+        Calendar.Slot shortSlot = slot("short", at(9, 0, 0), at(9, 15, 0));
+        SlotIntervalIndex index = SlotIntervalIndex.of(DAY, List.of(shortSlot, longSlot));
+
+        assertThat(index.findOverlapping(at(11, 0, 0), at(11, 30, 0))).containsExactly(longSlot);
+        assertThat(index.findIntersecting(at(12, 0, 0), at(13, 0, 0))).containsExactly(longSlot);
+        assertThat(index.hasConflict(at(12, 5, 0), at(12, 30, 0), 10)).isTrue();
+    }
+
+    @Test
+    void agreesWithThePairwiseComparisonsOnEveryBoundary() {
+        // Slots and queries on a five minute grid with second offsets, so every bound coincides somewhere
+        List<Calendar.Slot> slots = new ArrayList<>();
+        for (int minute = 0; minute < 240; minute += 35) {
+            slots.add(slot("s" + minute, at(8, 0, 0).plusMinutes(minute), at(8, 0, 0).plusMinutes(minute + 25)));
+        }
+        SlotIntervalIndex index = SlotIntervalIndex.of(DAY, slots);
+
+        for (int startMinute = -10; startMinute < 250; startMinute += 5) {
+            for (int length = 0; length <= 40; length += 5) {
+                for (int shift : new int[]{-1, 0, 1}) {
+                    LocalDateTime start = at(8, 0, 0).plusMinutes(startMinute).plusSeconds(shift);
+                    LocalDateTime end = start.plusMinutes(length);
+
+                    assertThat(index.findOverlapping(start, end))
+                            .containsExactlyElementsOf(slots.stream()
+                                    .filter(slot -> start.isBefore(slot.getEndTime()) && end.isAfter(slot.getStartTime()))
+                                    .toList());
+                    assertThat(index.findIntersecting(start, end))
+                            .containsExactlyElementsOf(slots.stream()
+                                    .filter(slot -> !(slot.getEndTime().isBefore(start) || slot.getStartTime().isAfter(end)))
+                                    .toList());
+                    for (int gap : new int[]{0, 5, 10}) {
+                        assertThat(index.hasConflict(start, end, gap))
+                                .isEqualTo(slots.stream().anyMatch(slot -> conflicts(start, end, slot, gap)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean conflicts(LocalDateTime start, LocalDateTime end, Calendar.Slot slot, int gapMinutes) {
+        if (start.isBefore(slot.getEndTime()) && end.isAfter(slot.getStartTime())) {
+            return true;
+        }
+        Duration gap = slot.getEndTime().isAfter(start)
+                ? Duration.between(end, slot.getStartTime())
+                : Duration.between(slot.getEndTime(), start);
+        return gap.toMinutes() < gapMinutes;
+    }
+
+    private static LocalDateTime at(int hour, int minute, int second) {
+        return DAY.atTime(hour, minute, second);
+    }
+
+    private static Calendar.Slot slot(String id, LocalDateTime start, LocalDateTime end) {
+        Calendar.Slot slot = new Calendar.Slot();
+        slot.setId(id);
+        slot.setStartTime(start);
+        slot.setEndTime(end);
+        slot.setAvailable(true);
+        return slot;
+    }
+}
@@ -155,6 +155,7 @@ const BookingModal = ({ open, onClose, doctor, onBook }) => {
           doctorId: doctor.id,
           date: selectedDate,
           slotId: selectedSlot.id,
+          slotIndex: selectedSlot.slotIndex,
           calendarId: selectedSlot.calendarId,
           type: 'ONLINE',
           reason: 'Appointment requested through online booking'
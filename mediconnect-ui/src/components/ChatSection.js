@@ -21,7 +21,9 @@ const ChatSection = ({
     isOtherParticipantOnline,
     isConnecting,
     connectionError,
-    markMessagesAsRead 
+    markMessagesAsRead,
+    loadOlderMessages,
+    hasOlderMessages
   } = useChat();
   
   const [newMessage, setNewMessage] = useState('');
@@ -32,6 +34,8 @@ const ChatSection = ({
   const hasAttemptedConnection = useRef(false);
   const unreadMessagesRef = useRef(new Set()); // Track unread message IDs
   const connectionMonitorRef = useRef(null); // Monitor connection status
+  const keepScrollRef = useRef(null); // Scroll height before older messages were prepended
+  const [loadingOlder, setLoadingOlder] = useState(false);
 
   const messages = getMessages(appointmentId);
 
@@ -140,11 +144,30 @@ const ChatSection = ({
     }
   }, [messages, appointmentId, markMessagesAsRead]);
 
-  // Auto-scroll to bottom when new messages arrive
+  // Auto-scroll to bottom when new messages arrive; keep the position when older ones were prepended
   useEffect(() => {
+    if (keepScrollRef.current !== null) {
+      const messagesContainer = document.querySelector('.chat-messages');
+      if (messagesContainer) {
+        messagesContainer.scrollTop = messagesContainer.scrollHeight - keepScrollRef.current;
+      }
+      keepScrollRef.current = null;
+      return;
+    }
     scrollToBottom();
   }, [messages]);
 
+  const handleLoadOlder = async () => {
+    const messagesContainer = document.querySelector('.chat-messages');
+    setLoadingOlder(true);
+    keepScrollRef.current = messagesContainer ? messagesContainer.scrollHeight - messagesContainer.scrollTop : null;
+    const loaded = await loadOlderMessages(appointmentId);
+    if (!loaded) {
+      keepScrollRef.current = null;
+    }
+    setLoadingOlder(false);
+  };
+
   const scrollToBottom = () => {
     messagesEndRef.current?.scrollIntoView({ behavior: "smooth" });
   };
@@ -338,6 +361,11 @@ const ChatSection = ({
       </div>
       
       <div className="chat-messages">
+        {hasOlderMessages(appointmentId) && (
+          <button className="load-older-btn" onClick={handleLoadOlder} disabled={loadingOlder}>
+            {loadingOlder ? 'Loading...' : 'Load earlier messages'}
+          </button>
+        )}
         {messages.length === 0 ? (
           <div className="no-messages">
             <p>No messages yet. Start the conversation!</p>
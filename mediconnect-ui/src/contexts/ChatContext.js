@@ -22,6 +22,9 @@ export const ChatProvider = ({ children }) => {
   const reconnectTimeoutRef = useRef(null);
   const connectionAttempts = useRef(new Set()); // Track which appointments we've attempted to connect to
   const lastConnectionTime = useRef(0); // Track when the last connection was made
+  const lastSeqs = useRef(new Map()); // Highest message seq received per appointment, used to resume after a reconnect
+  const olderCursors = useRef(new Map()); // Cursor of the page before the oldest loaded message, per appointment
+  const [hasOlderHistory, setHasOlderHistory] = useState(new Map());
   const connectionCooldown = 5000; // 5 seconds cooldown between connections
 
   // Check if we have any active connections
@@ -159,7 +162,10 @@ export const ChatProvider = ({ children }) => {
                          process.env.REACT_APP_API_BASE_URL.replace('https://', 'wss://').replace('http://', 'ws://') : 
                          'ws://localhost:8080');
       
-      const wsUrl = `${wsBaseUrl}/ws/chat?appointmentId=${appointmentId}&token=${token}`;
+      // When resuming, the server replays only the messages after lastSeq
+      const lastSeq = lastSeqs.current.get(appointmentId);
+      const wsUrl = `${wsBaseUrl}/ws/chat?appointmentId=${appointmentId}&token=${token}` +
+                    (lastSeq ? `&lastSeq=${lastSeq}` : '');
       console.log('Creating WebSocket with URL:', wsUrl);
       console.log('Final wsBaseUrl:', wsBaseUrl);
       const socket = new WebSocket(wsUrl);
@@ -196,9 +202,11 @@ export const ChatProvider = ({ children }) => {
         setConnectionError(null); // Clear any previous errors
         console.log('isConnecting set to false');
         
-        // Load chat history when connection is established
-        console.log('Loading chat history for appointment:', appointmentId);
-        loadChatHistory(appointmentId);
+        // Load chat history when connection is established; a resumed connection gets missed messages replayed instead
+        if (!lastSeq) {
+          console.log('Loading chat history for appointment:', appointmentId);
+          loadChatHistory(appointmentId);
+        }
         
         // Set up inactivity timeout (30 minutes)
         const inactivityTimeout = setTimeout(() => {
@@ -385,7 +393,18 @@ export const ChatProvider = ({ children }) => {
     }
   }, [connections]);
 
-  // Load chat history
+  // Remember where the page before the loaded history starts; the server sends no cursor on the first page
+  const storeOlderCursor = useCallback((appointmentId, response) => {
+    const cursor = response.headers.get('X-Chat-Older-Cursor');
+    if (cursor) {
+      olderCursors.current.set(appointmentId, cursor);
+    } else {
+      olderCursors.current.delete(appointmentId);
+    }
+    setHasOlderHistory(prev => new Map(prev).set(appointmentId, !!cursor));
+  }, []);
+
+  // Load chat history (the latest page)
   const loadChatHistory = useCallback(async (appointmentId) => {
     try {
       const token = tokenService.getAccessToken();
@@ -399,7 +418,9 @@ export const ChatProvider = ({ children }) => {
         const history = await response.json();
         console.log('Loaded chat history:', history);
         console.log('Sample message structure:', history[0]);
+        storeOlderCursor(appointmentId, response);
         setMessages(prev => new Map(prev).set(appointmentId, history));
+        lastSeqs.current.set(appointmentId, history.reduce((max, message) => Math.max(max, message.seq || 0), 0));
         
         // Check if there are any unread messages from other users
         const unreadMessages = history.filter(message => 
@@ -438,7 +459,42 @@ export const ChatProvider = ({ children }) => {
     } catch (error) {
       console.error('Error loading chat history:', error);
     }
-  }, [user?.id]);
+  }, [user?.id, storeOlderCursor]);
+
+  // Load the page of history before the oldest loaded message; returns false if there is none
+  const loadOlderMessages = useCallback(async (appointmentId) => {
+    const cursor = olderCursors.current.get(appointmentId);
+    if (!cursor) {
+      return false;
+    }
+
+    try {
+      const token = tokenService.getAccessToken();
+      const response = await fetch(`/api/chat/history/${appointmentId}?before=${encodeURIComponent(cursor)}`, {
+        headers: {
+          'Authorization': `Bearer ${token}`
+        }
+      });
+
+      if (!response.ok) {
+        console.error('Failed to load older chat history:', response.status);
+        return false;
+      }
+
+      const olderPage = await response.json();
+      storeOlderCursor(appointmentId, response);
+      setMessages(prev => {
+        const current = prev.get(appointmentId) || [];
+        const loadedIds = new Set(current.map(message => message.id));
+        const older = olderPage.filter(message => !loadedIds.has(message.id));
+        return new Map(prev).set(appointmentId, [...older, ...current]);
+      });
+      return olderPage.length > 0;
+    } catch (error) {
+      console.error('Error loading older chat history:', error);
+      return false;
+    }
+  }, [storeOlderCursor]);
 
   // Handle incoming messages
   const handleIncomingMessage = useCallback((appointmentId, message) => {
@@ -468,6 +524,13 @@ export const ChatProvider = ({ children }) => {
       return;
     }
     
+    // The gap since our last message was too large to replay
+    if (message.type === 'resync_required') {
+      console.log('Resync required, reloading chat history for appointment:', appointmentId);
+      loadChatHistory(appointmentId);
+      return;
+    }
+    
     // Filter out empty messages or system messages
     if (!message.content || message.content.trim() === '') {
       console.log('Filtering out empty message:', message);
@@ -480,10 +543,19 @@ export const ChatProvider = ({ children }) => {
       return;
     }
     
+    if (message.seq) {
+      lastSeqs.current.set(appointmentId, Math.max(lastSeqs.current.get(appointmentId) || 0, message.seq));
+    }
+    
     setMessages(prev => {
       const newMessages = new Map(prev);
       const appointmentMessages = newMessages.get(appointmentId) || [];
       
+      // A replayed message may also have been broadcast
+      if (appointmentMessages.some(existing => existing.id === message.id)) {
+        return prev;
+      }
+      
       // Add new message to the end
       const updatedMessages = [...appointmentMessages, message];
       newMessages.set(appointmentId, updatedMessages);
@@ -561,6 +633,11 @@ export const ChatProvider = ({ children }) => {
     return messages.get(appointmentId) || [];
   }, [messages]);
 
+  // Check if there is history before the oldest loaded message
+  const hasOlderMessages = useCallback((appointmentId) => {
+    return hasOlderHistory.get(appointmentId) || false;
+  }, [hasOlderHistory]);
+
   // Check if connected to an appointment
   const isConnected = useCallback((appointmentId) => {
     const socket = connections.get(appointmentId);
@@ -641,7 +718,9 @@ export const ChatProvider = ({ children }) => {
     isConnected,
     isOtherParticipantOnline,
     markMessagesAsRead,
-    loadChatHistory
+    loadChatHistory,
+    loadOlderMessages,
+    hasOlderMessages
   };
 
   return (